@@ -18,11 +18,12 @@
 package com.magnet.tools.cli.base
 
 import com.magnet.tools.cli.core.AbstractCommand
+import com.magnet.tools.cli.core.StatelessCommand
 
 /**
  * Clear Screen command
  */
-class ClearCommand extends AbstractCommand {
+class ClearCommand extends AbstractCommand implements StatelessCommand {
 
   /**
    * Constructor: called dynamically by the Shell and injected with name, aliases, and hidden flag defined in
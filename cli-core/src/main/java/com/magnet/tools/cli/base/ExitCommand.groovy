@@ -18,12 +18,13 @@
 package com.magnet.tools.cli.base
 
 import com.magnet.tools.cli.core.AbstractCommand
+import com.magnet.tools.cli.core.StatelessCommand
 
 /**
  * Exit command
  * exit the tool
  */
-class ExitCommand extends AbstractCommand {
+class ExitCommand extends AbstractCommand implements StatelessCommand {
 
   /**
    * Constructor: called dynamically by the Shell and injected with name, aliases, and hidden flag defined in
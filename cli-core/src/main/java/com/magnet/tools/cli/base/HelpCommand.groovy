@@ -22,6 +22,7 @@ import com.magnet.tools.cli.core.Command
 import com.magnet.tools.cli.core.CommandException
 import com.magnet.tools.cli.core.CoreConstants
 import com.magnet.tools.cli.core.MagnetSettings
+import com.magnet.tools.cli.core.StatelessCommand
 import com.magnet.tools.cli.messages.CommonMessages
 import com.magnet.tools.utils.AnsiHelper
 import com.magnet.tools.utils.StringHelper
@@ -32,7 +33,7 @@ import static com.magnet.tools.cli.messages.BaseMessages.*
  * Help command
  * Display help for one or all command
  */
-class HelpCommand extends AbstractCommand {
+class HelpCommand extends AbstractCommand implements StatelessCommand {
 
   /**
    * Constructor: called dynamically by the Shell and injected with name, aliases, and hidden flag defined in
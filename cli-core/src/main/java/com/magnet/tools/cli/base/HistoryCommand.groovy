@@ -20,6 +20,7 @@ package com.magnet.tools.cli.base
 import com.magnet.tools.cli.core.AbstractCommand
 import com.magnet.tools.cli.core.CommandException
 import com.magnet.tools.cli.core.CoreConstants
+import com.magnet.tools.cli.core.StatelessCommand
 import com.magnet.tools.cli.messages.CommonMessages
 import com.magnet.tools.utils.AnsiHelper
 import groovy.util.logging.Slf4j
@@ -31,7 +32,7 @@ import jline.History
  *
  */
 @Slf4j
-class HistoryCommand extends AbstractCommand {
+class HistoryCommand extends AbstractCommand implements StatelessCommand {
 
   /**
    * Constructor: called dynamically by the Shell and injected with name, aliases, and hidden flag defined in
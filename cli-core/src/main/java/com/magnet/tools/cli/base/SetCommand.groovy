@@ -138,7 +138,7 @@ class SetCommand extends AbstractCommand {
                         it,
                         validLocaleNames.join(', ')))
               }
-              currentLocale = stringToLocale(it)
+              MessagesSupport.setLocale(stringToLocale(it))
             }),
         // HTTP Proxy option
         new Setting(
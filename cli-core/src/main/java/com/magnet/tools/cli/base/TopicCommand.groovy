@@ -20,6 +20,7 @@ package com.magnet.tools.cli.base
 import com.magnet.tools.cli.core.AbstractCommand
 import com.magnet.tools.cli.core.CommandException
 import com.magnet.tools.cli.core.CoreConstants
+import com.magnet.tools.cli.core.StatelessCommand
 import com.magnet.tools.cli.messages.CommonMessages
 import com.magnet.tools.cli.messages.TopicMessages
 import com.magnet.tools.utils.AnsiHelper
@@ -34,7 +35,7 @@ import static com.magnet.tools.cli.messages.BaseMessages.*
  * topic files are stored in the resources/help/topic.properties
  *
  */
-class TopicCommand extends AbstractCommand {
+class TopicCommand extends AbstractCommand implements StatelessCommand {
 
   public static final String TOPIC = "topic"
   public static final String LONG_TEXT = "longText"
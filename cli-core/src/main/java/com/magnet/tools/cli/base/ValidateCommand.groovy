@@ -20,11 +20,21 @@ package com.magnet.tools.cli.base
 import com.magnet.tools.cli.core.AbstractCommand
 import com.magnet.tools.cli.core.CoreConstants
 import com.magnet.tools.cli.helper.EnvironmentHelper
+import com.magnet.tools.cli.helper.ProbeCache
 import com.magnet.tools.cli.helper.ProcessHelper
 import com.magnet.tools.cli.helper.ProcessOutput
 import com.magnet.tools.cli.messages.CommonMessages
 import com.magnet.tools.config.ConfigLexicon
 
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
 import static com.magnet.tools.utils.StringHelper.*
 import static com.magnet.tools.cli.messages.BaseMessages.*
 
@@ -51,16 +61,50 @@ import static com.magnet.tools.cli.messages.BaseMessages.*
  *       <li>Run 'mvn -version' : ERROR if fail</li>
  *    </ul>
  * </ul>
+ * The checks run concurrently, each within the <code>validation.checkTimeout</code> configured. The executables
+ * looked up and run are cached in the magnet directory for <code>validation.cacheTtl</code>, see {@link ProbeCache}.
  */
 class ValidateCommand extends AbstractCommand {
 
   public static final String SHORT_OPTION = "-s"
 
-  private StringBuilder sbInfo = new StringBuilder()
+  public static final String NO_CACHE_OPTION = "no-cache"
+
+  /**
+   * Default time to live of the cached probes, in ms
+   */
+  static final long DEFAULT_CACHE_TTL = 24 * 60 * 60 * 1000L
+
+  /**
+   * Default timeout of each check, in ms
+   */
+  static final long DEFAULT_CHECK_TIMEOUT = 30000L
+
+  private StringBuilder sbInfo
   private static final String WARNING_HEADER = LINE_SEP
-  private StringBuilder sbWarning = new StringBuilder(WARNING_HEADER)
+  private StringBuilder sbWarning
   private static final String ERROR_HEADER = LINE_SEP
-  private StringBuilder sbError = new StringBuilder(ERROR_HEADER)
+  private StringBuilder sbError
+
+  private ProbeCache probes
+
+  /**
+   * Output of a check, merged in the command output in the order of the checks
+   */
+  private static class Check {
+    final String name
+    final Closure validation
+    final StringBuilder info = new StringBuilder()
+    final StringBuilder warning = new StringBuilder()
+    final StringBuilder error = new StringBuilder()
+    long duration
+    boolean cached
+
+    Check(String name, Closure validation) {
+      this.name = name
+      this.validation = validation
+    }
+  }
 
 
   /**
@@ -75,6 +119,7 @@ class ValidateCommand extends AbstractCommand {
 
     // command option(s):
     s(longOpt: 'short', args: 0, required: false, 'Only display errors')
+    _(longOpt: NO_CACHE_OPTION, args: 0, required: false, 'Run all the checks again, ignoring the cached results')
   }
 
   @Override
@@ -83,42 +128,41 @@ class ValidateCommand extends AbstractCommand {
     OptionAccessor options = parse(args)
     validateOptionsOrThrow(options)
 
-    printStealthy b(CommonMessages.validating(getMessage(VERSION) + "                        "))
-    validateMabVersion()
-    validateMabEnv()
-
-    printStealthy b(CommonMessages.validating(getMessage(PLATFORM_VERSION) + "                        "))
-    validateDefaultPlatformVersion()
-
-    printStealthy b(CommonMessages.validating("Java                        "))
-    validateJava()
-
-    printStealthy b(CommonMessages.validating("Maven                        "))
-    validateMaven()
-
-    printStealthy b(CommonMessages.validating("PowerShell                        "))
-    validatePowerShell()
+    sbInfo = new StringBuilder()
+    sbWarning = new StringBuilder(WARNING_HEADER)
+    sbError = new StringBuilder(ERROR_HEADER)
+
+    long cacheTtl = options."${NO_CACHE_OPTION}" ? 0 : configured(shell.configuration.validation.cacheTtl, DEFAULT_CACHE_TTL)
+    probes = new ProbeCache(new File(shell.getMagnetDirectory(), ProbeCache.FILE_NAME), cacheTtl)
+
+    List<Check> checks = [
+        new Check(getMessage(VERSION), { Check check -> validateMabVersion(check); validateMabEnv(check) }),
+        new Check(getMessage(PLATFORM_VERSION), this.&validateDefaultPlatformVersion),
+        new Check("Java", this.&validateJava),
+        new Check("Maven", this.&validateMaven),
+        new Check("PowerShell", this.&validatePowerShell),
+        new Check("MySQL", this.&validateMySql),
+        new Check(getMessage(PLUGINS), this.&validatePlugins),
+        new Check(getMessage(FACTORY_URL), this.&validateMagnetFactoryURL),
+        new Check(getMessage(MAVEN_REPOSITORY_URL), this.&validateMavenRepositoryURL),
+        new Check(languageLocale(), this.&validateLocale)]
+    runChecks(checks, configured(shell.configuration.validation.checkTimeout, DEFAULT_CHECK_TIMEOUT))
 
-    printStealthy b(CommonMessages.validating("MySQL                        "))
-    validateMySql(sbWarning, sbInfo)
-
-    printStealthy b(CommonMessages.validating(getMessage(PLUGINS) + "                        "))
-    validatePlugins()
-
-    printStealthy b(CommonMessages.validating(getMessage(FACTORY_URL) + "                        "))
-    validateMagnetFactoryURL()
-
-    printStealthy b(CommonMessages.validating(getMessage(MAVEN_REPOSITORY_URL) + "        "))
-    validateMavenRepositoryURL()
-
-    printStealthy b(CommonMessages.validating(languageLocale() + "                        "))
-    validateLocale()
-
-    printStealthy("                                                                        ")
+    try {
+      probes.save()
+    } catch (Exception e) {
+      debug("Cannot save the validation cache: ${e.getMessage()}")
+    }
 
     validateMagnetToolHome()
     validateMagnetDirectory()
 
+    if (isVerbose(options.v)) {
+      addBullet(sbInfo, 1, ([getMessage(VALIDATION_TIMINGS_BULLET)] + checks.collect {
+        b(getMessage(it.cached ? VALIDATION_CACHED_TIMING : VALIDATION_TIMING, it.name, it.duration))
+      }) as String[])
+    }
+
     if (sbInfo.length() && isVerbose(options.v)) {
       info(sbInfo.toString())
     }
@@ -142,6 +186,71 @@ class ValidateCommand extends AbstractCommand {
     return CoreConstants.COMMAND_OK_CODE
   }
 
+  /**
+   * Run the checks concurrently, and merge their output in order
+   * @param checks checks to run
+   * @param timeout timeout of each check, in ms. A check still running is reported as a warning
+   */
+  private void runChecks(List<Check> checks, long timeout) {
+    ExecutorService executor = Executors.newFixedThreadPool(checks.size(), { Runnable r ->
+      Thread thread = new Thread(r, "validate")
+      // a hung executable must not keep the shell from exiting
+      thread.setDaemon(true)
+      thread
+    } as ThreadFactory)
+    try {
+      long start = System.currentTimeMillis()
+      List<Future> results = checks.collect { Check check ->
+        executor.submit({
+          long checkStart = System.currentTimeMillis()
+          try {
+            check.validation.call(check)
+          } finally {
+            check.duration = System.currentTimeMillis() - checkStart
+          }
+        } as Callable)
+      }
+      for (int i = 0; i < checks.size(); i++) {
+        Check check = checks[i]
+        printStealthy b(CommonMessages.validating(check.name + "                        "))
+        try {
+          results[i].get(Math.max(0, start + timeout - System.currentTimeMillis()), TimeUnit.MILLISECONDS)
+        } catch (TimeoutException e) {
+          // the output of a check still running is left out
+          results[i].cancel(true)
+          check.duration = timeout
+          sbWarning.append(getMessage(VALIDATION_CHECK_TIMEOUT, check.name, timeout)).append("\n")
+          continue
+        } catch (ExecutionException e) {
+          check.error.append(getMessage(VALIDATION_CHECK_FAILED, check.name, e.getCause().getMessage())).append("\n")
+        }
+        sbInfo.append(check.info)
+        sbWarning.append(check.warning)
+        sbError.append(check.error)
+      }
+      printStealthy("                                                                        ")
+    } finally {
+      executor.shutdownNow()
+    }
+  }
+
+  private static long configured(def value, long defaultValue) {
+    return value instanceof Number ? ((Number) value).longValue() : defaultValue
+  }
+
+  /**
+   * Get the cached result of running an executable, or run it
+   */
+  private ProbeCache.Probe probe(Check check, String command, List<String> args) {
+    ProbeCache.Probe result = probes.probe(([command] + args).join(" ")) {
+      String path = EnvironmentHelper.getPath(command)
+      ProcessOutput output = ProcessHelper.runReturnOutput(getShell(), command, args, null, null, false)
+      new ProbeCache.Probe(path: path, exitCode: output.getExitCode(), output: output.getOutput())
+    }
+    check.cached |= result.cached
+    return result
+  }
+
   private void validateMagnetToolHome() {
     addBullet(sbInfo, 1, getMessage(MAGNET_INSTALLATION_BULLET) + " " + b(shell.configuration.installationPath))
   }
@@ -149,40 +258,40 @@ class ValidateCommand extends AbstractCommand {
     addBullet(sbInfo, 1, getMessage(MAGNET_DIRECTORY_BULLET) + " " + b(shell.getMagnetDirectory().getAbsolutePath()))
   }
 
-  private void validatePlugins() {
+  private void validatePlugins(Check check) {
     Map plugins = shell.getConfiguration().plugins
     def pluginInfo = plugins? plugins.values().collect { b(it) } : b(getMessage(NO_PLUGINS))
-    addBullet(sbInfo, 1, ([getMessage(REGISTERED_PLUGINS_BULLET)] + pluginInfo) as String[])
+    addBullet(check.info, 1, ([getMessage(REGISTERED_PLUGINS_BULLET)] + pluginInfo) as String[])
   }
 
-  private void validateDefaultPlatformVersion() {
-    addBullet(sbInfo, 1, getMessage(DEFAULT_PLATFORM_VERSION_BULLET) + " " + b(ConfigLexicon.DEFAULT_PLATFORM_VERSION))
+  private void validateDefaultPlatformVersion(Check check) {
+    addBullet(check.info, 1, getMessage(DEFAULT_PLATFORM_VERSION_BULLET) + " " + b(ConfigLexicon.DEFAULT_PLATFORM_VERSION))
   }
 
-  private void validateMagnetFactoryURL() {
-    addBullet(sbInfo, 1, getMessage(MAGNET_FACTORY_URL_BULLET) + " " + b(shell.getFactoryUrl().toString()))
+  private void validateMagnetFactoryURL(Check check) {
+    addBullet(check.info, 1, getMessage(MAGNET_FACTORY_URL_BULLET) + " " + b(shell.getFactoryUrl().toString()))
   }
 
-  private void validateMavenRepositoryURL() {
-    addBullet(sbInfo, 1, getMessage(MAVEN_REPOSITORY_URL) + ": " + b(shell.getMavenRepository().toString()))
+  private void validateMavenRepositoryURL(Check check) {
+    addBullet(check.info, 1, getMessage(MAVEN_REPOSITORY_URL) + ": " + b(shell.getMavenRepository().toString()))
   }
 
-  private void validateLocale() {
-    addBullet(sbInfo, 1, languageLocale(),
+  private void validateLocale(Check check) {
+    addBullet(check.info, 1, languageLocale(),
         b(currentLocaleBullet(localeToString(currentLocale))),
         b(supportedLocalesBullet(supportedLocales.collect { localeToString(it) })),
         b(effectiveLocaleBullet(localeToString(getEffectiveLocale()))))
   }
 
 
-  private void validateMavenSettings() {
+  private void validateMavenSettings(Check check) {
     String magnetMavenSettings = System.getenv(CoreConstants.MAGNET_MAVEN_SETTINGS)
     File magnetMavenSettingsFile
-    addBullet(sbInfo, 2, b(CoreConstants.MAGNET_MAVEN_SETTINGS + ": " + (magnetMavenSettings ?: "NOT SET")))
+    addBullet(check.info, 2, b(CoreConstants.MAGNET_MAVEN_SETTINGS + ": " + (magnetMavenSettings ?: "NOT SET")))
     if (magnetMavenSettings) {
       magnetMavenSettingsFile = new File(magnetMavenSettings)
       if (!magnetMavenSettingsFile.exists()) {
-        sbWarning.append(
+        check.warning.append(
             getMessage(
                 CANNOT_FIND_MAGNET_MAVEN_SETTING,
                 magnetMavenSettings,
@@ -194,9 +303,9 @@ class ValidateCommand extends AbstractCommand {
     }
 
     if (magnetMavenSettingsFile.exists()) {
-      addBullet(sbInfo, 2, b("settings.xml: " + magnetMavenSettingsFile.toString()))
+      addBullet(check.info, 2, b("settings.xml: " + magnetMavenSettingsFile.toString()))
     } else {
-      sbWarning.append(
+      check.warning.append(
           getMessage(
               CANNOT_FIND_DEFAULT_MAVEN_SETTING,
               Constants.MAGNET_MAVEN_SETTINGS ,
@@ -210,23 +319,23 @@ class ValidateCommand extends AbstractCommand {
     return System.getProperty("user.home") + File.separator + ".m2" + File.separator + "settings.xml"
   }
 
-  private void validateMabVersion() {
-    addBullet(sbInfo, 1, getMessage(MAB_VERSION_BULLET) + " " + b(ConfigLexicon.MAGNET_TOOLS_VERSION + " (" + ConfigLexicon.TOOLS_SCM_REVISION + "; " + ConfigLexicon.TOOLS_BUILD_TIME + ")"))
+  private void validateMabVersion(Check check) {
+    addBullet(check.info, 1, getMessage(MAB_VERSION_BULLET) + " " + b(ConfigLexicon.MAGNET_TOOLS_VERSION + " (" + ConfigLexicon.TOOLS_SCM_REVISION + "; " + ConfigLexicon.TOOLS_BUILD_TIME + ")"))
   }
 
-  private void validateMabEnv() {
+  private void validateMabEnv(Check check) {
     String magnetToolHome = System.getenv(CoreConstants.MAGNET_TOOL_HOME)
     String mabHome = System.getenv(CoreConstants.MAB_HOME)
-    addBullet(sbInfo, 1, CoreConstants.MAGNET_TOOL_HOME + ": " + b(magnetToolHome))
-    addBullet(sbInfo, 1, CoreConstants.MAB_HOME + ": " + b(mabHome ?: notSet()))
+    addBullet(check.info, 1, CoreConstants.MAGNET_TOOL_HOME + ": " + b(magnetToolHome))
+    addBullet(check.info, 1, CoreConstants.MAB_HOME + ": " + b(mabHome ?: notSet()))
   }
 
-  private void validateJava() {
+  private void validateJava(Check check) {
     //-------------------Java-------------------
     //Check JAVA_HOME
     String javaHome = System.getenv(CoreConstants.JAVA_HOME)
     if (!javaHome) {
-      sbWarning.append(getMessage(NO_JAVA_HOME_VALIDATION_WARNING, CoreConstants.JAVA_HOME)).append("\n")
+      check.warning.append(getMessage(NO_JAVA_HOME_VALIDATION_WARNING, CoreConstants.JAVA_HOME)).append("\n")
     }
     //Check Java version
     String javaVersion = System.getProperty('java.version')
@@ -234,74 +343,71 @@ class ValidateCommand extends AbstractCommand {
       double minJavaVersion = shell.configuration.javaVersion.major
       double currentVersion = Double.parseDouble(javaVersion.substring(0, 3))
       if (javaVersion && currentVersion < minJavaVersion ) {
-        sbWarning.append(getMessage(JAVA_VERSION_VALIDATION_WARNING, "${minJavaVersion}+", "${currentVersion}")).append("\n")
+        check.warning.append(getMessage(JAVA_VERSION_VALIDATION_WARNING, "${minJavaVersion}+", "${currentVersion}")).append("\n")
       }
     }
-    addBullet(sbInfo, 1, "Java:")
-    addBullet(sbInfo, 2, b(CoreConstants.CMD_JAVA + ": " + EnvironmentHelper.getPath(CoreConstants.CMD_JAVA)))
-    addBullet(sbInfo, 2, b(CoreConstants.JAVA_HOME + ": " + (javaHome ?: notSet())))
     //Run 'java -version'
-    ProcessOutput javaCr = ProcessHelper.runReturnOutput(getShell(), CoreConstants.CMD_JAVA, ['-version'], null, null, false)
-    if (!javaCr.getExitCode()) {
-      addBullet(sbInfo, 2, javaCr.getOutput().split(LINE_SEP)?.collect {b(it?.trim())} as String[])
+    ProbeCache.Probe javaCr = probe(check, CoreConstants.CMD_JAVA, ['-version'])
+    addBullet(check.info, 1, "Java:")
+    addBullet(check.info, 2, b(CoreConstants.CMD_JAVA + ": " + (javaCr.path ?: notSet())))
+    addBullet(check.info, 2, b(CoreConstants.JAVA_HOME + ": " + (javaHome ?: notSet())))
+    if (!javaCr.error && !javaCr.exitCode) {
+      addBullet(check.info, 2, javaCr.output.split(LINE_SEP)?.collect {b(it?.trim())} as String[])
     } else {
-      sbError.append(getMessage(BIN_ENVIRONMENT_VALIDATION_WARNING, "Java", CoreConstants.CMD_JAVA)).append("\n")
+      check.error.append(getMessage(BIN_ENVIRONMENT_VALIDATION_WARNING, "Java", CoreConstants.CMD_JAVA)).append("\n")
     }
 
   }
 
-  private void validateMaven() {
+  private void validateMaven(Check check) {
     //Run 'mvn -version'
-    addBullet(sbInfo, 1, "Maven:")
+    ProbeCache.Probe mavenCr = probe(check, CoreConstants.CMD_MVN, ['-version'])
+    addBullet(check.info, 1, "Maven:")
     String mavenHome = System.getenv(CoreConstants.M2_HOME)
-    addBullet(sbInfo, 2, b(CoreConstants.CMD_MVN + ": " + EnvironmentHelper.getPath(CoreConstants.CMD_MVN)))
-    addBullet(sbInfo, 2, b(CoreConstants.M2_HOME + ": " + (mavenHome ?: notSet())))
-    validateMavenSettings()
-    ProcessOutput mavenCr = ProcessHelper.runReturnOutput(
-        getShell(), CoreConstants.CMD_MVN, ['-version'], null, null, false)
-    if (!mavenCr.getExitCode()) {
-      addBullet(sbInfo, 2,
-          mavenCr.getOutput().split(LINE_SEP).collect { b(it)} as String[] )
+    addBullet(check.info, 2, b(CoreConstants.CMD_MVN + ": " + (mavenCr.path ?: notSet())))
+    addBullet(check.info, 2, b(CoreConstants.M2_HOME + ": " + (mavenHome ?: notSet())))
+    validateMavenSettings(check)
+    if (!mavenCr.error && !mavenCr.exitCode) {
+      addBullet(check.info, 2,
+          mavenCr.output.split(LINE_SEP).collect { b(it)} as String[] )
     } else {
-      sbError.append(getMessage(BIN_ENVIRONMENT_VALIDATION_WARNING, "Maven", CoreConstants.CMD_MVN)).append("\n")
+      check.error.append(getMessage(BIN_ENVIRONMENT_VALIDATION_WARNING, "Maven", CoreConstants.CMD_MVN)).append("\n")
     }
   }
 
-  private void validatePowerShell() {
+  private void validatePowerShell(Check check) {
     // Powershell
     if (EnvironmentHelper.isWindowsOS()) {
-      ProcessOutput psCr = ProcessHelper.runReturnOutput(
-          getShell(), CoreConstants.CMD_POWERSHELL, ['-Command', '$host.version.toString()'], null, null, false);
-      if (!psCr.getExitCode()) {
-        addBullet(sbInfo, 1, ([getMessage(POWERSHELL_BULLET) + " "] as String[]) + psCr.getOutput().split(LINE_SEP).collect {
+      ProbeCache.Probe psCr = probe(check, CoreConstants.CMD_POWERSHELL, ['-Command', '$host.version.toString()'])
+      if (!psCr.error && !psCr.exitCode) {
+        addBullet(check.info, 1, ([getMessage(POWERSHELL_BULLET) + " "] as String[]) + psCr.output.split(LINE_SEP).collect {
           b(it)
         } as String[])
       } else {
-        sbError.append(getMessage(BIN_ENVIRONMENT_VALIDATION_WARNING, "Powershell", CoreConstants.CMD_POWERSHELL)).append("\n")
+        check.error.append(getMessage(BIN_ENVIRONMENT_VALIDATION_WARNING, "Powershell", CoreConstants.CMD_POWERSHELL)).append("\n")
       }
     }
   }
 
-  private void validateMySql(StringBuilder sbWarning, StringBuilder sbInfo) {
+  private void validateMySql(Check check) {
 
-    addBullet(sbInfo, 1, "MySql:")
+    addBullet(check.info, 1, "MySql:")
     //Run 'mysql --version'
-    try {
-      String mysqlHome = System.getenv(CoreConstants.MYSQL_HOME)
-      addBullet(sbInfo, 2, b(CoreConstants.CMD_MYSQL + ": " + EnvironmentHelper.getPath(CoreConstants.CMD_MYSQL)))
-      addBullet(sbInfo, 2, b(CoreConstants.MYSQL_HOME + ": " + (mysqlHome ?: notSet())))
-
-      ProcessOutput mysqlCr = ProcessHelper.runReturnOutput(getShell(), CoreConstants.CMD_MYSQL, ['--version'], null, null, false)
-      if (!mysqlCr.getExitCode()) {
-        String output = mysqlCr.getOutput()
-        String mysqlVersion = output.substring(output.indexOf(' ')).trim()
-        addBullet(sbInfo, 2, b(getMessage(MYSQL_VERSION_BULLET) + " " + mysqlVersion))
-      } else {
-        addBullet(sbInfo, 2, b(getMessage(BIN_ENVIRONMENT_VALIDATION_WARNING, "MySQL", CoreConstants.CMD_MYSQL + ", mysqladmin")))
+    String mysqlHome = System.getenv(CoreConstants.MYSQL_HOME)
+    ProbeCache.Probe mysqlCr = probe(check, CoreConstants.CMD_MYSQL, ['--version'])
+    // MySql is optional, a missing mysql is not an error
+    if (!mysqlCr.error && !mysqlCr.exitCode) {
+      addBullet(check.info, 2, b(CoreConstants.CMD_MYSQL + ": " + mysqlCr.path))
+      addBullet(check.info, 2, b(CoreConstants.MYSQL_HOME + ": " + (mysqlHome ?: notSet())))
+      String output = mysqlCr.output
+      String mysqlVersion = output.substring(output.indexOf(' ')).trim()
+      addBullet(check.info, 2, b(getMessage(MYSQL_VERSION_BULLET) + " " + mysqlVersion))
+    } else {
+      if (mysqlCr.path) {
+        addBullet(check.info, 2, b(CoreConstants.CMD_MYSQL + ": " + mysqlCr.path))
+        addBullet(check.info, 2, b(CoreConstants.MYSQL_HOME + ": " + (mysqlHome ?: notSet())))
       }
-    } catch (Exception e) {
-      // MySql is optional, eat the exception
-      addBullet(sbInfo, 2, b(getMessage(BIN_ENVIRONMENT_VALIDATION_WARNING, "MySQL", CoreConstants.CMD_MYSQL + ", mysqladmin")))
+      addBullet(check.info, 2, b(getMessage(BIN_ENVIRONMENT_VALIDATION_WARNING, "MySQL", CoreConstants.CMD_MYSQL + ", mysqladmin")))
     }
   }
 
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.core
+
+import com.magnet.tools.cli.messages.CommonMessages
+import com.magnet.tools.utils.AnsiHelper
+import org.codehaus.groovy.runtime.StackTraceUtils
+
+/**
+ * {@link Shell} decorator buffering the output of a task running concurrently with other tasks.
+ * Everything else is delegated to the decorated shell.
+ * The buffered output is written at once to the decorated shell writer by {@link #flush()},
+ * so the outputs of concurrent tasks never interleave.
+ */
+class BufferedShell implements Shell {
+
+  /**
+   * Decorated shell
+   */
+  @Delegate
+  private final Shell delegate
+
+  private final StringWriter buffer = new StringWriter()
+
+  private final PrintWriter bufferWriter = new PrintWriter(buffer)
+
+  /**
+   * Ctor
+   * @param delegate decorated shell
+   */
+  BufferedShell(Shell delegate) {
+    this.delegate = delegate
+  }
+
+  /**
+   * Write the buffered output to the decorated shell writer, and clear the buffer
+   */
+  void flush() {
+    bufferWriter.flush()
+    PrintWriter out = delegate.getWriter()
+    if (out) {
+      synchronized (out) {
+        out.print(buffer.toString())
+        out.flush()
+      }
+    }
+    buffer.getBuffer().setLength(0)
+  }
+
+  @Override
+  PrintWriter getWriter() {
+    return bufferWriter
+  }
+
+  @Override
+  void error(String s) {
+    bufferWriter.println(AnsiHelper.renderError(CommonMessages.errorMessage(s)))
+  }
+
+  @Override
+  void error(String s, Throwable t) {
+    bufferWriter.println(AnsiHelper.renderError(CommonMessages.errorMessage(s)))
+    bufferWriter.println(AnsiHelper.renderError(t.toString()))
+    StackTraceUtils.printSanitizedStackTrace(t, bufferWriter)
+  }
+
+  @Override
+  void warn(String s) {
+    bufferWriter.println(AnsiHelper.bold(CommonMessages.warningMessage(s)))
+  }
+
+  @Override
+  void info(String s) {
+    bufferWriter.println(s)
+  }
+
+  @Override
+  void boldInfo(String s) {
+    info(AnsiHelper.bold(s))
+  }
+
+  @Override
+  void boldGreen(String s) {
+    info(AnsiHelper.boldGreen(s))
+  }
+
+  @Override
+  void trace(String s) {
+    if (delegate.getSettings()?.isTracing()) {
+      bufferWriter.println(AnsiHelper.boldGreen("[TRACE] ") + s)
+    }
+  }
+}
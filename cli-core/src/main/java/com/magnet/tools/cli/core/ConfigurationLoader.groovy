@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.core
+
+import groovy.util.logging.Slf4j
+
+import java.security.MessageDigest
+
+/**
+ * Load the tool configuration, merged from all the {@link CoreConstants#MAGNET_CONFIGURATION_FILE}
+ * and {@link CoreConstants#MAGNET_CONFIGURATION_OVERRIDE_FILE} found on the classpath.
+ * <p>
+ * Parsing those groovy scripts dominates the tool startup, so the merged configuration can be saved at build time
+ * in a {@link CoreConstants#CONFIGURATION_SNAPSHOT_FILE}, see {@link #main}. The snapshot is used instead of
+ * the scripts as long as its fingerprint matches: same jars and same override files. Otherwise, when the user
+ * changed an override or added one to the classpath for instance, the scripts are parsed.
+ * <p>
+ * The values depending on the environment (see {@link #getEnvironmentDefaults()}) are not taken from the snapshot,
+ * but computed again when it is loaded.
+ */
+@Slf4j
+class ConfigurationLoader {
+
+  /**
+   * Snapshot format version
+   */
+  private static final int SNAPSHOT_VERSION = 1
+
+  /**
+   * Load the merged configuration, from the snapshot if it is up-to-date, from the configuration scripts otherwise
+   * @param loader class loader on which the configuration files are looked up
+   * @return merged configuration
+   */
+  static ConfigObject load(ClassLoader loader) {
+    URL snapshot = loader.getResource(CoreConstants.CONFIGURATION_SNAPSHOT_FILE)
+    if (snapshot) {
+      try {
+        ConfigObject config = readSnapshot(snapshot, getFingerprint(loader))
+        if (config) {
+          return config
+        }
+        log.info("Configuration snapshot $snapshot is outdated")
+      } catch (Exception e) {
+        log.warn("Cannot read configuration snapshot $snapshot", e)
+      }
+    }
+    return slurp(loader)
+  }
+
+  /**
+   * Merge all {@link CoreConstants#MAGNET_CONFIGURATION_FILE} so that services get meshed with all those that are
+   * declared on the classpath.
+   * Use the {@link CoreConstants#MAGNET_CONFIGURATION_OVERRIDE_FILE} to override any setting (without merge)
+   * @param loader class loader on which the configuration files are looked up
+   * @return the merged groovy configuration
+   */
+  static ConfigObject slurp(ClassLoader loader) {
+    ConfigSlurper slurper = new ConfigSlurper()
+    ConfigObject mainConfig = new ConfigObject()
+    for (URL url : loader.getResources(CoreConstants.MAGNET_CONFIGURATION_FILE)) {
+      mainConfig.merge(slurper.parse(url))
+    }
+    // add override
+    for (URL url : loader.getResources(CoreConstants.MAGNET_CONFIGURATION_OVERRIDE_FILE)) {
+      mainConfig.merge(slurper.parse(url))
+    }
+    return mainConfig
+  }
+
+  /**
+   * Default values of the configuration entries depending on the environment, keyed by their flattened key.
+   * {@link CoreConstants#MAGNET_CONFIGURATION_FILE} uses them, and they are computed again when a snapshot is loaded.
+   * @return default values
+   */
+  static Map<String, Object> getEnvironmentDefaults() {
+    // Directory for history, logs, login credentials
+    File magnetHome
+    if (System.getProperty(CoreConstants.MAB_HOME)) {
+      magnetHome = new File(System.getProperty(CoreConstants.MAB_HOME))
+    } else if (System.getenv(CoreConstants.MAB_HOME)) {
+      magnetHome = new File(System.getenv(CoreConstants.MAB_HOME))
+    } else {
+      magnetHome = new File(System.getProperty("user.home"), ".magnet.com")
+    }
+    File magnetDirectory = new File(magnetHome, CoreConstants.TOOL_NAME)
+    if (!magnetDirectory.exists()) {
+      magnetDirectory.mkdirs()
+    }
+    String installationPath = System.getenv(CoreConstants.MAGNET_TOOL_HOME) ?: new File("./..").getAbsolutePath()
+
+    Map<String, Object> defaults = new LinkedHashMap<String, Object>()
+    defaults.put('magnetDirectory', magnetDirectory)
+    defaults.put('installationPath', installationPath)
+    defaults.put('installationDirectory', new File(installationPath))
+    defaults.put('historyFile', new File(magnetDirectory, "magnet.history"))
+    defaults.put('logging.java.util.logging.FileHandler.pattern',
+        "${magnetDirectory}${File.separator}${CoreConstants.LOG_FILE_NAME_PATTERN}".toString())
+    defaults.put('logging.com.magnet.level', System.getenv('MAB_LOG_LEVEL') ?: 'INFO')
+    defaults.put('mavenSettings', System.getenv(CoreConstants.MAGNET_MAVEN_SETTINGS) ?: null)
+    return defaults
+  }
+
+  /**
+   * Fingerprint of the configuration files found on the classpath: the name and size of the jars containing them,
+   * the content digest of the other ones, and the default locale used by the configuration messages.
+   * @param loader class loader on which the configuration files are looked up
+   * @return fingerprint entries, sorted
+   */
+  static List<String> getFingerprint(ClassLoader loader) {
+    List<String> fingerprint = []
+    for (String name : [CoreConstants.MAGNET_CONFIGURATION_FILE, CoreConstants.MAGNET_CONFIGURATION_OVERRIDE_FILE]) {
+      for (URL url : loader.getResources(name)) {
+        if (url.getProtocol() == "jar") {
+          String path = url.getPath()
+          File jar = new File(new URL(path.substring(0, path.indexOf("!/"))).toURI())
+          fingerprint << "${name}:${jar.getName()}:${jar.length()}".toString()
+        } else {
+          MessageDigest md = MessageDigest.getInstance("SHA-1")
+          md.update(url.bytes)
+          fingerprint << "${name}:${md.digest().encodeHex()}".toString()
+        }
+      }
+    }
+    fingerprint << "locale:${Locale.getDefault()}".toString()
+    return fingerprint.sort()
+  }
+
+  /**
+   * Build step: save a snapshot of the merged configuration
+   * @param args output snapshot file, followed by optional directories added to the classpath
+   * (the installation config directory containing the override file for instance)
+   */
+  static void main(String[] args) {
+    if (!args) {
+      System.err.println("Usage: ${ConfigurationLoader.getName()} <snapshot file> [<classpath directory>...]")
+      System.exit(CoreConstants.COMMAND_INVALID_OPTION_VALUE)
+    }
+    URL[] directories = args.drop(1).collect { new File(it).toURI().toURL() } as URL[]
+    ClassLoader loader = new URLClassLoader(directories, ConfigurationLoader.getClassLoader())
+    File file = new File(args[0])
+    file.getParentFile()?.mkdirs()
+    writeSnapshot(loader, file)
+    println("Configuration snapshot saved to $file")
+  }
+
+  /**
+   * Save a snapshot of the merged configuration.
+   * The environment dependent entries still having their default value are not saved.
+   * @param loader class loader on which the configuration files are looked up
+   * @param file snapshot file
+   */
+  static void writeSnapshot(ClassLoader loader, File file) {
+    ConfigObject config = slurp(loader)
+    Map flattened = config.flatten()
+    List<String> derivedKeys = getEnvironmentDefaults().findAll { k, v ->
+      flattened.containsKey(k) && flattened[k]?.toString() == v?.toString()
+    }.collect { it.key } as List<String>
+
+    file.withObjectOutputStream { ObjectOutputStream out ->
+      out.writeInt(SNAPSHOT_VERSION)
+      out.writeObject(new ArrayList<String>(getFingerprint(loader)))
+      out.writeObject(new ArrayList<String>(derivedKeys))
+      out.writeObject(toNode(config, derivedKeys, ""))
+    }
+  }
+
+  /**
+   * Read a snapshot of the merged configuration
+   * @param snapshot snapshot location
+   * @param fingerprint fingerprint of the current classpath
+   * @return the configuration, or null if the snapshot does not match the fingerprint
+   */
+  static ConfigObject readSnapshot(URL snapshot, List<String> fingerprint) {
+    ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(snapshot.openStream()))
+    try {
+      if (input.readInt() != SNAPSHOT_VERSION || input.readObject() != fingerprint) {
+        return null
+      }
+      List<String> derivedKeys = (List<String>) input.readObject()
+      ConfigObject config = fromNode((SnapshotNode) input.readObject())
+      Map<String, Object> defaults = getEnvironmentDefaults()
+      for (String key : derivedKeys) {
+        setValue(config, key, defaults[key])
+      }
+      return config
+    } finally {
+      input.close()
+    }
+  }
+
+  private static SnapshotNode toNode(ConfigObject config, List<String> excludedKeys, String prefix) {
+    SnapshotNode node = new SnapshotNode()
+    config.each { k, v ->
+      String key = prefix + k
+      if (v instanceof ConfigObject) {
+        node.put(k.toString(), toNode((ConfigObject) v, excludedKeys, key + "."))
+      } else if (!excludedKeys.contains(key)) {
+        node.put(k.toString(), v)
+      }
+    }
+    return node
+  }
+
+  private static ConfigObject fromNode(SnapshotNode node) {
+    ConfigObject config = new ConfigObject()
+    node.each { String k, v ->
+      config.put(k, v instanceof SnapshotNode ? fromNode((SnapshotNode) v) : v)
+    }
+    return config
+  }
+
+  private static void setValue(ConfigObject config, String flattenedKey, Object value) {
+    List<String> names = flattenedKey.tokenize('.')
+    ConfigObject parent = config
+    for (String name : names.subList(0, names.size() - 1)) {
+      parent = (ConfigObject) parent.getProperty(name)
+    }
+    parent.put(names.last(), value)
+  }
+
+  /**
+   * Serializable form of a {@link ConfigObject}
+   */
+  private static class SnapshotNode extends LinkedHashMap<String, Object> {
+    private static final long serialVersionUID = 1L
+  }
+}
@@ -43,6 +43,10 @@ public interface CoreConstants {
   String OPTION_FORCE = "force";
   String MAGNET_CONFIGURATION_FILE = "magnet_configuration.groovy";
   String MAGNET_CONFIGURATION_OVERRIDE_FILE = "magnet_configuration_override.groovy";
+  /**
+   * Merged configuration saved at build time, see {@link ConfigurationLoader}
+   */
+  String CONFIGURATION_SNAPSHOT_FILE = "magnet_configuration.snapshot";
   int COMMAND_UNKNOWN_ERROR_CODE = -1;
   int COMMAND_PARSING_ERROR_CODE = -2;
   int COMMAND_ABORT_CODE = -3;
@@ -57,7 +61,22 @@ public interface CoreConstants {
    */
   int COMMAND_UNKNOWN_EXECUTABLE_CODE = -20;
   int COMMAND_OK_CODE = 0;
-  String MAB_LOCK_FILE = "mab.lock";
+  /**
+   * File under the magnet directory describing the running daemon, see {@link ShellDaemon}
+   */
+  String DAEMON_FILE = "daemon.properties";
+  /**
+   * First argument starting the shell as a daemon
+   */
+  String OPTION_DAEMON = "--daemon";
+  /**
+   * Option printing the startup timings, as a table or as JSON with --startup-trace=json, see {@link StartupProfiler}
+   */
+  String OPTION_STARTUP_TRACE = "--startup-trace";
+  /**
+   * Environment variable printing the startup timings when set, to "table" or "json"
+   */
+  String STARTUP_TRACE_ENV = "MAB_STARTUP_TRACE";
   String CMD_MVN = "mvn";
   String CMD_JAVA = "java";
   String CMD_JPS = "jps";
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.core;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed capacity ring buffer of history entries, with a trigram index for the substring and prefix searches.
+ * <p>
+ * Entries are numbered with an ever increasing sequence number, so the index only needs to drop the oldest
+ * entry of its posting lists when the oldest entry is evicted. Each posting list holds the sequence numbers of
+ * the entries containing a trigram, in increasing order. Entries are prefixed with {@link #START} when indexed,
+ * so the trigrams at the start of an entry also serve the prefix searches.
+ * <p>
+ * A search walks backwards the shortest posting list of the searched term trigrams, and checks the candidates.
+ * Terms shorter than a trigram are searched linearly.
+ */
+final class HistoryBuffer {
+
+  /**
+   * Marks the start of an entry in the indexed trigrams
+   */
+  private static final char START = '\u0000';
+
+  private final String[] entries;
+
+  /**
+   * Sequence number of the oldest entry
+   */
+  private int first;
+
+  /**
+   * Sequence number of the next entry
+   */
+  private int end;
+
+  private final Map<Long, Postings> index = new HashMap<Long, Postings>();
+
+  /**
+   * Ctor
+   *
+   * @param capacity maximum number of entries, the oldest ones are evicted first
+   */
+  HistoryBuffer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+    }
+    this.entries = new String[capacity];
+  }
+
+  int capacity() {
+    return entries.length;
+  }
+
+  int size() {
+    return end - first;
+  }
+
+  /**
+   * @param i index of the entry, 0 being the oldest one
+   * @return the entry
+   */
+  String get(int i) {
+    if (i < 0 || i >= size()) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size());
+    }
+    return entries[slot(first + i)];
+  }
+
+  /**
+   * @return the most recent entry, null if empty
+   */
+  String last() {
+    return end == first ? null : entries[slot(end - 1)];
+  }
+
+  /**
+   * Append an entry, evicting the oldest one if full
+   *
+   * @param entry entry to add
+   */
+  void add(String entry) {
+    if (size() == entries.length) {
+      String evicted = entries[slot(first)];
+      String indexed = START + evicted;
+      for (int i = 0; i + 3 <= indexed.length(); i++) {
+        Long key = trigram(indexed, i);
+        Postings postings = index.get(key);
+        if (postings != null && postings.first() == first) {
+          postings.removeFirst();
+          if (postings.isEmpty()) {
+            index.remove(key);
+          }
+        }
+      }
+      entries[slot(first)] = null;
+      first++;
+    }
+    int seq = end++;
+    entries[slot(seq)] = entry;
+    String indexed = START + entry;
+    for (int i = 0; i + 3 <= indexed.length(); i++) {
+      Long key = trigram(indexed, i);
+      Postings postings = index.get(key);
+      if (postings == null) {
+        postings = new Postings();
+        index.put(key, postings);
+      }
+      if (postings.isEmpty() || postings.last() != seq) {
+        postings.add(seq);
+      }
+    }
+  }
+
+  void clear() {
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = null;
+    }
+    index.clear();
+    first = 0;
+    end = 0;
+  }
+
+  /**
+   * @param term substring to search for
+   * @param before index from which to search backwards, excluded
+   * @return index of the most recent entry before the given index containing the term, -1 if none
+   */
+  int lastIndexOf(String term, int before) {
+    return search(term, before, false);
+  }
+
+  /**
+   * @param prefix prefix to search for
+   * @param before index from which to search backwards, excluded
+   * @return index of the most recent entry before the given index starting with the prefix, -1 if none
+   */
+  int lastIndexOfPrefix(String prefix, int before) {
+    return search(prefix, before, true);
+  }
+
+  /**
+   * @return read-only view of the entries, from the oldest to the most recent one
+   */
+  List<String> asList() {
+    return new AbstractList<String>() {
+      @Override
+      public String get(int i) {
+        return HistoryBuffer.this.get(i);
+      }
+
+      @Override
+      public int size() {
+        return HistoryBuffer.this.size();
+      }
+    };
+  }
+
+  private int search(String term, int before, boolean prefix) {
+    int limit = first + Math.min(before, size());
+    String indexed = prefix ? START + term : term;
+    if (indexed.length() < 3) {
+      for (int seq = limit - 1; seq >= first; seq--) {
+        if (matches(seq, term, prefix)) {
+          return seq - first;
+        }
+      }
+      return -1;
+    }
+
+    // the shortest posting list gives the fewest candidates
+    Postings candidates = null;
+    for (int i = 0; i + 3 <= indexed.length(); i++) {
+      Postings postings = index.get(trigram(indexed, i));
+      if (postings == null) {
+        return -1;
+      }
+      if (candidates == null || postings.size() < candidates.size()) {
+        candidates = postings;
+      }
+    }
+    for (int i = candidates.lastIndexBefore(limit); i >= 0; i--) {
+      int seq = candidates.get(i);
+      if (matches(seq, term, prefix)) {
+        return seq - first;
+      }
+    }
+    return -1;
+  }
+
+  private boolean matches(int seq, String term, boolean prefix) {
+    String entry = entries[slot(seq)];
+    return prefix ? entry.startsWith(term) : entry.contains(term);
+  }
+
+  private int slot(int seq) {
+    return seq % entries.length;
+  }
+
+  private static Long trigram(String s, int i) {
+    return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+  }
+
+  /**
+   * Increasing sequence numbers of the entries containing a trigram, in a growable ring
+   */
+  private static final class Postings {
+
+    private int[] values = new int[2];
+
+    private int head;
+
+    private int count;
+
+    int size() {
+      return count;
+    }
+
+    boolean isEmpty() {
+      return count == 0;
+    }
+
+    int get(int i) {
+      return values[(head + i) % values.length];
+    }
+
+    int first() {
+      return values[head];
+    }
+
+    int last() {
+      return get(count - 1);
+    }
+
+    void add(int seq) {
+      if (count == values.length) {
+        int[] grown = new int[values.length * 2];
+        for (int i = 0; i < count; i++) {
+          grown[i] = get(i);
+        }
+        values = grown;
+        head = 0;
+      }
+      values[(head + count) % values.length] = seq;
+      count++;
+    }
+
+    void removeFirst() {
+      head = (head + 1) % values.length;
+      count--;
+    }
+
+    /**
+     * @return position of the greatest sequence number lower than the given one, -1 if none
+     */
+    int lastIndexBefore(int seq) {
+      int low = 0;
+      int high = count - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (get(mid) < seq) {
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      return high;
+    }
+  }
+}
@@ -18,25 +18,61 @@ package com.magnet.tools.cli.core;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.Reader;
-import java.util.ArrayList;
+import java.io.Writer;
 import java.util.List;
 
+import com.magnet.tools.utils.FileHelper;
+import com.magnet.tools.utils.ProcessLock;
 import jline.History;
 
 /**
  * Fix various issue in original {@link History} implementation. Notably on Windows
+ * <p>
+ * Entries are kept in a fixed capacity {@link HistoryBuffer}, indexed for the event expansion and the reverse search.
+ * The history file is appended to as entries are added, and compacted to the last entries when it grew
+ * to {@link #COMPACTION_FACTOR} times the capacity, instead of being rewritten at every startup.
+ * Several shells can share the history file: it is accessed under a {@link ProcessLock}, and compacted to
+ * the last lines of the file, whichever shell added them.
  */
 public class MagnetHistory extends History {
 
   public static final char EXPANDED_EVENT_CHAR = '!';
   public static final char REPLACEMENT_EVENT_CHAR = '^';
+
+  /**
+   * Default maximum number of entries
+   */
+  public static final int DEFAULT_CAPACITY = 500;
+
+  /**
+   * The history file is compacted when it holds that many times the capacity lines
+   */
+  static final int COMPACTION_FACTOR = 2;
+
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
   /**
    * The history file. Mutable
    */
   private File historyFile;
 
+  private ProcessLock lock;
+
+  private HistoryBuffer buffer;
+
+  private int currentIndex;
+
+  /**
+   * Number of lines in the history file, not counting the lines added by other shells since it was read
+   */
+  private int fileLines;
+
   /**
    * Ctor
    *
@@ -44,12 +80,26 @@ public class MagnetHistory extends History {
    * @throws IOException an error occurred
    */
   public MagnetHistory(File historyFile) throws IOException {
-    super(historyFile);
-    this.historyFile = historyFile;
+    this(historyFile, DEFAULT_CAPACITY);
   }
 
   /**
-   * Override original {@link History#load(java.io.Reader)} so we can close the reader (bug in original JLINE lib)
+   * Ctor
+   *
+   * @param historyFile file containing history
+   * @param capacity maximum number of entries
+   * @throws IOException an error occurred
+   */
+  public MagnetHistory(File historyFile, int capacity) throws IOException {
+    super();
+    this.buffer = new HistoryBuffer(capacity);
+    super.setMaxSize(capacity);
+    setHistoryFile(historyFile);
+  }
+
+  /**
+   * Override original {@link History#load(java.io.Reader)} so we can close the reader (bug in original JLINE lib).
+   * Lines are added as they are read, only the last ones are kept.
    *
    * @param reader history file reader
    * @throws IOException an exception occurred
@@ -59,16 +109,13 @@ public class MagnetHistory extends History {
     BufferedReader r = null;
     try {
       r = new BufferedReader(reader);
-      List<String> lines = new ArrayList<String>();
       String line;
 
       while ((line = r.readLine()) != null) {
-        lines.add(line);
-      }
-
-      for (String l : lines) {
-        addToHistory(l);
+        fileLines++;
+        record(line);
       }
+      currentIndex = buffer.size();
     } finally {
       if (null != r) {
         try {
@@ -78,25 +125,53 @@ public class MagnetHistory extends History {
     }
   }
 
+  /**
+   * Load the history file, compact it if it grew too much, and append the next entries to it
+   *
+   * @param historyFile history file
+   * @throws IOException an error occurred
+   */
   @Override
   public void setHistoryFile(File historyFile) throws IOException {
-    super.setHistoryFile(historyFile);
+    close();
     this.historyFile = historyFile;
+    this.lock = ProcessLock.forFile(historyFile);
+    lock.lock();
+    try {
+      fileLines = 0;
+      if (historyFile.isFile()) {
+        load(new FileInputStream(historyFile));
+      }
+      if (fileLines >= COMPACTION_FACTOR * buffer.capacity()) {
+        compact();
+      }
+    } finally {
+      lock.unlock();
+    }
   }
 
   /**
-   * Override original clear() by deleting the associated file
+   * Override original clear() by deleting the associated file. The lock is held, as other shells may append to
+   * the file or compact it meanwhile
    */
   @Override
   public void clear() {
-    super.clear();
+    buffer.clear();
+    currentIndex = 0;
     close();
-    if (!this.historyFile.delete()) {
-      throw new IllegalStateException("Cannot delete history file " + this.historyFile);
-    }
+    // setHistoryFile takes the same lock again
+    ProcessLock fileLock = lock;
     try {
-      this.historyFile.createNewFile();
-      setHistoryFile(this.historyFile);
+      fileLock.lock();
+      try {
+        if (!this.historyFile.delete()) {
+          throw new IllegalStateException("Cannot delete history file " + this.historyFile);
+        }
+        this.historyFile.createNewFile();
+        setHistoryFile(this.historyFile);
+      } finally {
+        fileLock.unlock();
+      }
     } catch (IOException ioe) {
       throw new IllegalStateException("Cannot re-initialize history file " + this.historyFile);
     }
@@ -109,6 +184,7 @@ public class MagnetHistory extends History {
   public void close() {
     if (getOutput() != null) {
       getOutput().close();
+      setOutput(null);
     }
   }
 
@@ -120,17 +196,212 @@ public class MagnetHistory extends History {
    */
   @Override
   public void addToHistory(final String line) {
-    if (line == null || line.length() == 0) {
+    if (!record(line)) {
       return;
     }
 
+    currentIndex = buffer.size();
+
+    if (historyFile != null) {
+      try {
+        lock.lock();
+        try {
+          append(line);
+          if (++fileLines >= COMPACTION_FACTOR * buffer.capacity()) {
+            compact();
+          }
+        } finally {
+          lock.unlock();
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Cannot write history file " + this.historyFile, e);
+      }
+    }
+  }
+
+  /**
+   * Entries are written to the history file as they are added, nothing to flush
+   */
+  @Override
+  public void flushBuffer() throws IOException {
+  }
+
+  /**
+   * Change the capacity, keeping the most recent entries
+   *
+   * @param maxSize new capacity
+   */
+  @Override
+  public void setMaxSize(final int maxSize) {
+    HistoryBuffer resized = new HistoryBuffer(maxSize);
+    for (int i = Math.max(0, buffer.size() - maxSize); i < buffer.size(); i++) {
+      resized.add(buffer.get(i));
+    }
+    buffer = resized;
+    currentIndex = buffer.size();
+    super.setMaxSize(maxSize);
+  }
+
+  @Override
+  public int size() {
+    return buffer.size();
+  }
+
+  @Override
+  public boolean moveToLastEntry() {
+    int lastEntry = buffer.size() - 1;
+    if (lastEntry >= 0 && lastEntry != currentIndex) {
+      currentIndex = lastEntry;
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void moveToEnd() {
+    currentIndex = buffer.size();
+  }
+
+  @Override
+  public boolean moveToFirstEntry() {
+    if (buffer.size() > 0 && currentIndex != 0) {
+      currentIndex = 0;
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public int getCurrentIndex() {
+    return currentIndex;
+  }
+
+  @Override
+  public void setCurrentIndex(int index) {
+    if (index >= 0 && index < buffer.size()) {
+      currentIndex = index;
+    }
+  }
+
+  @Override
+  public String current() {
+    return currentIndex >= buffer.size() ? "" : buffer.get(currentIndex);
+  }
+
+  @Override
+  public boolean previous() {
+    if (currentIndex <= 0) {
+      return false;
+    }
+    currentIndex--;
+    return true;
+  }
+
+  @Override
+  public boolean next() {
+    if (currentIndex >= buffer.size()) {
+      return false;
+    }
+    currentIndex++;
+    return true;
+  }
+
+  @Override
+  public String getHistory(int index) {
+    return buffer.get(index);
+  }
+
+  @Override
+  public List getHistoryList() {
+    return buffer.asList();
+  }
+
+  @Override
+  public int searchBackwards(String searchTerm, int startIndex) {
+    return buffer.lastIndexOf(searchTerm, startIndex);
+  }
+
+  /**
+   * Search backward in history for an entry starting with a prefix
+   *
+   * @param prefix prefix to search for
+   * @param startIndex the index from which on to search, excluded
+   * @return index of the entry, or -1 if none
+   */
+  public int searchPrefixBackwards(String prefix, int startIndex) {
+    return buffer.lastIndexOfPrefix(prefix, startIndex);
+  }
+
+  @Override
+  public String toString() {
+    return buffer.asList().toString();
+  }
+
+  /**
+   * Add a line to the buffer, unless it is empty, an unexpanded event or the same as the last entry
+   *
+   * @return whether the line was added
+   */
+  private boolean record(String line) {
+    if (line == null || line.length() == 0) {
+      return false;
+    }
+
     char c = line.charAt(0);
 
     if (c == EXPANDED_EVENT_CHAR || c == REPLACEMENT_EVENT_CHAR) {
-      return; // do not add unexpanded events.
+      return false; // do not add unexpanded events.
+    }
+
+    if (line.equals(buffer.last())) {
+      return false;
     }
 
-    super.addToHistory(line);
+    buffer.add(line);
+    return true;
+  }
 
+  /**
+   * Rewrite the history file with its last lines only, and append to it again. The lock must be held.
+   */
+  private void compact() throws IOException {
+    // other shells may have appended to the file since it was loaded
+    HistoryBuffer latest = new HistoryBuffer(buffer.capacity());
+    BufferedReader reader = new BufferedReader(new FileReader(historyFile));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.length() > 0 && !line.equals(latest.last())) {
+          latest.add(line);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    File compacted = new File(historyFile.getPath() + ".tmp");
+    PrintWriter writer = new PrintWriter(new FileWriter(compacted));
+    try {
+      for (int i = 0; i < latest.size(); i++) {
+        writer.println(latest.get(i));
+      }
+    } finally {
+      writer.close();
+    }
+    FileHelper.replace(compacted, historyFile);
+    fileLines = latest.size();
+  }
+
+  /**
+   * Append a line to the history file. The file is opened for each line, as another shell may replace it
+   * when compacting it. The lock must be held.
+   */
+  private void append(String line) throws IOException {
+    Writer writer = new FileWriter(historyFile, true);
+    try {
+      writer.write(line);
+      writer.write(LINE_SEPARATOR);
+    } finally {
+      writer.close();
+    }
   }
 }
@@ -25,7 +25,7 @@ import groovy.util.logging.Slf4j
 import static com.magnet.tools.utils.StringHelper.*
 
 /**
- * Implementation for {@link ShellSettings}
+ * Implementation for {@link ShellSettings}, backed by a write-behind {@link SettingsStore}
  */
 @Slf4j
 class MagnetSettings extends AbstractConfigService implements ShellSettings {
@@ -37,9 +37,41 @@ class MagnetSettings extends AbstractConfigService implements ShellSettings {
   static final String KEY_CURRENT_CLOUD_INSTANCE = 'currentCloudInstance'
   static final String KEY_CURRENT_CLOUD_PROVIDER = 'currentCloudProvider'
 
+  /**
+   * Maximum number of invoked scripts remembered, the least recently invoked ones are forgotten first
+   */
+  static final int MAX_INVOKED_SCRIPTS = 50
+
+  private final SettingsStore store
 
   MagnetSettings(Shell context) {
     super(new File(context.getMagnetDirectory(), CONFIG_FILE_NAME))
+    this.store = new SettingsStore(configFile)
+  }
+
+  /**
+   * @return a copy of the settings, changing it has no effect
+   */
+  @Override
+  protected ConfigObject getConfigObject() {
+    ConfigObject config = new ConfigObject()
+    config.putAll(store.asMap())
+    return config
+  }
+
+  /**
+   * Save the pending changes now
+   */
+  @Override
+  void flushConfig() {
+    store.flush()
+  }
+
+  /**
+   * Save the pending changes now
+   */
+  void flush() {
+    store.flush()
   }
 
   @Override
@@ -145,9 +177,10 @@ class MagnetSettings extends AbstractConfigService implements ShellSettings {
 
   @Override
   void addUserAlias(String name, List<String> args) {
-    ConfigObject aliases = getUserAliases() as ConfigObject
+    Map<String, List<String>> aliases = getUserAliases()
     UserAlias.getNParams(args)
-    set(KEY_ALIASES, aliases == null ? [(name): args] : aliases + [(name): args])
+    aliases.put(name, args)
+    set(KEY_ALIASES, aliases)
   }
 
   @Override
@@ -169,24 +202,22 @@ class MagnetSettings extends AbstractConfigService implements ShellSettings {
   }
 
   /**
-   * cache
+   * cache, keeping the {@link #MAX_INVOKED_SCRIPTS} most recently invoked scripts
    * @param source the url or file path to the invoke scriptd
    */
   @Override
   void cacheInvokedScripts(String source) {
-    def key = KEY_PREFIX + System.currentTimeMillis()
-    Map entry = [(key): source]
-    ConfigObject scripts = getInvokedScripts() as ConfigObject
-    if (!scripts) {
-      set(KEY_SCRIPTS, entry)
-      return
-    }
+    Map<String, String> scripts = getInvokedScripts()
     // check for dup
-    def dup = ((Map) scripts).find { e -> e.getValue() == source }
+    def dup = scripts.find { e -> e.getValue() == source }
     if (dup) {
       scripts.remove(dup.getKey())
     }
-    set(KEY_SCRIPTS, scripts + entry)
+    scripts.put(KEY_PREFIX + System.currentTimeMillis(), source)
+    while (scripts.size() > MAX_INVOKED_SCRIPTS) {
+      scripts.remove(scripts.keySet().min { it.substring(KEY_PREFIX.length()) as long })
+    }
+    set(KEY_SCRIPTS, scripts)
   }
 
   @Override
@@ -242,16 +273,12 @@ class MagnetSettings extends AbstractConfigService implements ShellSettings {
 
   @Override
   void set(String key, Object value) {
-    getConfigObject()."${key}" = value
-    flushConfig()
+    store.set(key, value)
   }
 
   @Override
   Object get(String key) {
-    if (getConfigObject().containsKey(key)) {
-      return getConfigObject().getProperty(key)
-    }
-    return null
+    return store.get(key)
   }
 
   static class UserAlias extends AbstractCommand {
@@ -39,6 +39,7 @@ import org.fusesource.jansi.Ansi
 import org.fusesource.jansi.AnsiConsole
 
 import java.lang.reflect.Constructor
+import java.security.MessageDigest
 
 /**
  * Base implementation for {@link Shell}
@@ -97,6 +98,26 @@ class MagnetShell implements Shell {
 
   private Map<String, Object> aliasesMap
 
+  /**
+   * Reverse alias index: main command name of each alias
+   */
+  private final Map<String, String> mainNames = [:]
+
+  /**
+   * Resolved command classes and constructors, by command main name
+   */
+  private final Map<String, CommandFactory> commandFactories = [:]
+
+  /**
+   * Single instances of the {@link StatelessCommand}s, by command main name
+   */
+  private final Map<String, Command> statelessCommands = [:]
+
+  /**
+   * Classes compiled from groovy command sources, by source URL
+   */
+  private final Map<String, CompiledClass> compiledClasses = [:]
+
   private final Map<String, ShellExtension> extensionsMap
 
   /**
@@ -146,7 +167,8 @@ class MagnetShell implements Shell {
       if (!historyFile.exists()) {
         historyFile.createNewFile()
       }
-      history = new MagnetHistory(historyFile)
+      int historySize = configuration.historySize ?: MagnetHistory.DEFAULT_CAPACITY
+      history = StartupProfiler.time("history") { new MagnetHistory(historyFile, historySize) }
     } else {
       history = null
     }
@@ -158,12 +180,15 @@ class MagnetShell implements Shell {
         for (alias in v.get(ALIASES_KEY)) this.aliasesMap.put(alias, v)
       }
     }
+    invalidateCommands()
 
     // for groovy interpreter
-    parser = new Parser()
-    interpreter = new Interpreter(getClass().getClassLoader(), new Binding())
+    StartupProfiler.time("groovy interpreter") {
+      parser = new Parser()
+      interpreter = new Interpreter(getClass().getClassLoader(), new Binding())
+    }
     if (isConsoleMode) {
-      terminal = Terminal.setupTerminal()
+      terminal = StartupProfiler.time("terminal") { Terminal.setupTerminal() }
 
       log.debug("Terminal: $terminal . Supported: $terminal.supported, " +
           "Width: ${terminal.getTerminalWidth()}, " +
@@ -183,7 +208,7 @@ class MagnetShell implements Shell {
     // interpret as groovy if first token is not a command
     def l = line.trim()
     def tokens = l.split(/\s/)
-    if (!getCommand(tokens[0]) && !tokens[0].startsWith('!')) {
+    if (!isCommand(tokens[0]) && !tokens[0].startsWith('!')) {
       return interpret([l])
     }
 
@@ -386,6 +411,9 @@ class MagnetShell implements Shell {
     getWriter().println(CommonMessages.bye())
     this.exited = true
     this.history.close()
+    if (session instanceof MagnetSettings) {
+      ((MagnetSettings) session).flush()
+    }
   }
 
   @Override
@@ -404,6 +432,7 @@ class MagnetShell implements Shell {
           CommonMessages.getMessage(CommonMessages.COMMAND_ALREADY_REGISTERED, command.name))
     }
     commandsMap.put(command.name, [(URL_KEY): url.toExternalForm()])
+    invalidateCommands()
     return command.name
   }
 
@@ -430,6 +459,7 @@ class MagnetShell implements Shell {
           }
         }
         commandsMap.put(name, spec)
+        invalidateCommands()
         break
     }
   }
@@ -463,14 +493,38 @@ class MagnetShell implements Shell {
     } else {
       writer.println(CommonMessages.getMessage(CommonMessages.COMMAND_UNREGISTED, name))
       if (spec.containsKey(ALIASES_KEY)) {
-        String alias = spec.get(ALIASES_KEY)
-        if (aliasesMap.remove(alias)) {
+        List<String> aliases = spec.get(ALIASES_KEY)
+        if (aliases.findAll { aliasesMap.remove(it) }) {
           info(CommonMessages.getMessage(CommonMessages.ALIAS_UNREGISTERED))
         }
       }
+      invalidateCommands()
     }
   }
 
+  /**
+   * Rebuild the reverse alias index, and forget the resolved command classes and instances,
+   * after the registered commands changed
+   */
+  private void invalidateCommands() {
+    mainNames.clear()
+    commandsMap.each { String k, v ->
+      for (alias in v.get(ALIASES_KEY)) {
+        mainNames.put(alias, k)
+      }
+    }
+    commandFactories.clear()
+    statelessCommands.clear()
+  }
+
+  /**
+   * @param name command name, alias or user alias
+   * @return whether a command can be found for that name, without instantiating it
+   */
+  private boolean isCommand(String name) {
+    return commandsMap.containsKey(name) || aliasesMap.containsKey(name) || getSettings().getUserAliasCommand(name) != null
+  }
+
   @Override
   List<Diagnostic> validate(Object target, List<String> filter) {
     if (null == target) {
@@ -526,23 +580,7 @@ class MagnetShell implements Shell {
 
     if (!(command instanceof MagnetSettings.UserAlias)) {
       log.debug("Instantiating command for $name")
-      if (value[CLASS_KEY]) {
-        if (isCommandMainName) {
-          command = constructCommand(name, value)
-        } else {
-          // find the main name first (this is important for displaying the help
-          String mainName = commandsMap.find { k, v -> v.get(ALIASES_KEY)?.contains(name) }?.getKey()
-          if (!mainName) {
-            throw new IllegalStateException(CommonMessages.getMessage(CommonMessages.CANNOT_FIND_MAIN_FOR_ALIAS, name))
-          }
-          command = constructCommand(mainName, value)
-        }
-
-      } else if (value[FILE_KEY]) {
-        command = getClassByFile(new File(value[FILE_KEY] as String)).newInstance() as Command
-      } else if (value[URL_KEY]) {
-        command = getClassByURL(new URL(value[URL_KEY] as String)).newInstance() as Command
-      }
+      command = StartupProfiler.time("command ${name}".toString()) { instantiateCommand(name, value, isCommandMainName) }
     }
 
     command?.setShell(this)
@@ -552,34 +590,94 @@ class MagnetShell implements Shell {
     return command
   }
 
+  /**
+   * Instantiate a command, loading its class
+   * @param name command name or alias
+   * @param value command specification
+   * @param isCommandMainName whether the name is the command main name or an alias
+   * @return new command instance
+   */
+  private Command instantiateCommand(String name, Map value, boolean isCommandMainName) {
+    Command command = null
+    if (value[CLASS_KEY]) {
+      if (isCommandMainName) {
+        command = constructCommand(name, value)
+      } else {
+        // find the main name first (this is important for displaying the help
+        String mainName = mainNames.get(name)
+        if (!mainName) {
+          throw new IllegalStateException(CommonMessages.getMessage(CommonMessages.CANNOT_FIND_MAIN_FOR_ALIAS, name))
+        }
+        command = constructCommand(mainName, value)
+      }
+
+    } else if (value[FILE_KEY]) {
+      command = getClassByFile(new File(value[FILE_KEY] as String)).newInstance() as Command
+    } else if (value[URL_KEY]) {
+      command = getClassByURL(new URL(value[URL_KEY] as String)).newInstance() as Command
+    }
+    return command
+  }
+
   private Command constructCommand(String name, Map commandSpecification) {
-    Class<?> clazz = loadClass(commandSpecification[CLASS_KEY] as String)
-    Constructor<?>[] constructors = clazz.declaredConstructors
-    Constructor<?> noArgConstructor = constructors.find { !it.parameterTypes }
+    Command command = statelessCommands.get(name)
+    if (command) {
+      return command
+    }
 
-    if (noArgConstructor) { // for backward compatibility, we choose the no arg constructor first, if it exists
-      return noArgConstructor.newInstance()
+    String className = commandSpecification[CLASS_KEY] as String
+    // classes compiled from the commands source directory are not cached here, so that their changes are picked up:
+    // getClassByURL only compiles them again when they changed
+    boolean cacheable = !getSourceFile(className)
+    CommandFactory factory = commandFactories.get(name)
+    if (!factory) {
+      factory = new CommandFactory(loadClass(className))
+      if (cacheable) {
+        commandFactories.put(name, factory)
+      }
     }
 
     List<String> aliases = commandSpecification.get(ALIASES_KEY)
     Boolean hidden = commandSpecification.get(HIDDEN_KEY) ?: false
-    try {
-      return clazz.newInstance(name, aliases, hidden)
-    } catch (Exception e) {
-      throw new IllegalArgumentException(
-          CommonMessages.getMessage(CommonMessages.CANNOT_INSTANTIATE_COMMAND, name, aliases, hidden), e)
+    command = factory.newInstance(name, aliases, hidden)
+    if (cacheable && command instanceof StatelessCommand) {
+      statelessCommands.put(name, command)
     }
-
-
+    return command
   }
 
   private Class<?> getClassByFile(File resource) {
     return getClassByURL(resource.toURI().toURL())
   }
 
+  /**
+   * Compile a groovy command source, unless it was already compiled and did not change since:
+   * a file is compared by its modification time and size, other resources by their content digest
+   * @param resource groovy source
+   * @return compiled class
+   */
   private Class<?> getClassByURL(URL resource) {
-    def content = resource.getText()
-    return getGroovyClassLoader().parseClass(content);
+    String key = resource.toExternalForm()
+    String content = null
+    String stamp
+    if (resource.getProtocol() == "file") {
+      File file = new File(resource.toURI())
+      stamp = "${file.lastModified()}:${file.length()}"
+    } else {
+      content = resource.getText()
+      MessageDigest md = MessageDigest.getInstance("SHA-1")
+      md.update(content.getBytes("UTF-8"))
+      stamp = md.digest().encodeHex().toString()
+    }
+
+    CompiledClass compiled = compiledClasses.get(key)
+    if (compiled?.stamp == stamp) {
+      return compiled.type
+    }
+    log.debug("Compiling command source $key")
+    Class<?> type = getGroovyClassLoader().parseClass(content ?: resource.getText());
+    compiledClasses.put(key, new CompiledClass(type, stamp))
+    return type
   }
 
   @Override
@@ -808,7 +906,7 @@ class MagnetShell implements Shell {
               default:
                 String ss = str.substring(i);
                 i = str.length();
-                idx = history.searchBackwards(ss, history.getCurrentIndex() - 1);
+                idx = history.searchPrefixBackwards(ss, history.getCurrentIndex() - 1);
                 if (idx < 0) {
                   throw new IllegalArgumentException(CommonMessages.eventNotFound("!" + ss))
                 } else {
@@ -886,4 +984,46 @@ class MagnetShell implements Shell {
 
     return extension
   }
+
+  /**
+   * Resolved command class and constructor
+   */
+  private static class CommandFactory {
+    private final Class<?> type
+
+    /**
+     * for backward compatibility, the no arg constructor is chosen first, if it exists
+     */
+    private final Constructor<?> noArgConstructor
+
+    CommandFactory(Class<?> type) {
+      this.type = type
+      this.noArgConstructor = type.declaredConstructors.find { !it.parameterTypes }
+    }
+
+    Command newInstance(String name, List<String> aliases, Boolean hidden) {
+      if (noArgConstructor) {
+        return (Command) noArgConstructor.newInstance()
+      }
+      try {
+        return (Command) type.newInstance(name, aliases, hidden)
+      } catch (Exception e) {
+        throw new IllegalArgumentException(
+            CommonMessages.getMessage(CommonMessages.CANNOT_INSTANTIATE_COMMAND, name, aliases, hidden), e)
+      }
+    }
+  }
+
+  /**
+   * Class compiled from a groovy command source, with the stamp of the source it was compiled from
+   */
+  private static class CompiledClass {
+    final Class<?> type
+    final String stamp
+
+    CompiledClass(Class<?> type, String stamp) {
+      this.type = type
+      this.stamp = stamp
+    }
+  }
 }
@@ -48,7 +48,7 @@ class Main {
   // Initialize configuration statically from magnet configuration file
   //
   static {
-    CONFIGURATION = getMergedConfiguration()
+    CONFIGURATION = StartupProfiler.time("configuration") { getMergedConfiguration() }
   }
 
   /**
@@ -57,23 +57,32 @@ class Main {
    */
   static void main(String[] args) {
     Integer ret = CoreConstants.COMMAND_UNKNOWN_ERROR_CODE
+    args = StartupProfiler.configure(args)
+    boolean isConsoleMode = (args.size() == 0)
     try {
 
       // Initialize the ANSI console
-      AnsiConsole.systemInstall();
+      StartupProfiler.time("ansi console") { AnsiConsole.systemInstall() }
 
-      boolean isConsoleMode = (args.size() == 0)
+      boolean isDaemonMode = (args.size() > 0 && args[0] == CoreConstants.OPTION_DAEMON)
 
-      Shell shell = new MagnetShell(CONFIGURATION, isConsoleMode)
+      Shell shell = StartupProfiler.time("shell") { new MagnetShell(CONFIGURATION, isConsoleMode) }
 
-      init(shell)
+      StartupProfiler.time("init") { init(shell) }
 
-      ret = isConsoleMode ? runConsole(shell) : runBatchMode(shell, args as List<String>)
+      if (isDaemonMode) {
+        ret = runDaemon(shell)
+      } else {
+        ret = isConsoleMode ? runConsole(shell) : runBatchMode(shell, args as List<String>)
+      }
     } catch (Throwable t) {
       log.error("Mobile Application Builder error", StackTraceUtils.sanitize(t))
       t.printStackTrace()
     } finally {
       log.info("Exiting Mobile Application Builder...")
+      if (!isConsoleMode) {
+        StartupProfiler.dump(System.err)
+      }
     }
 
     System.exit(ret ?: CoreConstants.COMMAND_OK_CODE)
@@ -120,6 +129,8 @@ class Main {
         validate(shell)
         greetings(shell)
         firstTime = false
+        StartupProfiler.mark("first prompt")
+        StartupProfiler.dump(System.err)
       }
 
       try {
@@ -177,27 +188,44 @@ class Main {
 
 
     try {
-      return shell << lineArguments
+      return StartupProfiler.time("command") { shell << lineArguments }
     } finally {
       writer.flush()
       writer.close()
     }
   }
 
+  /**
+   * Run as a daemon executing the batch command lines forwarded by the launcher script, see {@link ShellDaemon}.
+   * The launcher executes in-process the requests handed back by the daemon, so the daemon must not hold any lock
+   * for its lifetime: the files of the magnet directory are only locked while they are read or written, see
+   * {@link com.magnet.tools.utils.ProcessLock}
+   * @return exit value
+   */
+  private static Integer runDaemon(Shell shell) {
+    log.info("Starting daemon...")
+    def ret = validate(shell)
+    if (ret) {
+      return ret
+    }
+    new ShellDaemon(shell).run()
+    return CoreConstants.COMMAND_OK_CODE
+  }
+
   /**
    * Validate mab at startup
    * @return not false, if invalid, false otherwise (as in groovy-truth)
    */
   private static def validate(Shell shell) {
+    return StartupProfiler.time("validate") { doValidate(shell) }
+  }
+
+  private static def doValidate(Shell shell) {
     int ret = CoreConstants.COMMAND_OK_CODE
     if (System.getProperty(CoreConstants.SKIP_VALIDATION)?.equals("true") || shell.configuration.skipValidation?.equals(true)) {
       return ret
     }
-    if (!checkSingleProcess(shell)) {
-      ret = CoreConstants.COMMAND_ABORT_CODE
-    } else {
-      ret = shell << "$CoreConstants.VALIDATE_COMMAND $ValidateCommand.SHORT_OPTION"
-    }
+    ret = shell << "$CoreConstants.VALIDATE_COMMAND $ValidateCommand.SHORT_OPTION"
     if (ret) {
       System.err.println(AnsiHelper.renderError(CommonMessages.validationFailed(ret)))
       if (!(System.getProperty(CoreConstants.ABORT_ON_VALIDATION_FAILURE_FLAG)?.equalsIgnoreCase('false'))) {
@@ -207,31 +235,6 @@ class Main {
     }
   }
 
-  /**
-   * Ensure that there is a single instance of mab process
-   * This is only called during the startup phase
-   * @return false if there already is a mab.lock (suspecting an existing process)
-   */
-  private static boolean checkSingleProcess(Shell shell) {
-    File lockFile = new File(shell.getMagnetDirectory(), CoreConstants.MAB_LOCK_FILE)
-    if (lockFile.exists()) {
-      String msg = CommonMessages.getMessage(CommonMessages.ANOTHER_MAB_IS_RUNNING, lockFile.getAbsolutePath())
-      System.err.println(AnsiHelper.renderError(msg))
-      return false;
-    }
-    //create lock file
-    lockFile.createNewFile()
-
-    //add shutdown hook
-    Runtime.getRuntime().addShutdownHook(new Thread() {
-      public void run() {
-        lockFile.delete()
-      }
-    })
-
-    return true
-  }
-
   /**
    * The greeting message
    * @param shell shell instance
@@ -258,26 +261,14 @@ class Main {
    * Merge all {@link CoreConstants#MAGNET_CONFIGURATION_FILE} so that services get meshed with all those that are
    * declared on the classpath.
    * Use the {@link CoreConstants#MAGNET_CONFIGURATION_OVERRIDE_FILE} to override any setting (without merge)
+   * The configuration snapshot saved at build time is used instead when it is up-to-date, see {@link ConfigurationLoader}
    * @return the merged groovy configuration for the shell
    */
   private static ConfigObject getMergedConfiguration() {
 
     String message = EnvironmentHelper.isWindowsOS() ? CommonMessages.loadingConfiguration() : b(CommonMessages.loadingConfiguration())
     printStealthy(System.out, message)
-    Enumeration<URL> urls = Main.getClassLoader().getResources(CoreConstants.MAGNET_CONFIGURATION_FILE)
-    ConfigSlurper slurper = new ConfigSlurper()
-    def configs = urls.collect { slurper.parse(it) }
-    ConfigObject mainConfig = new ConfigObject()
-
-    for (config in configs) {
-      mainConfig.merge(config)
-    }
-    // add override
-    Enumeration<URL> overrideUrls = Main.getClassLoader().getResources(CoreConstants.MAGNET_CONFIGURATION_OVERRIDE_FILE)
-    def overrideConfigs = overrideUrls.collect { slurper.parse(it) }
-    for (overrideConfig in overrideConfigs) {
-      mainConfig.merge(overrideConfig)
-    }
+    ConfigObject mainConfig = ConfigurationLoader.load(Main.getClassLoader())
     printStealthy(System.out, "                       ")
 
 
@@ -289,7 +280,7 @@ class Main {
     // Logging initialization
     def logging = shell.getConfiguration().logging
     if (logging) {
-      configureLogging(logging.toProperties())
+      StartupProfiler.time("logging") { configureLogging(logging.toProperties()) }
     }
 
     // Locale initialization
@@ -300,14 +291,16 @@ class Main {
       } as List
     }
     if (shell.getSettings()?.getLocale()) {
-      MessagesSupport.currentLocale = MessagesSupport.stringToLocale(shell.getSettings().getLocale())
+      MessagesSupport.setLocale(MessagesSupport.stringToLocale(shell.getSettings().getLocale()))
     }
 
     // Trigger before hooks in order.
     def orderedHookEntries = new TreeMap<Integer, Map>(shell.configuration.beforeHooks)
     for (e in orderedHookEntries) {
-      Hook h = (Hook) Class.forName(e.getValue()).newInstance(e.getKey())
-      h.run(shell)
+      StartupProfiler.time("before hook ${e.getValue()}".toString()) {
+        Hook h = (Hook) Class.forName(e.getValue()).newInstance(e.getKey())
+        h.run(shell)
+      }
     }
 
     def projectPath = shell.getProjectPath()
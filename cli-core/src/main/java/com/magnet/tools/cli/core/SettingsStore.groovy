@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.core
+
+import com.magnet.tools.utils.FileHelper
+import com.magnet.tools.utils.ProcessLock
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import groovy.util.logging.Slf4j
+
+/**
+ * Key/value store backing {@link MagnetSettings}, saved as a JSON object.
+ * <p>
+ * Parsing JSON does not compile anything, unlike the {@link ConfigSlurper} scripts the settings used to be saved as.
+ * Such a legacy file is still read, and saved again as JSON.
+ * <p>
+ * Values are strings, booleans, numbers, and lists or maps of those. They are copied in and out of the store, so
+ * callers can modify the values they got. Changes are written behind: a flush is scheduled
+ * {@link #WRITE_BEHIND_DELAY} ms after the first change, so a burst of changes is saved at once. Pending changes
+ * are also flushed when the JVM exits, by a single shutdown hook for all the stores. The file is replaced by a
+ * temporary file, see {@link FileHelper#replace}: atomically, except on Windows.
+ * <p>
+ * Several shells can share the settings: a flush reads the file again under a {@link ProcessLock}, and only
+ * writes the settings changed by this store over it.
+ */
+@Slf4j
+class SettingsStore {
+
+  /**
+   * Delay in ms between a change and its flush
+   */
+  static final long WRITE_BEHIND_DELAY = 500
+
+  private static Timer timer
+
+  /**
+   * Stores with pending changes, flushed by the shutdown hook
+   */
+  private static final Set<SettingsStore> DIRTY_STORES = new LinkedHashSet<SettingsStore>()
+
+  private static Thread shutdownHook
+
+  final File file
+
+  private Map<String, Object> values
+
+  private final Set<String> changedKeys = new HashSet<String>()
+
+  private boolean dirty
+
+  private TimerTask pendingFlush
+
+  /**
+   * Ctor
+   * @param file settings file, loaded on first access
+   */
+  SettingsStore(File file) {
+    this.file = file
+  }
+
+  /**
+   * @param key setting name
+   * @return a copy of the value, null if not set
+   */
+  synchronized Object get(String key) {
+    return copy(getValues().get(key))
+  }
+
+  /**
+   * @param key setting name
+   * @return whether the setting is set
+   */
+  synchronized boolean containsKey(String key) {
+    return getValues().containsKey(key)
+  }
+
+  /**
+   * Change a setting, it is saved later
+   * @param key setting name
+   * @param value setting value
+   */
+  synchronized void set(String key, Object value) {
+    getValues().put(key, copy(value))
+    changedKeys.add(key)
+    changed()
+  }
+
+  /**
+   * @return a copy of all the settings
+   */
+  synchronized Map<String, Object> asMap() {
+    return (Map<String, Object>) copy(getValues())
+  }
+
+  /**
+   * Save the pending changes now
+   */
+  synchronized void flush() {
+    pendingFlush?.cancel()
+    pendingFlush = null
+    if (!dirty) {
+      return
+    }
+    ProcessLock lock = ProcessLock.forFile(file)
+    lock.lock()
+    try {
+      // other shells may have changed other settings since they were read
+      Map<String, Object> latest = read(getText())
+      for (String key : changedKeys) {
+        latest.put(key, values.get(key))
+      }
+      File tmp = new File(file.getPath() + ".tmp")
+      tmp.getParentFile()?.mkdirs()
+      tmp.setText(JsonOutput.prettyPrint(JsonOutput.toJson(latest)), "UTF-8")
+      FileHelper.replace(tmp, file)
+      values = latest
+      changedKeys.clear()
+      dirty = false
+      synchronized (DIRTY_STORES) {
+        DIRTY_STORES.remove(this)
+      }
+    } finally {
+      lock.unlock()
+    }
+  }
+
+  private Map<String, Object> getValues() {
+    if (values == null) {
+      String text = getText()
+      values = read(text)
+      if (text && !isJson(text)) {
+        log.info("Converting legacy settings file $file")
+        changed()
+      }
+    }
+    return values
+  }
+
+  private String getText() {
+    return file.isFile() ? file.getText("UTF-8").trim() : ""
+  }
+
+  private Map<String, Object> read(String text) {
+    if (!text) {
+      return new LinkedHashMap<String, Object>()
+    }
+    if (isJson(text)) {
+      return (Map<String, Object>) copy(new JsonSlurper().parseText(text))
+    }
+    return (Map<String, Object>) copy(new ConfigSlurper().parse(text))
+  }
+
+  private static boolean isJson(String text) {
+    return text.startsWith("{")
+  }
+
+  private void changed() {
+    dirty = true
+    if (pendingFlush == null) {
+      pendingFlush = new TimerTask() {
+        @Override
+        void run() {
+          try {
+            flush()
+          } catch (Exception e) {
+            log.error("Cannot save settings file $file", e)
+          }
+        }
+      }
+      getTimer().schedule(pendingFlush, WRITE_BEHIND_DELAY)
+    }
+    synchronized (DIRTY_STORES) {
+      DIRTY_STORES.add(this)
+      if (shutdownHook == null) {
+        shutdownHook = new Thread("settings-flush") {
+          public void run() {
+            flushAll()
+          }
+        }
+        Runtime.getRuntime().addShutdownHook(shutdownHook)
+      }
+    }
+  }
+
+  /**
+   * Flush the stores with pending changes, when the JVM exits
+   */
+  private static void flushAll() {
+    List<SettingsStore> stores
+    synchronized (DIRTY_STORES) {
+      stores = new ArrayList<SettingsStore>(DIRTY_STORES)
+    }
+    for (SettingsStore store : stores) {
+      try {
+        store.flush()
+      } catch (Exception e) {
+        log.error("Cannot save settings file ${store.file}", e)
+      }
+    }
+  }
+
+  private static synchronized Timer getTimer() {
+    if (timer == null) {
+      timer = new Timer("settings-writer", true)
+    }
+    return timer
+  }
+
+  /**
+   * Deep copy of a value, as plain collections, strings, booleans and numbers
+   */
+  private static Object copy(Object value) {
+    if (value == null || value instanceof String || value instanceof Boolean || value instanceof Number) {
+      return value
+    }
+    if (value instanceof Map) {
+      Map<String, Object> map = new LinkedHashMap<String, Object>()
+      ((Map) value).each { k, v -> map.put(k.toString(), copy(v)) }
+      return map
+    }
+    if (value instanceof Collection || value instanceof Object[]) {
+      return value.collect { copy(it) }
+    }
+    if (value instanceof File) {
+      return ((File) value).getPath()
+    }
+    return value.toString()
+  }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.core
+
+import groovy.util.logging.Slf4j
+import org.codehaus.groovy.runtime.StackTraceUtils
+
+import java.lang.management.ManagementFactory
+import java.security.SecureRandom
+import java.util.concurrent.Semaphore
+
+/**
+ * Keep a warmed-up shell resident, and execute the batch command lines sent by the launcher script,
+ * so they do not pay the JVM startup, configuration loading and command class loading every time.
+ * <p>
+ * The daemon listens on the loopback interface only. Its port, process id and a random token are written
+ * to the {@link CoreConstants#DAEMON_FILE} under the magnet directory, readable by its owner only.
+ * The daemon is serial: a single shell, and its writer, execute one request at a time. Each connection is read on
+ * its own thread, and a request received while another one is executing is not queued: the launcher executes it
+ * in-process, so concurrent builds never wait for each other. A request is a sequence of NUL terminated fields:
+ * <pre>
+ *   token, working directory, number of arguments, arguments..., number of env entries, NAME=value entries...
+ * </pre>
+ * The response is the output of the command, followed by a line made of {@link #EXIT_MARKER} and the exit code.
+ * When the request cannot be executed by this daemon (busy, different working directory or environment),
+ * the response is the {@link #FALLBACK_MARKER} line only, and the launcher executes the command in-process.
+ */
+@Slf4j
+class ShellDaemon {
+
+  /**
+   * Prefix of the last response line, followed by the exit code
+   */
+  static final String EXIT_MARKER = "\u0001exit "
+
+  /**
+   * Response line asking the launcher to execute the command in-process
+   */
+  static final String FALLBACK_MARKER = "\u0001fallback"
+
+  /**
+   * Time to wait for the request once connected, in ms
+   */
+  static final int READ_TIMEOUT = 10000
+
+  /**
+   * Environment variables read by the shell, they must have the same value in the launcher and in the daemon
+   */
+  static final List<String> ENVIRONMENT = [
+      CoreConstants.MAB_HOME,
+      CoreConstants.MAGNET_TOOL_HOME,
+      CoreConstants.JAVA_HOME,
+      CoreConstants.M2_HOME,
+      CoreConstants.MYSQL_HOME,
+      CoreConstants.MAGNET_MAVEN_SETTINGS,
+      'MAB_LOG_LEVEL',
+      'MAB_COMMANDS_SRC',
+      'PATH'
+  ]
+
+  private final Shell shell
+
+  private final File daemonFile
+
+  private final String token
+
+  private final String workingDirectory
+
+  /**
+   * Held while the shell executes a request
+   */
+  private final Semaphore executing = new Semaphore(1)
+
+  private ServerSocket serverSocket
+
+  /**
+   * Ctor
+   * @param shell warmed-up shell executing the requests
+   */
+  ShellDaemon(Shell shell) {
+    this.shell = shell
+    this.daemonFile = new File(shell.getMagnetDirectory(), CoreConstants.DAEMON_FILE)
+    byte[] bytes = new byte[16]
+    new SecureRandom().nextBytes(bytes)
+    this.token = bytes.encodeHex().toString()
+    this.workingDirectory = new File(System.getProperty('user.dir')).getCanonicalPath()
+  }
+
+  /**
+   * Listen and execute requests until the daemon is stopped
+   */
+  void run() {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))
+    publish()
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      public void run() {
+        unpublish()
+      }
+    })
+    log.info("Daemon listening on port ${serverSocket.getLocalPort()} for requests from $workingDirectory")
+
+    try {
+      while (!serverSocket.isClosed()) {
+        Socket socket
+        try {
+          socket = serverSocket.accept()
+        } catch (SocketException e) {
+          log.debug("Daemon socket closed", e)
+          break
+        }
+        Thread connection = new Thread({ handle(socket) } as Runnable, "daemon-connection")
+        connection.setDaemon(true)
+        connection.start()
+      }
+    } finally {
+      unpublish()
+    }
+  }
+
+  /**
+   * Stop listening
+   */
+  void stop() {
+    serverSocket?.close()
+  }
+
+  /**
+   * Write the daemon file, readable and writable by its owner only, before it contains the token
+   */
+  private void publish() {
+    String pid = ManagementFactory.getRuntimeMXBean().getName().split('@')[0]
+    daemonFile.delete()
+    daemonFile.createNewFile()
+    daemonFile.setReadable(false, false)
+    daemonFile.setWritable(false, false)
+    daemonFile.setReadable(true, true)
+    daemonFile.setWritable(true, true)
+    daemonFile.withWriter("UTF-8") { Writer w ->
+      w.write("port=${serverSocket.getLocalPort()}\n")
+      w.write("pid=${pid}\n")
+      w.write("token=${token}\n")
+      w.write("cwd=${workingDirectory}\n")
+    }
+  }
+
+  /**
+   * Delete the daemon file, unless it was written by another daemon since
+   */
+  private synchronized void unpublish() {
+    if (daemonFile.isFile() && daemonFile.getText("UTF-8").contains("token=${token}")) {
+      daemonFile.delete()
+    }
+  }
+
+  private void handle(Socket socket) {
+    try {
+      socket.setSoTimeout(READ_TIMEOUT)
+      serve(socket)
+    } catch (Exception e) {
+      log.error("Cannot serve daemon request", StackTraceUtils.sanitize(e))
+    } finally {
+      socket.close()
+    }
+  }
+
+  private void serve(Socket socket) {
+    InputStream input = new BufferedInputStream(socket.getInputStream())
+    if (readField(input) != token) {
+      log.warn("Daemon request rejected: invalid token")
+      return
+    }
+    String cwd = readField(input)
+    List<String> args = readFields(input)
+    Map<String, String> env = readFields(input).collectEntries { String entry ->
+      int i = entry.indexOf('=')
+      i < 0 ? [entry, ''] : [entry.substring(0, i), entry.substring(i + 1)]
+    }
+
+    PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"))
+    try {
+      String reason = getFallbackReason(cwd, args, env)
+      if (!reason && !executing.tryAcquire()) {
+        reason = "another request is executing"
+      }
+      if (reason) {
+        log.info("Daemon request $args executed in-process: $reason")
+        writer.println(FALLBACK_MARKER)
+        return
+      }
+
+      try {
+        log.info("Daemon executing $args")
+        Integer ret = CoreConstants.COMMAND_UNKNOWN_ERROR_CODE
+        shell.with {
+          setReader null  // batch mode
+          setWriter writer
+        }
+        try {
+          ret = args ? shell << args : CoreConstants.COMMAND_OK_CODE
+        } catch (Throwable t) {
+          log.error("Daemon request error", StackTraceUtils.sanitize(t))
+          shell.error(t.getMessage() ?: t.toString())
+        }
+        writer.println(EXIT_MARKER + (ret ?: CoreConstants.COMMAND_OK_CODE))
+      } finally {
+        executing.release()
+      }
+    } finally {
+      writer.flush()
+    }
+  }
+
+  /**
+   * @param cwd working directory of the launcher
+   * @param args command line arguments
+   * @param env environment of the launcher
+   * @return why the request cannot be executed by this daemon, null if it can
+   */
+  private String getFallbackReason(String cwd, List<String> args, Map<String, String> env) {
+    if (StartupProfiler.findOption(args) || env[CoreConstants.STARTUP_TRACE_ENV]) {
+      return "startup traces are taken in-process"
+    }
+    if (new File(cwd).getCanonicalPath() != workingDirectory) {
+      return "working directory $cwd differs from $workingDirectory"
+    }
+    String name = ENVIRONMENT.find { (env[it] ?: null) != (System.getenv(it) ?: null) }
+    return name ? "environment variable $name differs" : null
+  }
+
+  /**
+   * Read a count field followed by as many fields
+   */
+  private static List<String> readFields(InputStream input) {
+    String count = readField(input)
+    if (!count?.isInteger()) {
+      throw new IOException("Invalid daemon request: expected a count, got $count")
+    }
+    List<String> fields = []
+    count.toInteger().times { fields << readField(input) }
+    return fields
+  }
+
+  /**
+   * Read a NUL terminated UTF-8 field
+   */
+  private static String readField(InputStream input) {
+    ByteArrayOutputStream field = new ByteArrayOutputStream()
+    int b
+    while ((b = input.read()) > 0) {
+      field.write(b)
+    }
+    if (b < 0) {
+      throw new EOFException("Truncated daemon request")
+    }
+    return field.toString("UTF-8")
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.core
+
+import groovy.json.JsonOutput
+
+import java.lang.management.ManagementFactory
+
+/**
+ * Record the timings of the startup phases of the tool: configuration loading, shell construction, command loading...
+ * Timings are always recorded, they are only printed when the {@link CoreConstants#OPTION_STARTUP_TRACE} option
+ * is passed to {@link Main}, or when the {@link CoreConstants#STARTUP_TRACE_ENV} environment variable is set,
+ * either as a table ({@link #TABLE_FORMAT}) or as JSON ({@link #JSON_FORMAT}).
+ */
+abstract class StartupProfiler {
+
+  static final String TABLE_FORMAT = "table"
+
+  static final String JSON_FORMAT = "json"
+
+  /**
+   * Maximum number of recorded phases, commands are loaded again and again in console mode
+   */
+  private static final int MAX_PHASES = 1000
+
+  /**
+   * Reference time, all the phases start relatively to it
+   */
+  private static final long ORIGIN = System.nanoTime()
+
+  private static final long ORIGIN_MILLIS = System.currentTimeMillis()
+
+  private static final List<Phase> phases = Collections.synchronizedList(new ArrayList<Phase>())
+
+  private static final ThreadLocal<Integer> depth = new ThreadLocal<Integer>()
+
+  /**
+   * Output format, null if the timings must not be printed
+   */
+  static String format =
+      System.getenv(CoreConstants.STARTUP_TRACE_ENV) ? parseFormat(System.getenv(CoreConstants.STARTUP_TRACE_ENV)) : null
+
+  /**
+   * Time a phase. Phases timed while running the closure are nested in this phase.
+   * @param name name of the phase
+   * @param closure phase to run
+   * @return the closure result
+   */
+  static <T> T time(String name, Closure<T> closure) {
+    int d = depth.get() ?: 0
+    depth.set(d + 1)
+    long start = System.nanoTime()
+    try {
+      return closure.call()
+    } finally {
+      long end = System.nanoTime()
+      depth.set(d)
+      record(new Phase(name, d, start - ORIGIN, end - start))
+    }
+  }
+
+  /**
+   * Record an event, with no duration
+   * @param name name of the event
+   */
+  static void mark(String name) {
+    record(new Phase(name, depth.get() ?: 0, System.nanoTime() - ORIGIN, 0))
+  }
+
+  /**
+   * Remove the {@link CoreConstants#OPTION_STARTUP_TRACE} option from the command line arguments,
+   * and enable printing the timings if it is found
+   * @param args command line arguments
+   * @return command line arguments without the startup trace option
+   */
+  static String[] configure(String[] args) {
+    String option = findOption(args as List<String>)
+    if (!option) {
+      return args
+    }
+    int i = option.indexOf('=')
+    format = parseFormat(i < 0 ? TABLE_FORMAT : option.substring(i + 1))
+    return args.findAll { it != option } as String[]
+  }
+
+  /**
+   * @param args command line arguments
+   * @return the {@link CoreConstants#OPTION_STARTUP_TRACE} option found anywhere in the arguments, null if none
+   */
+  static String findOption(List<String> args) {
+    return args.find { String arg ->
+      arg == CoreConstants.OPTION_STARTUP_TRACE || arg.startsWith(CoreConstants.OPTION_STARTUP_TRACE + "=")
+    }
+  }
+
+  /**
+   * @return recorded phases, in start order
+   */
+  static List<Phase> getPhases() {
+    synchronized (phases) {
+      return phases.sort(false) { it.start }
+    }
+  }
+
+  /**
+   * Print the recorded timings if enabled
+   * @param out where to print them
+   */
+  static void dump(PrintStream out) {
+    if (!format) {
+      return
+    }
+    out.println(format == JSON_FORMAT ? toJson() : toTable())
+    out.flush()
+  }
+
+  /**
+   * @return the recorded timings as a table, in milliseconds
+   */
+  static String toTable() {
+    StringBuilder sb = new StringBuilder()
+    sb.append("Startup trace: JVM started ${getJvmStartupMillis()} ms before the first phase").append('\n')
+    sb.append(String.format("%12s %12s  %s%n", "start (ms)", "time (ms)", "phase"))
+    for (Phase p : getPhases()) {
+      sb.append(String.format("%12.3f %12.3f  %s%s%n", p.start / 1e6d, p.duration / 1e6d, "  " * p.depth, p.name))
+    }
+    return sb.toString()
+  }
+
+  /**
+   * @return the recorded timings as JSON, in nanoseconds
+   */
+  static String toJson() {
+    return JsonOutput.toJson([
+        jvmStartupMillis: getJvmStartupMillis(),
+        phases          : getPhases().collect { Phase p ->
+          [name: p.name, depth: p.depth, startNanos: p.start, durationNanos: p.duration]
+        }
+    ])
+  }
+
+  private static long getJvmStartupMillis() {
+    return ORIGIN_MILLIS - ManagementFactory.getRuntimeMXBean().getStartTime()
+  }
+
+  private static String parseFormat(String value) {
+    return value?.equalsIgnoreCase(JSON_FORMAT) ? JSON_FORMAT : TABLE_FORMAT
+  }
+
+  private static void record(Phase phase) {
+    if (phases.size() < MAX_PHASES) {
+      phases << phase
+    }
+  }
+
+  /**
+   * A timed phase
+   */
+  static class Phase {
+    /** Name of the phase */
+    final String name
+    /** Nesting depth, 0 for top-level phases */
+    final int depth
+    /** Start, in nanoseconds since the profiler initialization */
+    final long start
+    /** Duration, in nanoseconds */
+    final long duration
+
+    Phase(String name, int depth, long start, long duration) {
+      this.name = name
+      this.depth = depth
+      this.start = start
+      this.duration = duration
+    }
+  }
+}
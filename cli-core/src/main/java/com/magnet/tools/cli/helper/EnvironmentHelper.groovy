@@ -19,6 +19,8 @@ package com.magnet.tools.cli.helper
 import com.magnet.tools.cli.core.CoreConstants
 import groovy.util.logging.Slf4j
 
+import java.util.concurrent.ConcurrentHashMap
+
 import static com.magnet.tools.cli.messages.HelperMessages.*
 
 /**
@@ -27,7 +29,22 @@ import static com.magnet.tools.cli.messages.HelperMessages.*
 @Slf4j
 class EnvironmentHelper {
 
-  static final Map<String, File> paths = new HashMap<String, File>()
+  static final Map<String, File> paths = new ConcurrentHashMap<String, File>()
+
+  /**
+   * Executables found in the PATH, by name
+   */
+  private static final Map<String, File> executables = new ConcurrentHashMap<String, File>()
+
+  /**
+   * PATH and PATHEXT the executables were found in
+   */
+  private static volatile String executablesPath
+
+  /**
+   * Executable extensions when PATHEXT is not set, on Windows
+   */
+  static final String DEFAULT_PATHEXT = ".COM;.EXE;.BAT;.CMD"
 
 
   static enum Environment {
@@ -88,28 +105,74 @@ class EnvironmentHelper {
     return value
   }
 
-  static File findFile(String fileName) {
-    String cmd
-    if(isWindowsOS()) {
-      cmd = "cmd /c where " + fileName
-    } else {
-      cmd = "which " + fileName
+  /**
+   * Look up an executable the way <code>which</code>, or <code>where</code> on Windows, does, without starting
+   * them. The executables found are cached until the PATH changes.
+   * @param fileName executable name, or path
+   * @param env environment holding the PATH, and the PATHEXT on Windows
+   * @return the executable, null if not found
+   */
+  static File findFile(String fileName, Map<String, String> env = System.getenv()) {
+    String searchPath = env.get("PATH") ?: ""
+    String pathExt = isWindowsOS() ? (env.get("PATHEXT") ?: DEFAULT_PATHEXT) : ""
+    String key = searchPath + File.pathSeparator + pathExt
+    if (key != executablesPath) {
+      // the executables found, and the commands resolved from them, may have changed
+      executables.clear()
+      paths.clear()
+      executablesPath = key
+    }
+
+    File result = executables.get(fileName)
+    if (result == null || !isExecutable(result)) {
+      result = resolve(fileName, searchPath, pathExt)
+      if (result != null) {
+        executables.put(fileName, result)
+      }
     }
+    return result
+  }
 
-    // Execute the command
-    Process p = cmd.execute()
-    p.waitFor()
+  private static File resolve(String fileName, String searchPath, String pathExt) {
+    List<String> names = [fileName]
+    if (pathExt && fileName.lastIndexOf('.') <= fileName.lastIndexOf(File.separator)) {
+      names = pathExt.split(File.pathSeparator).findAll { it }.collect { fileName + it }
+    }
+
+    List<File> dirs = []
+    if (fileName.contains(File.separator) || fileName.contains("/")) {
+      dirs << null
+    } else {
+      if (isWindowsOS()) {
+        // where looks in the current directory first
+        dirs << new File(System.getProperty("user.dir"))
+      }
+      for (String dir : searchPath.split(File.pathSeparator)) {
+        dir = dir.trim()
+        if (isWindowsOS() && dir.length() > 1 && dir.startsWith('"') && dir.endsWith('"')) {
+          dir = dir.substring(1, dir.length() - 1)
+        }
+        if (dir) {
+          dirs << new File(dir)
+        }
+      }
+    }
 
-    int exitValue = p.exitValue()
-    if(!exitValue) {
-      String result = p.text?.trim()  // remove trailing spaces (in particular carrier returns!)
-      if(result) {
-        return new File(result)
+    for (File dir : dirs) {
+      for (String name : names) {
+        File candidate = dir == null ? new File(name) : new File(dir, name)
+        if (isExecutable(candidate)) {
+          return candidate.getAbsoluteFile()
+        }
       }
     }
     return null
   }
 
+  private static boolean isExecutable(File file) {
+    return file.isFile() && (isWindowsOS() || file.canExecute())
+  }
+
   public static String getPath(String command) {
 
     File result = paths.get(command);
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.helper;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.magnet.tools.utils.Renderer;
+
+/**
+ * Capture of the output of a process or a script.
+ * <p>
+ * The output is kept in memory up to a threshold, and spilled to a temporary file beyond it. The last lines are
+ * also kept in a ring, so the tail of a failed command is printed without reading the output again. The temporary
+ * file, if any, is deleted by {@link #delete()}, unless it is {@link #keep() kept} because the command output refers
+ * to it. Only the last kept file is kept, and the temporary files left are deleted when the JVM exits: a daemon or a
+ * long-running shell does not accumulate them.
+ */
+public class OutputCapture extends OutputStream {
+
+  /**
+   * Default size in bytes of the output kept in memory
+   */
+  public static final int DEFAULT_MEMORY_THRESHOLD = 8192;
+
+  /**
+   * Default number of tail lines kept
+   */
+  public static final int DEFAULT_TAIL_LINES = 40;
+
+  /**
+   * Lines longer than that are truncated in the tail
+   */
+  static final int MAX_TAIL_LINE_LENGTH = 4096;
+
+  private static final String CHARSET = "UTF-8";
+
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+  /**
+   * Temporary files to delete when the JVM exits: the files of the captures not deleted yet, and the last kept file
+   */
+  private static final Set<File> TEMPORARY_FILES = new LinkedHashSet<File>();
+
+  private static File keptFile;
+
+  private static Thread shutdownHook;
+
+  private final int memoryThreshold;
+
+  private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+
+  private File file;
+
+  private OutputStream fileStream;
+
+  private long size;
+
+  private final String[] tail;
+
+  private int tailNext;
+
+  private int tailCount;
+
+  private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+  private boolean closed;
+
+  private boolean kept;
+
+  /**
+   * Ctor with the default threshold and tail
+   */
+  public OutputCapture() {
+    this(DEFAULT_MEMORY_THRESHOLD, DEFAULT_TAIL_LINES);
+  }
+
+  /**
+   * Ctor
+   *
+   * @param memoryThreshold size in bytes of the output kept in memory
+   * @param tailLines number of last lines kept
+   */
+  public OutputCapture(int memoryThreshold, int tailLines) {
+    this.memoryThreshold = memoryThreshold;
+    this.tail = new String[tailLines];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[]{(byte) b}, 0, 1);
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len) throws IOException {
+    if (closed) {
+      throw new IOException("Output capture closed");
+    }
+    if (fileStream == null && size + len > memoryThreshold) {
+      spill();
+    }
+    if (fileStream != null) {
+      fileStream.write(b, off, len);
+    } else {
+      memory.write(b, off, len);
+    }
+    size += len;
+
+    int start = off;
+    for (int i = off; i < off + len; i++) {
+      if (b[i] == '\n') {
+        appendToLine(b, start, i - start);
+        endLine();
+        start = i + 1;
+      }
+    }
+    appendToLine(b, start, off + len - start);
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    if (fileStream != null) {
+      fileStream.flush();
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (fileStream != null) {
+      fileStream.close();
+    }
+  }
+
+  /**
+   * @return size in bytes of the output
+   */
+  public synchronized long size() {
+    return size;
+  }
+
+  /**
+   * @return whether the output was spilled to a temporary file
+   */
+  public synchronized boolean isSpilled() {
+    return file != null;
+  }
+
+  /**
+   * @return the temporary file holding the output, null if it is in memory
+   */
+  public synchronized File getFile() {
+    return file;
+  }
+
+  /**
+   * @return the whole output, read from the temporary file if it was spilled
+   * @throws IOException the temporary file cannot be read
+   */
+  public synchronized String getText() throws IOException {
+    if (file == null) {
+      return memory.toString(CHARSET);
+    }
+    flush();
+    ByteArrayOutputStream text = new ByteArrayOutputStream();
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        text.write(buffer, 0, read);
+      }
+    } finally {
+      in.close();
+    }
+    return text.toString(CHARSET);
+  }
+
+  /**
+   * Print the last lines of the output
+   *
+   * @param writer writer to print the lines to
+   * @param renderer renderer of the lines, a line rendered as null or empty is not printed
+   * @throws IOException the lines cannot be printed
+   */
+  public synchronized void tail(Writer writer, Renderer renderer) throws IOException {
+    if (writer == null) {
+      return;
+    }
+    // an unterminated last line is one of the tail lines
+    int count = line.size() > 0 && tailCount == tail.length ? tailCount - 1 : tailCount;
+    int first = tailNext - count + tail.length;
+    for (int i = 0; i < count; i++) {
+      printTailLine(writer, renderer, tail[(first + i) % tail.length]);
+    }
+    if (line.size() > 0 && tail.length > 0) {
+      printTailLine(writer, renderer, lineText());
+    }
+    writer.flush();
+  }
+
+  /**
+   * Keep the temporary file, if any, when the capture is deleted, because the command output refers to it.
+   * The file previously kept, by any capture, is deleted.
+   */
+  public synchronized void keep() {
+    if (file == null || kept) {
+      return;
+    }
+    kept = true;
+    File previous;
+    synchronized (TEMPORARY_FILES) {
+      previous = keptFile;
+      keptFile = file;
+    }
+    if (previous != null) {
+      deleteTemporaryFile(previous);
+    }
+  }
+
+  /**
+   * Close the capture and delete its temporary file, if any and not {@link #keep() kept}
+   */
+  public synchronized void delete() {
+    try {
+      close();
+    } catch (IOException e) { /* do nothing */ }
+    if (file != null && !kept) {
+      deleteTemporaryFile(file);
+    }
+    memory = new ByteArrayOutputStream();
+  }
+
+  private void spill() throws IOException {
+    file = File.createTempFile("magnet", ".out");
+    // the file may be referenced by the command output, but must not outlive the shell
+    addTemporaryFile(file);
+    fileStream = new BufferedOutputStream(new FileOutputStream(file));
+    memory.writeTo(fileStream);
+    memory = null;
+  }
+
+  private static void addTemporaryFile(File file) {
+    synchronized (TEMPORARY_FILES) {
+      TEMPORARY_FILES.add(file);
+      if (shutdownHook == null) {
+        // a single hook, File.deleteOnExit would remember every file until the JVM exits
+        shutdownHook = new Thread("output-capture-cleanup") {
+          @Override
+          public void run() {
+            List<File> files;
+            synchronized (TEMPORARY_FILES) {
+              files = new ArrayList<File>(TEMPORARY_FILES);
+            }
+            for (File f : files) {
+              f.delete();
+            }
+          }
+        };
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+      }
+    }
+  }
+
+  private static void deleteTemporaryFile(File file) {
+    // a file which cannot be deleted now, still open on windows for instance, is deleted when the JVM exits
+    if (file.delete() || !file.exists()) {
+      synchronized (TEMPORARY_FILES) {
+        TEMPORARY_FILES.remove(file);
+      }
+    }
+  }
+
+  private void appendToLine(byte[] b, int off, int len) {
+    int room = MAX_TAIL_LINE_LENGTH - line.size();
+    if (room > 0 && len > 0) {
+      line.write(b, off, Math.min(room, len));
+    }
+  }
+
+  private void endLine() throws UnsupportedEncodingException {
+    if (tail.length > 0) {
+      tail[tailNext] = lineText();
+      tailNext = (tailNext + 1) % tail.length;
+      if (tailCount < tail.length) {
+        tailCount++;
+      }
+    }
+    line.reset();
+  }
+
+  private String lineText() throws UnsupportedEncodingException {
+    String text = line.toString(CHARSET);
+    return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+  }
+
+  private static void printTailLine(Writer writer, Renderer renderer, String text) throws IOException {
+    String rendered = renderer.render(text);
+    if (rendered != null && rendered.length() > 0) {
+      writer.write(rendered);
+      writer.write(LINE_SEPARATOR);
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.helper
+
+import com.magnet.tools.cli.core.CoreConstants
+import com.magnet.tools.utils.FileHelper
+import com.magnet.tools.utils.ProcessLock
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import groovy.util.logging.Slf4j
+
+import java.security.MessageDigest
+
+/**
+ * Cache of the environment probes run by the validate command, such as looking up <code>mvn</code> and running
+ * <code>mvn -version</code>, saved as a JSON file in the magnet directory.
+ * <p>
+ * The probes depend on the environment: the cache is keyed by a fingerprint of the {@link #FINGERPRINT_VARIABLES},
+ * and is dropped as a whole when one of them changes. A probe is also run again when its result is older than
+ * the time to live, or when the executable it found was removed or modified, such as upgraded in place.
+ * <p>
+ * Only successful probes are cached: a missing or broken executable may be installed or fixed without changing the
+ * environment, so failed probes are always run again.
+ */
+@Slf4j
+class ProbeCache {
+
+  /**
+   * Name of the cache file, in the magnet directory
+   */
+  static final String FILE_NAME = "validation.cache"
+
+  /**
+   * Environment variables the probe results depend on
+   */
+  static final List<String> FINGERPRINT_VARIABLES = [
+      "PATH", CoreConstants.JAVA_HOME, CoreConstants.M2_HOME, CoreConstants.MYSQL_HOME]
+
+  /**
+   * Result of a probe
+   */
+  static class Probe {
+    /** absolute path of the executable, null if not found */
+    String path
+    /** exit code of the executable */
+    int exitCode
+    /** output of the executable */
+    String output
+    /** error message if the executable could not be found or run */
+    String error
+    /** last modification time of the executable, in ms */
+    long lastModified
+    /** when the probe was run, in ms */
+    long time
+    /** whether the result comes from the cache */
+    boolean cached
+  }
+
+  final File file
+
+  final long ttl
+
+  final String fingerprint
+
+  private Map<String, Map> probes
+
+  private final Map<String, Map> ran = new LinkedHashMap<String, Map>()
+
+  /**
+   * Ctor
+   * @param file cache file, loaded on first probe
+   * @param ttl time to live of the probe results, in ms
+   * @param env environment the probes run in
+   */
+  ProbeCache(File file, long ttl, Map<String, String> env = System.getenv()) {
+    this.file = file
+    this.ttl = ttl
+    this.fingerprint = fingerprint(env)
+  }
+
+  /**
+   * Get the cached result of a probe, or run it
+   * @param key probe key, such as the command line
+   * @param run probe to run, returning a {@link Probe}. If it throws an exception, its message is the probe error
+   * @return the probe result
+   */
+  Probe probe(String key, Closure<Probe> run) {
+    Map cached = getProbes().get(key)
+    if (cached != null && isValid(cached)) {
+      Probe result = new Probe(cached)
+      result.cached = true
+      return result
+    }
+    Probe result
+    try {
+      result = run()
+    } catch (Exception e) {
+      log.debug("Probe $key failed", e)
+      result = new Probe(error: e.getMessage())
+    }
+    result.time = System.currentTimeMillis()
+    if (result.error == null && result.exitCode == 0 && result.path != null) {
+      result.lastModified = new File(result.path).lastModified()
+      synchronized (this) {
+        ran.put(key, [path: result.path, exitCode: result.exitCode, output: result.output,
+            lastModified: result.lastModified, time: result.time])
+      }
+    }
+    return result
+  }
+
+  /**
+   * Save the probes run since the cache was loaded. Probes saved in the meantime by other shells are kept
+   */
+  synchronized void save() {
+    if (!ran) {
+      return
+    }
+    ProcessLock lock = ProcessLock.forFile(file)
+    lock.lock()
+    try {
+      Map<String, Map> latest = read()
+      latest.putAll(ran)
+      File tmp = new File(file.getPath() + ".tmp")
+      tmp.getParentFile()?.mkdirs()
+      tmp.setText(JsonOutput.toJson([fingerprint: fingerprint, probes: latest]), "UTF-8")
+      FileHelper.replace(tmp, file)
+      ran.clear()
+    } finally {
+      lock.unlock()
+    }
+  }
+
+  /**
+   * @param env environment
+   * @return SHA-1 of the {@link #FINGERPRINT_VARIABLES} values
+   */
+  static String fingerprint(Map<String, String> env) {
+    MessageDigest digest = MessageDigest.getInstance("SHA-1")
+    for (String name : FINGERPRINT_VARIABLES) {
+      digest.update("$name=${env.get(name) ?: ''}\n".toString().getBytes("UTF-8"))
+    }
+    return digest.digest().encodeHex().toString()
+  }
+
+  private boolean isValid(Map cached) {
+    if (cached.path == null || cached.error != null || cached.exitCode != 0 || cached.lastModified == null) {
+      return false  // saved by a previous version
+    }
+    long age = System.currentTimeMillis() - ((Number) cached.time).longValue()
+    File executable = new File((String) cached.path)
+    return age >= 0 && age < ttl && executable.isFile() &&
+        executable.lastModified() == ((Number) cached.lastModified).longValue()
+  }
+
+  private synchronized Map<String, Map> getProbes() {
+    if (probes == null) {
+      probes = read()
+    }
+    return probes
+  }
+
+  /**
+   * @return the probes of the cache file, none if it was saved in another environment
+   */
+  private Map<String, Map> read() {
+    if (!file.isFile()) {
+      return new LinkedHashMap<String, Map>()
+    }
+    def content
+    try {
+      content = new JsonSlurper().parseText(file.getText("UTF-8"))
+    } catch (Exception e) {
+      log.warn("Ignoring invalid cache file $file: ${e.getMessage()}")
+      return new LinkedHashMap<String, Map>()
+    }
+    if (!(content instanceof Map) || content.fingerprint != fingerprint || !(content.probes instanceof Map)) {
+      return new LinkedHashMap<String, Map>()
+    }
+    return new LinkedHashMap<String, Map>((Map<String, Map>) content.probes)
+  }
+}
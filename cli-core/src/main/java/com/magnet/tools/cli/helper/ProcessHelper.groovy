@@ -18,7 +18,6 @@
 package com.magnet.tools.cli.helper
 
 import com.magnet.tools.cli.core.Shell
-import com.magnet.tools.utils.FileHelper
 import com.magnet.tools.utils.LogRenderer
 import com.magnet.tools.utils.Renderer
 import groovy.util.logging.Slf4j
@@ -34,6 +33,11 @@ import static com.magnet.tools.cli.messages.HelperMessages.*
 class ProcessHelper {
   public static boolean ENABLE_FILTERING = Boolean.parseBoolean(System.getProperty("MAGNET_ENABLE_FILTERING", "true"))
 
+  /**
+   * Number of last output lines printed when a command fails
+   */
+  static final int TAIL_LINES = 40
+
   /**
    * Run a command synchronously
    * @param context
@@ -155,15 +159,14 @@ class ProcessHelper {
         envMap.put(env.substring(0, index), env.substring(index + 1));
       }
     }
-    File outputTempFile = File.createTempFile("magnet",".out");
-    FileOutputStream outputTempStream = new FileOutputStream(outputTempFile);
-    OutputStream output = outputTempStream;
+    OutputCapture capture = new OutputCapture(OutputCapture.DEFAULT_MEMORY_THRESHOLD, TAIL_LINES);
+    OutputStream output = capture;
     if (verbose) {
       renderer = Renderer.IDENTITY_RENDERER
     }
     // System.out.println("ENABLE_FILTERING===" + ENABLE_FILTERING)
     if (ENABLE_FILTERING) {
-      output = new TeeFilteringOutputStream(outputTempStream,outputWriter,renderer?: Renderer.IDENTITY_RENDERER);
+      output = new TeeFilteringOutputStream(capture,outputWriter,renderer?: Renderer.IDENTITY_RENDERER);
     }
     PumpStreamHandler psh = new PumpStreamHandler(output);
     DefaultExecutor exec = new DefaultExecutor();
@@ -192,17 +195,19 @@ class ProcessHelper {
 
       String tmpText;
       if (ENABLE_FILTERING) {
-        if (outputTempFile.size() < 8192) {
-          tmpText = outputTempFile.text
+        if (!capture.isSpilled()) {
+          tmpText = capture.getText()
         } else {
-          tmpText = getMessage(COMMAND_OUTPUT_AT, outputTempFile.getAbsolutePath())
+          tmpText = getMessage(COMMAND_OUTPUT_AT, capture.getFile().getAbsolutePath())
+          // the command output refers to the output file, it is kept until the next one
+          capture.keep()
         }
         // on a non successful exit code write the tail of the output
         if (exitCode>0 && outputWriter) {
-          FileHelper.tail(outputWriter, 40, new LogRenderer(), outputTempFile)
+          capture.tail(outputWriter, new LogRenderer())
         }
       } else {
-        tmpText = outputTempFile.text
+        tmpText = capture.getText()
         if (verbose) {
           outputWriter.write(tmpText)
         }
@@ -226,7 +231,7 @@ class ProcessHelper {
       output.close();
       output = null;
 
-      FileHelper.tail(outputWriter, 40, new LogRenderer(), outputTempFile)
+      capture.tail(outputWriter, new LogRenderer())
 
       return new ProcessOutput() {
         @Override
@@ -243,6 +248,7 @@ class ProcessHelper {
       if (output!=null) {
         output.close()
       }
+      capture.delete()
     }
   }
 
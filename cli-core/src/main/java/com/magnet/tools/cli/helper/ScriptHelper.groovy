@@ -111,15 +111,14 @@ abstract class ScriptHelper {
       outputWriter = new OutputStreamWriter(System.out)
     }
 
-    File outputTempFile = File.createTempFile("magnet", ".out");
-    FileOutputStream outputTempStream = new FileOutputStream(outputTempFile);
-    OutputStream ostream = outputTempStream;
+    OutputCapture capture = new OutputCapture(OutputCapture.DEFAULT_MEMORY_THRESHOLD, ProcessHelper.TAIL_LINES);
+    OutputStream ostream = capture;
     if (verbose) {
       renderer = Renderer.IDENTITY_RENDERER
     }
 
     if (ProcessHelper.ENABLE_FILTERING) {
-      ostream = new TeeFilteringOutputStream(outputTempStream, outputWriter, renderer?:Renderer.IDENTITY_RENDERER);
+      ostream = new TeeFilteringOutputStream(capture, outputWriter, renderer?:Renderer.IDENTITY_RENDERER);
     }
 
     PrintStream output = new PrintStream(ostream)
@@ -150,22 +149,13 @@ abstract class ScriptHelper {
       output.close();
       output = null;
 
-      String tmpText;
       if (ProcessHelper.ENABLE_FILTERING) {
-        if (outputTempFile.size() < 8192) {
-          tmpText = outputTempFile.text
-        } else {
-          tmpText = getMessage(COMMAND_OUTPUT_AT, outputTempFile.getAbsolutePath())
-        }
         // on a non successful exit code write the tail of the output
         if (exitCode > 0 && outputWriter) {
-          FileHelper.tail(outputWriter, 40, new LogRenderer(), outputTempFile)
-        }
-      } else {
-        tmpText = outputTempFile.text
-        if (verbose) {
-          outputWriter.write(tmpText)
+          capture.tail(outputWriter, new LogRenderer())
         }
+      } else if (verbose) {
+        outputWriter.write(capture.getText())
       }
 
       return exitCode
@@ -174,13 +164,14 @@ abstract class ScriptHelper {
       output.close();
       output = null;
 
-      FileHelper.tail(outputWriter, 40, new LogRenderer(), outputTempFile)
+      capture.tail(outputWriter, new LogRenderer())
       return -1;
     }
     finally {
       if (output != null) {
         output.close()
       }
+      capture.delete()
     }
   }
 
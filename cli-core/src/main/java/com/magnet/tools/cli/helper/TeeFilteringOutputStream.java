@@ -29,11 +29,23 @@ import com.magnet.tools.utils.Renderer;
 /**
  * Write the data to an output stream while filtering lines for a regular
  * expression
- *
+ * <p>
+ * The rendered lines are written to the writer as whole chunks of output are received, and the writer is flushed
+ * at the end of each chunk, or when {@link #FLUSH_SIZE} characters are pending, rather than for each line.
  */
 public class TeeFilteringOutputStream extends FilterOutputStream {
 
-  private final Writer filteringWriter;
+  /**
+   * Number of pending characters from which the writer is flushed within a chunk of output
+   */
+  static final int FLUSH_SIZE = 8192;
+
+  /**
+   * A line buffer grown beyond this capacity is not reused
+   */
+  private static final int MAX_REUSED_LINE_CAPACITY = 65536;
+
+  private final FilteringWriter filteringWriter;
   private final WriterOutputStream writerOutputStream;
 
   /**
@@ -53,8 +65,18 @@ public class TeeFilteringOutputStream extends FilterOutputStream {
 
   @Override
   public void write(int b) throws IOException {
-    super.write(b);
+    out.write(b);
     writerOutputStream.write(b);
+    if (b == '\n') {
+      filteringWriter.flushPending();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    out.write(b, off, len);
+    writerOutputStream.write(b, off, len);
+    filteringWriter.flushPending();
   }
 
   @Override
@@ -74,6 +96,7 @@ public class TeeFilteringOutputStream extends FilterOutputStream {
     private Writer writer;
     private final Renderer renderer;
     private StringBuilder lineBuffer;
+    private int pending;
 
     FilteringWriter(Writer writer, Renderer renderer) {
       this.writer = writer;
@@ -83,10 +106,16 @@ public class TeeFilteringOutputStream extends FilterOutputStream {
 
     @Override
     public synchronized void write(char[] cbuf, int off, int len) throws IOException {
+      if (renderer == Renderer.IDENTITY_RENDERER) {
+        writeLines(cbuf, off, len);
+        return;
+      }
 
+      int start = off;
       for (int pos = off; pos < off + len; pos++) {
-        char currentChar = cbuf[pos];
-        if (currentChar == '\n') {
+        if (cbuf[pos] == '\n') {
+          lineBuffer.append(cbuf, start, pos - start);
+          start = pos + 1;
 
           String lineSeparator;
           // Check to see if we had a \r at last char
@@ -99,20 +128,64 @@ public class TeeFilteringOutputStream extends FilterOutputStream {
             lineSeparator = "\n";
           }
           matchBuffer(toMatch, lineSeparator);
-          lineBuffer = new StringBuilder(512);
-        } else {
-          lineBuffer.append(currentChar);
+          resetLineBuffer();
         }
       }
+      lineBuffer.append(cbuf, start, off + len - start);
+    }
+
+    /**
+     * Identity rendering: the complete lines are written as they are, the last incomplete one is buffered
+     */
+    private void writeLines(char[] cbuf, int off, int len) throws IOException {
+      int end = off + len;
+      while (end > off && cbuf[end - 1] != '\n') {
+        end--;
+      }
+      if (end > off) {
+        if (lineBuffer.length() > 0) {
+          writer.append(lineBuffer);
+          pending += lineBuffer.length();
+          resetLineBuffer();
+        }
+        writer.write(cbuf, off, end - off);
+        pending += end - off;
+        if (pending >= FLUSH_SIZE) {
+          flushPending();
+        }
+      }
+      lineBuffer.append(cbuf, end, off + len - end);
     }
 
     private void matchBuffer(String toMatch, String lineSeparator) throws IOException {
       String token = renderer.render(toMatch);
       if (token != null) {
         writer.write(token);
+        pending += token.length();
         if (lineSeparator != null) {
           writer.write(lineSeparator);
+          pending += lineSeparator.length();
+        }
+        if (pending >= FLUSH_SIZE) {
+          flushPending();
         }
+      }
+    }
+
+    private void resetLineBuffer() {
+      if (lineBuffer.capacity() > MAX_REUSED_LINE_CAPACITY) {
+        lineBuffer = new StringBuilder(512);
+      } else {
+        lineBuffer.setLength(0);
+      }
+    }
+
+    /**
+     * Flush the writer if lines were written to it since the last flush
+     */
+    synchronized void flushPending() throws IOException {
+      if (pending > 0 && writer != null) {
+        pending = 0;
         writer.flush();
       }
     }
@@ -129,6 +202,7 @@ public class TeeFilteringOutputStream extends FilterOutputStream {
         matchBuffer(toMatch, null);
         lineBuffer = null;
       }
+      flushPending();
       writer = null;
     }
   }
@@ -121,6 +121,11 @@ class BaseMessages extends MessagesSupport {
   public static final String MYSQL_VERSION_BULLET = "MYSQL_VERSION_BULLET"
   public static final String BIN_ENVIRONMENT_VALIDATION_WARNING = "BIN_ENVIRONMENT_VALIDATION_WARNING"
   static final String VALIDATION_OK = "VALIDATION_OK"
+  public static final String VALIDATION_CHECK_TIMEOUT = "VALIDATION_CHECK_TIMEOUT"
+  public static final String VALIDATION_CHECK_FAILED = "VALIDATION_CHECK_FAILED"
+  public static final String VALIDATION_TIMINGS_BULLET = "VALIDATION_TIMINGS_BULLET"
+  public static final String VALIDATION_TIMING = "VALIDATION_TIMING"
+  public static final String VALIDATION_CACHED_TIMING = "VALIDATION_CACHED_TIMING"
   static final String CANNOT_OPEN_REMOTE_LOG = "CANNOT_OPEN_REMOTE_LOG"
   static final String NO_PROJECT_EDITOR_SET = "NO_PROJECT_EDITOR_SET"
   static final String USE_OPEN_LOG = "USE_OPEN_LOG"
@@ -117,7 +117,6 @@ class CommonMessages extends MessagesSupport {
   public static final String REMOVING_TYPE = "REMOVING_TYPE"
   public static final String TYPE_REMOVED = "TYPE_REMOVED"
   public static final String INCORRECT_ENTRY = "INCORRECT_ENTRY"
-  public static final String ANOTHER_MAB_IS_RUNNING = "ANOTHER_MAB_IS_RUNNING"
   public static final String INTRO_MESSAGE = "INTRO_MESSAGE"
   public static final String LOADING_CONFIGURATION = "LOADING_CONFIGURATION"
   public static final String NO_BACKEND_PROMPT = "NO_BACKEND_PROMPT"
@@ -15,6 +15,7 @@
  * permissions and limitations under the License.
  */
 
+import com.magnet.tools.cli.core.ConfigurationLoader
 import com.magnet.tools.cli.core.CoreConstants
 import com.magnet.tools.utils.AnsiHelper
 
@@ -41,23 +42,15 @@ commands = [
 // Prompt selection
 prompt = AnsiHelper.green(CoreConstants.PROMPT)
 
+// Values depending on the environment, they are computed again when the configuration is loaded from a snapshot
+Map environment = ConfigurationLoader.getEnvironmentDefaults()
+
 // Directory for history, logs, login credentials
-File magnetHome
-if (System.getProperty(CoreConstants.MAB_HOME)) {
-  magnetHome = new File(System.getProperty(CoreConstants.MAB_HOME))
-} else if (System.getenv(CoreConstants.MAB_HOME)) {
-  magnetHome = new File(System.getenv(CoreConstants.MAB_HOME))
-} else {
-  magnetHome = new File(System.getProperty("user.home"), ".magnet.com")
-}
-magnetDirectory = new File(magnetHome, CoreConstants.TOOL_NAME)
-if (!magnetDirectory.exists()) {
-  magnetDirectory.mkdirs()
-}
+magnetDirectory = environment.magnetDirectory
 
 // Installation directory
-installationPath = System.getenv(CoreConstants.MAGNET_TOOL_HOME) ?: new File("./..").getAbsolutePath()
-installationDirectory = new File(installationPath)
+installationPath = environment.installationPath
+installationDirectory = environment.installationDirectory
 
 // developer center URL
 developerCenterURL = new URL("https://factory.magnet.com")
@@ -65,22 +58,25 @@ developerCenterURL = new URL("https://factory.magnet.com")
 magnetMavenRepositoryURL = new URL("https://repo.magnet.com/artifactory/magnet-apps/")
 
 // History file , if null, then it does not keep track of history.
-historyFile = new File(magnetDirectory, "magnet.history")
+historyFile = environment.historyFile
+
+// Maximum number of history entries
+historySize = 500
 
 // Logging (java.util.logging)
 
 logging.handlers = 'java.util.logging.FileHandler'
 logging.'.level'= 'WARNING'
 logging.java.util.logging.SimpleFormatter.format='%4$s: [%1$tc] %5$s%6$s%n'
-logging.java.util.logging.FileHandler.pattern = "${magnetDirectory}${File.separator}${CoreConstants.LOG_FILE_NAME_PATTERN}"
+logging.java.util.logging.FileHandler.pattern = environment.'logging.java.util.logging.FileHandler.pattern'
 logging.java.util.logging.FileHandler.limit = '5000000'
 logging.java.util.logging.FileHandler.count = '10'
 logging.java.util.logging.FileHandler.formatter = 'java.util.logging.SimpleFormatter'
-logging.com.magnet.level = System.getenv('MAB_LOG_LEVEL') ?:'INFO'
+logging.com.magnet.level = environment.'logging.com.magnet.level'
 
 
 //Maven settings xml
-mavenSettings = System.getenv(CoreConstants.MAGNET_MAVEN_SETTINGS) ?: null
+mavenSettings = environment.mavenSettings
 
 // Remote user under which the server is deployed
 remoteUser = "magnet"
@@ -96,4 +92,8 @@ supportedLocales = [
 
 javaVersion = [ major: 1.6, update: 0]
 
+// validate command: time to live of the cached environment probes, and timeout of each check, in ms
+validation.cacheTtl = 86400000
+validation.checkTimeout = 30000
+
 
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.core
+
+import com.magnet.tools.utils.ProcessLock
+
+/**
+ * Shell process launched by {@link ConcurrentShellsSpec}, adding history entries and changing settings
+ * in a shared magnet directory
+ */
+class ConcurrentShellWorker {
+
+  /**
+   * Exit code of a worker crashing while holding the history lock
+   */
+  static final int CRASH_CODE = 3
+
+  /**
+   * @param args magnet directory, shell id, number of commands and history capacity,
+   * or magnet directory and "crash" to crash while holding the history lock
+   */
+  static void main(String[] args) {
+    File directory = new File(args[0])
+    File historyFile = new File(directory, "magnet.history")
+    if (args[1] == "crash") {
+      ProcessLock.forFile(historyFile).lock()
+      Runtime.getRuntime().halt(CRASH_CODE)
+    }
+
+    String id = args[1]
+    int commands = args[2] as int
+    MagnetHistory history = new MagnetHistory(historyFile, args[3] as int)
+    SettingsStore settings = new SettingsStore(new File(directory, MagnetSettings.CONFIG_FILE_NAME))
+    for (int i = 0; i < commands; i++) {
+      history.addToHistory("$id command $i".toString())
+      settings.set(id, i)
+      settings.flush()
+    }
+    history.close()
+  }
+}
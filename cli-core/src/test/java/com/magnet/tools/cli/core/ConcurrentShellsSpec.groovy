@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.core
+
+import com.magnet.tools.utils.ProcessLock
+import com.magnet.tools.utils.SpecificationSupport
+import spock.lang.Timeout
+import spock.lang.Unroll
+
+/**
+ * Stress test of shells sharing a magnet directory, each one running in its own process
+ */
+class ConcurrentShellsSpec extends SpecificationSupport {
+
+  static final int SHELLS = 6
+
+  static final int COMMANDS = 40
+
+  @Unroll
+  @Timeout(120)
+  def "should share the history and the settings between concurrent shells, with a history capacity of #capacity"() {
+    given:
+      List<Process> processes = (1..SHELLS).collect { launch("shell$it", COMMANDS.toString(), capacity.toString()) }
+    when:
+      List<Integer> exitValues = processes.collect { it.waitFor() }
+      List<String> lines = new File(testDir, "magnet.history").readLines()
+    then:
+      exitValues == [0] * SHELLS
+      // no line was lost or interleaved with another one
+      lines.every { it ==~ /shell\d+ command \d+/ }
+      compacted ? lines.size() >= capacity && lines.size() < SHELLS * COMMANDS : lines.size() == SHELLS * COMMANDS
+      (1..SHELLS).every { int shell ->
+        List<Integer> commands = lines.findAll { it.startsWith("shell$shell ") }.collect { it.tokenize().last() as int }
+        commands == commands.sort(false)
+      }
+      // no setting was overwritten by another shell
+      new SettingsStore(new File(testDir, MagnetSettings.CONFIG_FILE_NAME)).asMap() ==
+          (1..SHELLS).collectEntries { ["shell$it".toString(), COMMANDS - 1] }
+    where:
+      capacity | compacted
+      1000     | false
+      10       | true
+  }
+
+  @Timeout(60)
+  def "should not wait for the history lock of a crashed shell"() {
+    given:
+      Process crashed = launch("crash")
+    when:
+      int exitValue = crashed.waitFor()
+      ProcessLock lock = ProcessLock.forFile(new File(testDir, "magnet.history"))
+      lock.lock()
+    then:
+      exitValue == ConcurrentShellWorker.CRASH_CODE
+      lock.isHeldByCurrentThread()
+    cleanup:
+      lock?.unlock()
+  }
+
+  private Process launch(String... args) {
+    String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath()
+    List<String> command = [java, "-cp", System.getProperty("java.class.path"), ConcurrentShellWorker.getName(),
+        testDir.getAbsolutePath()] + (args as List)
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start()
+    process.consumeProcessOutput(System.out, System.err)
+    return process
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.core
+
+import com.magnet.tools.utils.SpecificationSupport
+
+/**
+ * Test specification for {@link ConfigurationLoader}
+ */
+class ConfigurationLoaderSpec extends SpecificationSupport {
+
+  ClassLoader loader
+
+  File snapshot
+
+  def setup() {
+    loader = new URLClassLoader([testDir.toURI().toURL()] as URL[], getClass().getClassLoader())
+    snapshot = new File(testDir, CoreConstants.CONFIGURATION_SNAPSHOT_FILE)
+    ConfigurationLoader.writeSnapshot(loader, snapshot)
+  }
+
+  def "should load the same configuration from an up-to-date snapshot"() {
+    when:
+      ConfigObject config = ConfigurationLoader.readSnapshot(snapshot.toURI().toURL(), ConfigurationLoader.getFingerprint(loader))
+    then:
+      config != null
+      config.flatten() == ConfigurationLoader.slurp(loader).flatten()
+  }
+
+  def "should compute the environment dependent values when loading a snapshot"() {
+    given:
+      String savedMabHome = System.getProperty(CoreConstants.MAB_HOME)
+      System.setProperty(CoreConstants.MAB_HOME, new File(testDir, "home").getAbsolutePath())
+    when:
+      ConfigObject config = ConfigurationLoader.load(loader)
+    then:
+      config.magnetDirectory == new File(new File(testDir, "home"), CoreConstants.TOOL_NAME)
+      config.historyFile == new File(config.magnetDirectory, "magnet.history")
+    cleanup:
+      savedMabHome ? System.setProperty(CoreConstants.MAB_HOME, savedMabHome) : System.clearProperty(CoreConstants.MAB_HOME)
+  }
+
+  def "should parse the configuration when an override was added"() {
+    given:
+      new File(testDir, CoreConstants.MAGNET_CONFIGURATION_OVERRIDE_FILE).text = 'prompt = "test> "'
+    when:
+      ConfigObject config = ConfigurationLoader.load(loader)
+    then:
+      ConfigurationLoader.readSnapshot(snapshot.toURI().toURL(), ConfigurationLoader.getFingerprint(loader)) == null
+      config.prompt == "test> "
+  }
+}
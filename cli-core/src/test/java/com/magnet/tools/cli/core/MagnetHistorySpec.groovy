@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.core
+
+import com.magnet.tools.utils.SpecificationSupport
+
+/**
+ * Test specification for {@link MagnetHistory}
+ */
+class MagnetHistorySpec extends SpecificationSupport {
+
+  File historyFile
+
+  def setup() {
+    historyFile = new File(testDir, "magnet.history")
+  }
+
+  def "should keep the last entries only, and search them"() {
+    given:
+      MagnetHistory history = new MagnetHistory(historyFile, 3)
+    when:
+      ["gen -e examples", "build", "!gen", "exec ls", "exec ls", "gen -o out", "help"].each { history.addToHistory(it) }
+    then:
+      history.getHistoryList() == ["exec ls", "gen -o out", "help"]
+      history.getCurrentIndex() == 3
+      history.searchBackwards("-o ", 3) == 1
+      history.searchBackwards("ls", 3) == 0
+      history.searchBackwards("ls", 0) == -1
+      history.searchBackwards("examples", 3) == -1
+      history.searchPrefixBackwards("exec", 3) == 0
+      history.searchPrefixBackwards("e", 3) == 0
+      history.searchPrefixBackwards("ls", 3) == -1
+    cleanup:
+      history?.close()
+  }
+
+  def "should find the same entries as a linear search"() {
+    given:
+      MagnetHistory history = new MagnetHistory(historyFile, 100)
+      Random random = new Random(42)
+      List<String> words = ["gen", "exec", "ls", "-o", "out", "build", "help", "aaa", "aab"]
+      1000.times {
+        history.addToHistory((1..(1 + random.nextInt(4))).collect { words[random.nextInt(words.size())] }.join(" "))
+      }
+      List<String> entries = history.getHistoryList()
+    expect:
+      for (String term : ["ge", "gen", "exec ls", "aa", "aab", "a a", "-o out", "s -", "missing"]) {
+        for (int start : [0, 1, 50, entries.size()]) {
+          assert history.searchBackwards(term, start) == linearSearch(entries, start) { it.contains(term) }
+          assert history.searchPrefixBackwards(term, start) == linearSearch(entries, start) { it.startsWith(term) }
+        }
+      }
+    cleanup:
+      history?.close()
+  }
+
+  def "should append to the history file, and compact it when it grew"() {
+    given:
+      MagnetHistory history = new MagnetHistory(historyFile, 3)
+    when:
+      ["one", "two", "three", "four", "five"].each { history.addToHistory(it) }
+      history.close()
+    then:
+      historyFile.readLines() == ["one", "two", "three", "four", "five"]
+    when:
+      history = new MagnetHistory(historyFile, 3)
+    then:
+      history.getHistoryList() == ["three", "four", "five"]
+      historyFile.readLines() == ["one", "two", "three", "four", "five"]
+    when:
+      history.addToHistory("six")
+      history.close()
+    then:
+      historyFile.readLines() == ["four", "five", "six"]
+      new MagnetHistory(historyFile, 3).getHistoryList() == ["four", "five", "six"]
+    cleanup:
+      history?.close()
+  }
+
+  def "should clear the entries and the history file"() {
+    given:
+      MagnetHistory history = new MagnetHistory(historyFile, 3)
+      history.addToHistory("one")
+    when:
+      history.clear()
+      history.addToHistory("two")
+      history.close()
+    then:
+      history.getHistoryList() == ["two"]
+      historyFile.readLines() == ["two"]
+  }
+
+  private static int linearSearch(List<String> entries, int start, Closure<Boolean> match) {
+    for (int i = start - 1; i >= 0; i--) {
+      if (match(entries[i])) {
+        return i
+      }
+    }
+    return -1
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.core
+
+/**
+ * Test specification for the command resolution of {@link MagnetShell}
+ */
+class MagnetShellSpec extends AbstractCommandSpecification {
+
+  def "should return the same instance of a stateless command, by name or alias"() {
+    when:
+      Command command = testMagnetShell.getCommand(CoreConstants.HELP_COMMAND)
+    then:
+      command instanceof StatelessCommand
+      command.is(testMagnetShell.getCommand(CoreConstants.HELP_COMMAND))
+      command.is(testMagnetShell.getCommand(CoreConstants.HELP_COMMAND_ALIAS))
+      command.getName() == CoreConstants.HELP_COMMAND
+  }
+
+  def "should return a new instance of a stateful command"() {
+    expect:
+      !testMagnetShell.getCommand(CoreConstants.SET_COMMAND).is(testMagnetShell.getCommand(CoreConstants.SET_COMMAND))
+  }
+
+  def "should resolve the aliases of registered commands and forget unregistered ones"() {
+    given:
+      testMagnetShell.registerCommand(["com.magnet.tools.cli.base.ExitCommand", "test-exit", "test-quit"])
+    when:
+      Command command = testMagnetShell.getCommand("test-quit")
+    then:
+      command.getName() == "test-exit"
+    when:
+      testMagnetShell.unregisterCommand("test-exit")
+    then:
+      testMagnetShell.getCommand("test-exit") == null
+      testMagnetShell.getCommand("test-quit") == null
+  }
+
+  def "should compile a command source again only when it changed"() {
+    given:
+      File source = new File(testDir, "TestUrlCommand.groovy")
+      source.text = commandSource("first")
+      String name = testMagnetShell.registerCommandByURL(source.toURI().toURL())
+    when:
+      Class<?> type = testMagnetShell.getCommand(name).getClass()
+    then:
+      type.is(testMagnetShell.getCommand(name).getClass())
+    when:
+      source.text = commandSource("second version")
+      Command command = testMagnetShell.getCommand(name)
+    then:
+      !type.is(command.getClass())
+      command.getHeader() == "second version"
+    cleanup:
+      testMagnetShell.unregisterCommand(name)
+  }
+
+  private static String commandSource(String header) {
+    return """
+      class TestUrlCommand extends com.magnet.tools.cli.core.AbstractCommand {
+        TestUrlCommand() { super("test-url", [], false) }
+        String getHeader() { "${header}" }
+        def execute(List<String> args) { 0 }
+      }
+    """
+  }
+}
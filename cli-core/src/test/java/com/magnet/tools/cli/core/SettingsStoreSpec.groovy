@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.core
+
+import com.magnet.tools.utils.SpecificationSupport
+
+/**
+ * Test specification for {@link SettingsStore}
+ */
+class SettingsStoreSpec extends SpecificationSupport {
+
+  File file
+
+  def setup() {
+    file = new File(testDir, MagnetSettings.CONFIG_FILE_NAME)
+  }
+
+  def "should save the changes at once, and read them back"() {
+    given:
+      SettingsStore store = new SettingsStore(file)
+    when:
+      store.set(ShellSettings.KEY_VERBOSE, true)
+      store.set(ShellSettings.KEY_WORKSPACE, new File("/tmp/workspace"))
+      store.set(ShellSettings.KEY_ALIASES, [gb: ["gen", "-b"]])
+      store.set(ShellSettings.KEY_VERBOSE, false)
+    then:
+      !file.exists()
+    when:
+      store.flush()
+      SettingsStore reloaded = new SettingsStore(file)
+    then:
+      reloaded.get(ShellSettings.KEY_VERBOSE) == false
+      reloaded.get(ShellSettings.KEY_WORKSPACE) == new File("/tmp/workspace").getPath()
+      reloaded.get(ShellSettings.KEY_ALIASES) == [gb: ["gen", "-b"]]
+      !reloaded.containsKey(ShellSettings.KEY_DEBUG)
+      !new File(testDir, file.getName() + ".tmp").exists()
+  }
+
+  def "should copy the values in and out"() {
+    given:
+      SettingsStore store = new SettingsStore(file)
+      Map aliases = [gb: ["gen", "-b"]]
+      store.set(ShellSettings.KEY_ALIASES, aliases)
+    when:
+      aliases.gb << "-v"
+      ((Map) store.get(ShellSettings.KEY_ALIASES)).remove("gb")
+    then:
+      store.get(ShellSettings.KEY_ALIASES) == [gb: ["gen", "-b"]]
+  }
+
+  def "should read and convert a legacy settings file"() {
+    given:
+      file.text = '''verbose=true
+workspace='/tmp/workspace'
+aliases.gb=['gen', '-b']
+scripts.millis_1='test.mab'
+'''
+    when:
+      SettingsStore store = new SettingsStore(file)
+    then:
+      store.asMap() == [verbose: true, workspace: '/tmp/workspace', aliases: [gb: ['gen', '-b']], scripts: [millis_1: 'test.mab']]
+    when:
+      store.flush()
+    then:
+      file.text.trim().startsWith("{")
+      new SettingsStore(file).asMap() == store.asMap()
+  }
+}
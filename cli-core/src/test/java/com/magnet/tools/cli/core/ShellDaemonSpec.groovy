@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.core
+
+/**
+ * Test specification for {@link ShellDaemon}
+ */
+class ShellDaemonSpec extends AbstractCommandSpecification {
+
+  ShellDaemon daemon
+
+  def setup() {
+    daemon = new ShellDaemon(testMagnetShell)
+    Thread.start { daemon.run() }
+    File daemonFile = new File(testMagnetShell.getMagnetDirectory(), CoreConstants.DAEMON_FILE)
+    for (int i = 0; i < 100 && !(daemonFile.isFile() && daemonFile.text.contains("cwd=")); i++) {
+      Thread.sleep(50)
+    }
+  }
+
+  def cleanup() {
+    daemon.stop()
+  }
+
+  def "should execute a forwarded command line"() {
+    when:
+      List<String> response = send(System.getProperty('user.dir'), [CoreConstants.HELP_COMMAND])
+    then:
+      response.last() == ShellDaemon.EXIT_MARKER + CoreConstants.COMMAND_OK_CODE
+      response.size() > 1
+  }
+
+  def "should ask to execute in-process from another working directory"() {
+    when:
+      List<String> response = send(testDir.getCanonicalPath(), [CoreConstants.HELP_COMMAND])
+    then:
+      response == [ShellDaemon.FALLBACK_MARKER]
+  }
+
+  def "should ask to take startup traces in-process"() {
+    when:
+      List<String> args = [CoreConstants.HELP_COMMAND, CoreConstants.OPTION_STARTUP_TRACE]
+      List<String> response = send(System.getProperty('user.dir'), args)
+    then:
+      response == [ShellDaemon.FALLBACK_MARKER]
+  }
+
+  def "should reject a request with an invalid token"() {
+    when:
+      List<String> response = send(System.getProperty('user.dir'), [CoreConstants.HELP_COMMAND], "invalid")
+    then:
+      response.isEmpty()
+  }
+
+  def "should let the shells executing the requests handed back run beside it"() {
+    given:
+      String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath()
+      List<String> command = [java, "-cp", System.getProperty("java.class.path"), ConcurrentShellWorker.getName(),
+          testMagnetShell.getMagnetDirectory().getAbsolutePath(), "shell", "1", "10"]
+    when:
+      Process process = new ProcessBuilder(command).redirectErrorStream(true).start()
+      process.consumeProcessOutput(System.out, System.err)
+    then:
+      process.waitFor() == 0
+      !new File(testMagnetShell.getMagnetDirectory(), "mab.lock").exists()
+  }
+
+  private List<String> send(String cwd, List<String> args, String token = null) {
+    Properties properties = new Properties()
+    new File(testMagnetShell.getMagnetDirectory(), CoreConstants.DAEMON_FILE).withInputStream { properties.load(it) }
+    Map<String, String> env = System.getenv().findAll { k, v -> k in ShellDaemon.ENVIRONMENT }
+    List<String> fields = [token ?: properties.token, cwd, args.size()] + args +
+        [env.size()] + env.collect { k, v -> "$k=$v" }
+
+    Socket socket = new Socket("127.0.0.1", properties.port as int)
+    try {
+      socket.getOutputStream().write(fields.collect { "$it\u0000" }.join().getBytes("UTF-8"))
+      socket.getOutputStream().flush()
+      return socket.getInputStream().readLines("UTF-8")
+    } finally {
+      socket.close()
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.core
+
+import groovy.json.JsonSlurper
+import spock.lang.Specification
+
+/**
+ * Test specification for {@link StartupProfiler}
+ */
+class StartupProfilerSpec extends Specification {
+
+  String savedFormat
+
+  def setup() {
+    savedFormat = StartupProfiler.format
+  }
+
+  def cleanup() {
+    StartupProfiler.format = savedFormat
+  }
+
+  def "should remove the startup trace option from the arguments"() {
+    expect:
+      StartupProfiler.configure(args as String[]) as List == remaining
+      StartupProfiler.format == format
+    where:
+      args                                       | remaining      | format
+      ["--startup-trace", "help"]                | ["help"]       | StartupProfiler.TABLE_FORMAT
+      ["help", "--startup-trace=json"]           | ["help"]       | StartupProfiler.JSON_FORMAT
+      ["--startup-trace=table"]                  | []             | StartupProfiler.TABLE_FORMAT
+  }
+
+  def "should record nested phases"() {
+    when:
+      def result = StartupProfiler.time("test outer") {
+        StartupProfiler.time("test inner") { 42 }
+      }
+      List<StartupProfiler.Phase> phases = StartupProfiler.getPhases().findAll { it.name.startsWith("test ") }
+    then:
+      result == 42
+      phases*.name == ["test outer", "test inner"]
+      phases*.depth == [0, 1]
+      phases[0].duration >= phases[1].duration
+  }
+
+  def "should print the timings as JSON"() {
+    given:
+      StartupProfiler.time("test json") { null }
+      StartupProfiler.format = StartupProfiler.JSON_FORMAT
+      ByteArrayOutputStream out = new ByteArrayOutputStream()
+    when:
+      StartupProfiler.dump(new PrintStream(out, true))
+      def json = new JsonSlurper().parseText(out.toString())
+    then:
+      json.phases.find { it.name == "test json" }.depth == 0
+  }
+}
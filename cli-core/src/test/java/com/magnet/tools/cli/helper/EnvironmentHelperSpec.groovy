@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.helper
+
+import com.magnet.tools.utils.SpecificationSupport
+import spock.lang.IgnoreIf
+
+/**
+ * Test specification for {@link EnvironmentHelper}
+ */
+@IgnoreIf({ System.getProperty("os.name").startsWith("Win") })
+class EnvironmentHelperSpec extends SpecificationSupport {
+
+  File first
+  File second
+
+  def setup() {
+    first = new File(testDir, "first")
+    second = new File(testDir, "second")
+    [first, second]*.mkdirs()
+  }
+
+  def "should find the first executable in the PATH, as which does"() {
+    given:
+      executable(new File(second, "tool"))
+      new File(first, "tool").text = "not executable"
+      Map env = [PATH: [first, second]*.getPath().join(File.pathSeparator)]
+    expect:
+      EnvironmentHelper.findFile("tool", env) == new File(second, "tool").getAbsoluteFile()
+      EnvironmentHelper.findFile("missing", env) == null
+      EnvironmentHelper.findFile(new File(second, "tool").getPath(), env) == new File(second, "tool").getAbsoluteFile()
+  }
+
+  def "should look up the executables again when the PATH changed"() {
+    given:
+      executable(new File(first, "tool"))
+      executable(new File(second, "tool"))
+    expect:
+      EnvironmentHelper.findFile("tool", [PATH: first.getPath()]) == new File(first, "tool").getAbsoluteFile()
+      EnvironmentHelper.findFile("tool", [PATH: second.getPath()]) == new File(second, "tool").getAbsoluteFile()
+  }
+
+  def "should look up a removed executable again"() {
+    given:
+      executable(new File(first, "tool"))
+      executable(new File(second, "tool"))
+      Map env = [PATH: [first, second]*.getPath().join(File.pathSeparator)]
+    when:
+      EnvironmentHelper.findFile("tool", env)
+      new File(first, "tool").delete()
+    then:
+      EnvironmentHelper.findFile("tool", env) == new File(second, "tool").getAbsoluteFile()
+  }
+
+  private static void executable(File file) {
+    file.text = "#!/bin/sh"
+    file.setExecutable(true)
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.helper
+
+import com.magnet.tools.utils.Renderer
+import com.magnet.tools.utils.SpecificationSupport
+
+/**
+ * Test specification for {@link OutputCapture}
+ */
+class OutputCaptureSpec extends SpecificationSupport {
+
+  def "should keep a small output in memory"() {
+    given:
+      OutputCapture capture = new OutputCapture(100, 3)
+    when:
+      capture.write("a\nb\n".getBytes("UTF-8"))
+      capture.close()
+    then:
+      !capture.isSpilled()
+      capture.getText() == "a\nb\n"
+      tail(capture) == ["a", "b"]
+  }
+
+  def "should spill a large output to a temporary file, and keep its last lines"() {
+    given:
+      OutputCapture capture = new OutputCapture(100, 3)
+    when:
+      capture.write("a\nb\n".getBytes("UTF-8"))
+      (1..50).each { capture.write("line $it\r\n".getBytes("UTF-8")) }
+      capture.write("partial".getBytes("UTF-8"))
+      capture.close()
+      File file = capture.getFile()
+    then:
+      capture.isSpilled()
+      file.length() == capture.size()
+      capture.getText().startsWith("a\nb\nline 1\r\n")
+      tail(capture) == ["line 49", "line 50", "partial"]
+    when:
+      capture.delete()
+    then:
+      !file.exists()
+  }
+
+  def "should only keep the last kept temporary file"() {
+    given:
+      List<OutputCapture> captures = (1..2).collect {
+        OutputCapture capture = new OutputCapture(10, 3)
+        capture.write("more than ten bytes\n".getBytes("UTF-8"))
+        return capture
+      }
+      List<File> files = captures*.getFile()
+    when:
+      captures[0].keep()
+      captures[0].delete()
+    then:
+      files[0].isFile()
+    when:
+      captures[1].keep()
+      captures[1].delete()
+    then:
+      !files[0].exists()
+      files[1].isFile()
+  }
+
+  private static List<String> tail(OutputCapture capture) {
+    StringWriter writer = new StringWriter()
+    capture.tail(writer, Renderer.IDENTITY_RENDERER)
+    return writer.toString().readLines()
+  }
+}
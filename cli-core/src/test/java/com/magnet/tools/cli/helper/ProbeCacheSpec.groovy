@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.helper
+
+import com.magnet.tools.utils.SpecificationSupport
+import spock.lang.Unroll
+
+/**
+ * Test specification for {@link ProbeCache}
+ */
+class ProbeCacheSpec extends SpecificationSupport {
+
+  static final long TTL = 60000
+
+  File file
+
+  Map<String, String> env = [PATH: "/usr/bin", JAVA_HOME: "/opt/jdk"]
+
+  int runs
+
+  File executable
+
+  def setup() {
+    file = new File(testDir, ProbeCache.FILE_NAME)
+    executable = new File(testDir, "mvn")
+    executable.text = "#!/bin/sh"
+  }
+
+  def "should run a probe once, until the environment changes"() {
+    given:
+      ProbeCache cache = new ProbeCache(file, TTL, env)
+      ProbeCache.Probe first = cache.probe("mvn -version", this.&mvnVersion)
+      cache.save()
+    when:
+      ProbeCache.Probe second = new ProbeCache(file, TTL, env).probe("mvn -version", this.&mvnVersion)
+    then:
+      runs == 1
+      !first.cached
+      second.cached
+      second.output == "Apache Maven 3.2.1"
+      second.exitCode == 0
+    when:
+      env.M2_HOME = "/opt/maven"
+      ProbeCache.Probe third = new ProbeCache(file, TTL, env).probe("mvn -version", this.&mvnVersion)
+    then:
+      runs == 2
+      !third.cached
+  }
+
+  def "should run a probe again when its result expired"() {
+    given:
+      ProbeCache cache = new ProbeCache(file, TTL, env)
+      cache.probe("mvn -version", this.&mvnVersion)
+      cache.save()
+    when:
+      new ProbeCache(file, 0, env).probe("mvn -version", this.&mvnVersion)
+    then:
+      runs == 2
+  }
+
+  @Unroll
+  def "should run a failed probe again: #failure"() {
+    given:
+      ProbeCache cache = new ProbeCache(file, TTL, env)
+      cache.probe("mysql --version", probe)
+      cache.save()
+    when:
+      ProbeCache.Probe second = new ProbeCache(file, TTL, env).probe("mysql --version", this.&mvnVersion)
+    then:
+      !second.cached
+      second.error == null
+      runs == 1
+    where:
+      failure             | probe
+      "not found"         | { throw new IllegalArgumentException("mysql not found") }
+      "exit code"         | { new ProbeCache.Probe(path: "/usr/bin/mysql", exitCode: 1, output: "broken") }
+      "no executable"     | { new ProbeCache.Probe(exitCode: 0, output: "Apache Maven 3.2.1") }
+  }
+
+  def "should run a probe again when its executable was upgraded"() {
+    given:
+      ProbeCache cache = new ProbeCache(file, TTL, env)
+      cache.probe("mvn -version", this.&mvnVersion)
+      cache.save()
+    when:
+      executable.setLastModified(executable.lastModified() - 60000)
+      ProbeCache.Probe second = new ProbeCache(file, TTL, env).probe("mvn -version", this.&mvnVersion)
+    then:
+      !second.cached
+      runs == 2
+  }
+
+  private ProbeCache.Probe mvnVersion() {
+    runs++
+    return new ProbeCache.Probe(path: executable.getPath(), exitCode: 0, output: "Apache Maven 3.2.1")
+  }
+}
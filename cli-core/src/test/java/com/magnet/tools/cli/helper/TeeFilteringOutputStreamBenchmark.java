@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.helper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+import com.magnet.tools.utils.LogRenderer;
+import com.magnet.tools.utils.Renderer;
+
+/**
+ * Throughput of the {@link TeeFilteringOutputStream} for noisy Maven output, written in chunks as a
+ * {@link org.apache.commons.exec.PumpStreamHandler} does, or byte by byte. It reports the MB of output processed
+ * per second, and the flushes of the console writer per MB.
+ * <p/>
+ * Run with: java -cp target/classes:target/test-classes:&lt;dependencies&gt;
+ * com.magnet.tools.cli.helper.TeeFilteringOutputStreamBenchmark [MB]
+ */
+public class TeeFilteringOutputStreamBenchmark {
+
+  /**
+   * Size of the chunks read from the process by the stream pumper
+   */
+  private static final int CHUNK_SIZE = 1024;
+
+  private static final String[] MAVEN_LINES = {
+      "[INFO] Downloading: https://repo.maven.apache.org/maven2/org/apache/maven/maven-core/3.0.4/maven-core-3.0.4.pom",
+      "[INFO] Downloaded: https://repo.maven.apache.org/maven2/org/apache/maven/maven-core/3.0.4/maven-core-3.0.4.pom (7 KB at 52.3 KB/sec)",
+      "[INFO] --- maven-compiler-plugin:3.1:compile (default-compile) @ employees-server ---",
+      "[INFO] Compiling 42 source files to /home/dev/employees/server/target/classes",
+      "[WARNING] /home/dev/employees/server/src/main/java/com/example/Employee.java: uses unchecked or unsafe operations.",
+      "Running com.example.api.EmployeesControllerTest",
+      "Tests run: 12, Failures: 0, Errors: 0, Skipped: 0, Time elapsed: 0.42 sec",
+      "",
+  };
+
+  public static void main(String[] args) throws IOException {
+    int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; text.length() < 1 << 20; i++) {
+      text.append(MAVEN_LINES[i % MAVEN_LINES.length]).append(i % 3 == 0 ? "\r\n" : "\n");
+    }
+    byte[] output = text.toString().getBytes("UTF-8");
+
+    run("identity, chunks", output, megabytes, Renderer.IDENTITY_RENDERER, true);
+    run("identity, bytes", output, megabytes, Renderer.IDENTITY_RENDERER, false);
+    run("log renderer, chunks", output, megabytes, new LogRenderer(), true);
+    run("log renderer, bytes", output, megabytes, new LogRenderer(), false);
+    run("filtered, chunks", output, megabytes, new LogRenderer("ERROR|WARNING", "WARNING"), true);
+  }
+
+  private static void run(String workload, byte[] output, int megabytes, Renderer renderer, boolean chunks)
+      throws IOException {
+    // warm-up
+    write(output, Math.max(1, megabytes / 10), renderer, chunks, new CountingWriter());
+
+    CountingWriter console = new CountingWriter();
+    long start = System.nanoTime();
+    write(output, megabytes, renderer, chunks, console);
+    long elapsed = System.nanoTime() - start;
+
+    double written = (double) output.length * megabytes / (1 << 20);
+    System.out.println(String.format("%-22s %8.1f MB/s %10.1f flushes/MB %8.2f console chars/byte",
+        workload, written * 1e9d / elapsed, console.flushes / written,
+        console.characters / (written * (1 << 20))));
+  }
+
+  private static void write(byte[] output, int times, Renderer renderer, boolean chunks, Writer console)
+      throws IOException {
+    TeeFilteringOutputStream stream = new TeeFilteringOutputStream(new NullOutputStream(), console, renderer);
+    for (int i = 0; i < times; i++) {
+      if (chunks) {
+        for (int off = 0; off < output.length; off += CHUNK_SIZE) {
+          stream.write(output, off, Math.min(CHUNK_SIZE, output.length - off));
+        }
+      } else {
+        for (byte b : output) {
+          stream.write(b);
+        }
+      }
+    }
+    stream.close();
+  }
+
+  private static class NullOutputStream extends OutputStream {
+    public void write(int b) {
+    }
+
+    public void write(byte[] b, int off, int len) {
+    }
+  }
+
+  /**
+   * Console counting the characters and flushes, and discarding them
+   */
+  private static class CountingWriter extends Writer {
+    long characters;
+    long flushes;
+
+    public void write(char[] cbuf, int off, int len) {
+      characters += len;
+    }
+
+    public void write(String str, int off, int len) {
+      characters += len;
+    }
+
+    public void flush() {
+      flushes++;
+    }
+
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.helper
+
+import com.magnet.tools.utils.LogRenderer
+import com.magnet.tools.utils.Renderer
+import org.fusesource.jansi.Ansi
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Test specification for {@link TeeFilteringOutputStream}
+ */
+class TeeFilteringOutputStreamSpec extends Specification {
+
+  static final String INPUT = "[INFO] started\r\n[ERROR] failed: caf\u00e9\r\n\r\n[INFO] ${'x' * 300}\n" +
+      "[ERROR] last line, unterminated"
+
+  static final Map<String, Renderer> RENDERERS = [
+      identity: Renderer.IDENTITY_RENDERER,
+      filtered: new LogRenderer("ERROR", null)]
+
+  /**
+   * Console output for the {@link #INPUT}, by renderer. The filter lets empty lines through
+   */
+  static final Map<String, String> CONSOLES = [
+      identity: INPUT,
+      filtered: "[ERROR] failed: caf\u00e9\r\n\r\n[ERROR] last line, unterminated"]
+
+  boolean ansiEnabled = Ansi.isEnabled()
+
+  def setup() {
+    Ansi.setEnabled(false)
+  }
+
+  def cleanup() {
+    Ansi.setEnabled(ansiEnabled)
+  }
+
+  @Unroll
+  def "should write in chunks of #chunk bytes as byte by byte, with the #name renderer"() {
+    given:
+      byte[] input = INPUT.getBytes("UTF-8")
+      Renderer renderer = RENDERERS[name]
+    when:
+      Map<String, String> chunked = tee(input, chunk, renderer)
+    then:
+      chunked == tee(input, 0, renderer)
+      chunked.out == INPUT
+      chunked.console == CONSOLES[name]
+    where:
+      // small chunks split the \r\n separators and the multi-byte character
+      [chunk, name] << [[1, 2, 3, 5, 8, 13, 64, 4096], RENDERERS.keySet()].combinations()
+  }
+
+  @Unroll
+  def "should render the pending line when closed, with the #name renderer"() {
+    given:
+      StringWriter console = new StringWriter()
+      TeeFilteringOutputStream tee = new TeeFilteringOutputStream(new ByteArrayOutputStream(), console, RENDERERS[name])
+    when:
+      tee.write("[ERROR] first\n[ERROR] pen".getBytes("UTF-8"))
+      tee.write("ding".getBytes("UTF-8"))
+    then:
+      console.toString() == "[ERROR] first\n"
+    when:
+      tee.close()
+    then:
+      console.toString() == "[ERROR] first\n[ERROR] pending"
+    where:
+      name << RENDERERS.keySet()
+  }
+
+  /**
+   * Write the input to a tee, in chunks or byte by byte, and close it
+   * @param chunk size of the chunks, 0 to write byte by byte
+   * @return the output of the tee, and the lines rendered to its console
+   */
+  private static Map<String, String> tee(byte[] input, int chunk, Renderer renderer) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream()
+    StringWriter console = new StringWriter()
+    TeeFilteringOutputStream tee = new TeeFilteringOutputStream(out, console, renderer)
+    if (chunk == 0) {
+      input.each { byte b -> tee.write(b & 0xff) }
+    } else {
+      for (int off = 0; off < input.length; off += chunk) {
+        tee.write(input, off, Math.min(chunk, input.length - off))
+      }
+    }
+    tee.close()
+    return [out: out.toString("UTF-8"), console: console.toString()]
+  }
+}
@@ -17,21 +17,31 @@
 package com.magnet.tools.cli.r2m
 
 import com.magnet.tools.cli.core.AbstractCommand
+import com.magnet.tools.cli.core.BufferedShell
 import com.magnet.tools.cli.core.CommandException
 import com.magnet.tools.cli.core.CoreConstants
+import com.magnet.tools.cli.core.Shell
 import com.magnet.tools.cli.helper.PromptHelper
 import com.magnet.tools.cli.helper.ResourcePromptValidator
 import com.magnet.tools.cli.messages.CommonMessages
 import com.magnet.tools.cli.rest.*
 import com.magnet.tools.config.ConfigLexicon
 import com.magnet.tools.utils.AnsiHelper
+import com.magnet.tools.utils.DirectorySynchronizer
 import com.magnet.tools.utils.HttpHelper
 import com.magnet.tools.utils.StringHelper
 import com.magnet.langpack.builder.rest.EmptyPropertyPolicy
+import com.magnet.langpack.builder.rest.RestExampleContainer
 import groovy.json.JsonSlurper
 import groovy.util.logging.Slf4j
 import groovyx.net.http.Method
 
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
 /**
  * Constructor: called dynamically by the Shell and injected with name, aliases, and hidden flag defined in
  * magnet_configuration.groovy definition file
@@ -93,6 +103,16 @@ class GenCommand extends AbstractCommand {
    */
   private EmptyPropertyPolicy policy
 
+  /**
+   * Maximum number of platform targets generated concurrently
+   */
+  private int jobs = 1
+
+  /**
+   * Whether to generate in a staging directory, and only write the files whose content changed
+   */
+  private boolean update
+
   /**
    * Ctor
    * @param name command name
@@ -109,11 +129,14 @@ class GenCommand extends AbstractCommand {
     o(longOpt: MobileRestConstants.OPTION_OUTPUT_DIR, args: 1, argName: 'output directory', required: false, "The output directory where the generated assets are saved. If you do not specify this, the current working directory is used.")
     w(longOpt: MobileRestConstants.OPTION_OPEN_WINDOW, args: 0, argName: 'open output dir', 'Open the output directory in Explorer or the Finder after asset generation is complete.')
     f(longOpt: CoreConstants.OPTION_FORCE, args: 0, 'Clean output dir')
+    u(longOpt: MobileRestConstants.OPTION_UPDATE, args: 0, 'Only write the generated files whose content changed, and remove the files no longer generated')
     n(longOpt: MobileRestConstants.OPTION_NAMESPACE, args: 1, argName: 'name space ', required: false, 'Name space prefix for iOS and JS ')
     i(longOpt: MobileRestConstants.OPTION_INTERACTIVE, args: 0, 'Whether to start the interactive mode')
     d(longOpt: MobileRestConstants.OPTION_DOWNLOAD, args: 1, 'Download example from git repo')
     l(longOpt: MobileRestConstants.OPTION_LIST, args: 0, 'Show a list of examples')
     j(longOpt: MobileRestConstants.OPTION_EMPTY_PROPERTY_POLICY, args: 1, 'The policy for empty property in the json request or response. Choose from ' + MobileRestConstants.SUPPORTED_EMPTY_PROPERTY_POLICIES_STRING)
+    _(longOpt: MobileRestConstants.OPTION_JOBS, args: 1, argName: 'jobs', required: false, 'Maximum number of platform targets generated concurrently')
+    _(longOpt: MobileRestConstants.OPTION_NO_CACHE, args: 0, 'Always generate, bypassing the generation cache')
   }
 
 
@@ -125,6 +148,7 @@ class GenCommand extends AbstractCommand {
     def options = parse(args)
     validateOptionsOrThrow(options)
     setForce(options.f)
+    update = options.u
 
     //
     // Get example
@@ -228,10 +252,6 @@ class GenCommand extends AbstractCommand {
       startQuestionnaire(!options.l)
     }
 
-    if (isForce()) {
-      cleanUpOutputDirs(outputDirectory, platformTargets)
-    }
-
     //
     // Get policy
     //
@@ -245,22 +265,125 @@ class GenCommand extends AbstractCommand {
     }
 
     //
-    // Finally Generate API
+    // Get number of concurrent jobs
+    //
+    if (options.jobs) {
+      jobs = validateJobs(options.jobs)
+    }
+
+    //
+    // Get the targets to generate, targets whose inputs did not change are taken from the generation cache
     //
+    boolean cached = !options.'no-cache'
+    GenerationCache cache = new GenerationCache(shell.getMagnetDirectory())
+    String examplesDigest = cached ? GenerationCache.digestExamples(examples) : null
+    Map<String, File> outputDirectories = new LinkedHashMap<String, File>()
+    Map<String, String> cacheKeys = [:]
+    List<String> outdatedTargets = []
     for (target in platformTargets) {
-      def mobileOutputDirectory =
+      File mobileOutputDirectory =
           (platformTargets.size() != 1 || outputDirectory.getCanonicalPath() == new File(".", R2MConstants.DEFAULT_RELATIVE_OUTPUT_DIR).getCanonicalPath()) ?
               new File(outputDirectory, target) : outputDirectory
+      outputDirectories.put(target, mobileOutputDirectory)
+      if (cached) {
+        String key = GenerationCache.getKey(examplesDigest, [
+            (RestConstants.OPTION_PACKAGE_NAME)              : packageName,
+            (MobileRestConstants.OPTION_NAMESPACE)           : namespace,
+            (MobileRestConstants.OPTION_CONTROLLER_CLASS)    : controllerClassName,
+            (MobileRestConstants.OPTION_EMPTY_PROPERTY_POLICY): policy,
+            (ConfigLexicon.KEY_PLATFORM_VERSION)             : ConfigLexicon.DEFAULT_PLATFORM_VERSION,
+            target                                           : target])
+        cacheKeys.put(target, key)
+        if (isForce() && !update) {
+          deleteFileOrDir(mobileOutputDirectory)
+        }
+        if (cache.restore(key, mobileOutputDirectory, update)) {
+          info(R2MMessages.generationUpToDate(AnsiHelper.bold(target), mobileOutputDirectory))
+          continue
+        }
+      }
+      outdatedTargets << target
+    }
+
+    //
+    // In update mode, and when the generation is cached, the targets are generated in staging directories and
+    // synchronized afterwards, so that only the generated assets are cached. Otherwise they are generated in place
+    //
+    boolean staged = update || cached
+    Map<String, File> generationDirectories = new LinkedHashMap<String, File>()
+    for (target in outdatedTargets) {
+      // the output directory no longer matches its cached generation, if any
+      cache.invalidate(outputDirectories[target])
+      if (isForce() && !update) {
+        deleteFileOrDir(outputDirectories[target])
+      }
+      generationDirectories.put(target, staged ? createStagingDirectory(target) : outputDirectories[target])
+    }
+
+    //
+    // Parse the examples only once, all platform targets share the same entries
+    //
+    List<RestExampleContainer> entries = null
+    if (outdatedTargets) {
+      entries = getBuilder(outdatedTargets[0]).parseExamples(examples, controllerClassName, null, policy)
+      if (!entries) {
+        throw new CommandException(CoreConstants.COMMAND_UNKNOWN_ERROR_CODE, CommonMessages.invalidResource(examples))
+      }
+    }
+
+    //
+    // Finally Generate API
+    //
+    Map<String, Map> paramsByTarget = new LinkedHashMap<String, Map>()
+    for (target in outdatedTargets) {
       def params = [
           (RestConstants.OPTION_PACKAGE_NAME)                      : packageName,
           (MobileRestConstants.OPTION_NAMESPACE)                   : namespace,
-          (MobileRestConstants.OPTION_OUTPUT_DIR)                  : mobileOutputDirectory,
+          (MobileRestConstants.OPTION_OUTPUT_DIR)                  : generationDirectories[target],
           (MobileRestConstants.OPTION_CONTROLLER_CLASS)            : controllerClassName,
           (MobileRestConstants.OPTION_REST_SPECIFICATIONS_LOCATION): examples,
-          (MobileRestConstants.OPTION_EMPTY_PROPERTY_POLICY)       : policy
-
+          (MobileRestConstants.OPTION_EMPTY_PROPERTY_POLICY)       : policy,
+          (MobileRestConstants.KEY_PARSED_EXAMPLES)                : entries
       ]
-      getBuilder(target).build(params)
+      paramsByTarget.put(target, params)
+    }
+    try {
+      if (jobs > 1 && paramsByTarget.size() > 1) {
+        generateConcurrently(paramsByTarget)
+      } else {
+        paramsByTarget.each { String target, Map params -> getBuilder(target).build(params) }
+      }
+
+      for (target in outdatedTargets) {
+        if (staged) {
+          DirectorySynchronizer synchronizer = new DirectorySynchronizer()
+          if (update) {
+            // only the files of the previous generation are removed, the files written by hand are kept
+            synchronizer.synchronize(generationDirectories[target], outputDirectories[target],
+                cache.getGeneratedFiles(outputDirectories[target]))
+            info(R2MMessages.generationSynchronized(AnsiHelper.bold(target), outputDirectories[target],
+                synchronizer.added, synchronizer.changed, synchronizer.unchanged, synchronizer.removed))
+          } else {
+            // the files no longer generated are left in place, as when generated in place
+            synchronizer.synchronize(generationDirectories[target], outputDirectories[target], false)
+          }
+        }
+        if (cached) {
+          cache.store(cacheKeys[target], generationDirectories[target], outputDirectories[target])
+        } else if (staged) {
+          cache.record(generationDirectories[target], outputDirectories[target])
+        }
+      }
+    } finally {
+      if (staged) {
+        generationDirectories.values().each { deleteFileOrDir(it) }
+      }
+    }
+
+    if (cached) {
+      if (isVerbose()) {
+        info(R2MMessages.generationCacheStatistics(cache.hits, cache.hits + cache.misses, cache.hitRate))
+      }
     }
 
     //
@@ -275,19 +398,66 @@ class GenCommand extends AbstractCommand {
     return CoreConstants.COMMAND_OK_CODE
   }
 
+  /**
+   * Generate the platform targets concurrently, using at most {@link #jobs} threads.
+   * The output of each target is buffered, and written at once in the order of the targets,
+   * so that the logs of the different targets do not interleave.
+   * @param paramsByTarget builder parameters, keyed by platform target
+   */
+  private void generateConcurrently(Map<String, Map> paramsByTarget) {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(jobs, paramsByTarget.size()))
+    try {
+      Map<BufferedShell, Future> results = new LinkedHashMap<BufferedShell, Future>()
+      paramsByTarget.each { String target, Map params ->
+        BufferedShell output = new BufferedShell(shell)
+        DefaultMobileRestControllerBuilder builder = getBuilder(target, output)
+        results.put(output, executor.submit({ builder.build(params) } as Callable))
+      }
+
+      Throwable failure = null
+      results.each { BufferedShell output, Future result ->
+        try {
+          result.get()
+        } catch (ExecutionException e) {
+          failure = failure ?: e.getCause()
+        } finally {
+          output.flush()
+        }
+      }
+      if (failure) {
+        throw failure
+      }
+    } finally {
+      executor.shutdownNow()
+    }
+  }
+
+  /**
+   * Create a new staging directory where a platform target is generated in update mode
+   * @param target platform target
+   * @return empty staging directory
+   */
+  private static File createStagingDirectory(String target) {
+    File dir = File.createTempFile("r2m-${target}-", "")
+    dir.delete()
+    dir.mkdirs()
+    return dir
+  }
+
   /**
    * Get the correct mobile controller builder for the platform target
    * @param target platform target
+   * @param builderShell shell used by the builder, the command shell by default
    * @return mobile controller builder instance for this platform
    */
-  private DefaultMobileRestControllerBuilder getBuilder(String target) {
+  private DefaultMobileRestControllerBuilder getBuilder(String target, Shell builderShell = shell) {
     switch (target.toLowerCase()) {
       case 'ios':
-        return new ObjectiveCRestControllerBuilder(shell);
+        return new ObjectiveCRestControllerBuilder(builderShell);
       case 'android':
-        return new AndroidRestControllerBuilder(shell);
+        return new AndroidRestControllerBuilder(builderShell);
       case 'js':
-        return new JsRestControllerBuilder(shell);
+        return new JsRestControllerBuilder(builderShell);
       default: // should not happen
         throw new CommandException(CoreConstants.COMMAND_INVALID_OPTION_VALUE, CommonMessages.invalidValue(target, MobileRestConstants.SUPPORTED_PLATFORM_TARGETS.join(", ")))
     }
@@ -492,6 +662,14 @@ class GenCommand extends AbstractCommand {
     }
   }
 
+  private static int validateJobs(String value) throws CommandException {
+    int n = value.isInteger() ? value.toInteger() : 0
+    if (n < 1) {
+      throw new CommandException(CoreConstants.COMMAND_INVALID_OPTION_VALUE, CommonMessages.invalidValue(value))
+    }
+    return n
+  }
+
   private static void validatePlatformTargets(List<String> targets) {
     for (target in targets) {
       if (!(target in MobileRestConstants.SUPPORTED_PLATFORM_TARGETS)) {
@@ -501,18 +679,6 @@ class GenCommand extends AbstractCommand {
   }
 
 
-  private static void cleanUpOutputDirs(File dir, List<String> targets) {
-    // single target, delete output dir if output dir is NOT default location
-    if (targets.size() == 1 && dir.getCanonicalPath() != new File(".", R2MConstants.DEFAULT_RELATIVE_OUTPUT_DIR).getCanonicalPath()) {
-      deleteFileOrDir(dir)
-      return
-    }
-    // one or multiple platforms
-    for (target in targets) {
-      deleteFileOrDir(new File(dir, target))
-    }
-  }
-
   private static void deleteFileOrDir(File d) {
     if (!d.exists()) {
       return
@@ -45,6 +45,8 @@ class GenCommandCompleter {
           new CustomOptionsCompleter.OptionsCompleter(["--${MobileRestConstants.OPTION_INTERACTIVE}", "-i"], new NullCompletor()),
           new CustomOptionsCompleter.OptionsCompleter(["--${MobileRestConstants.OPTION_DOWNLOAD}", "-d"], new SimpleCompletor()),
           new CustomOptionsCompleter.OptionsCompleter(["--${CoreConstants.OPTION_FORCE}", "-f"], new NullCompletor()),
+          new CustomOptionsCompleter.OptionsCompleter(["--${MobileRestConstants.OPTION_JOBS}"], new SimpleCompletor()),
+          new CustomOptionsCompleter.OptionsCompleter(["--${MobileRestConstants.OPTION_NO_CACHE}"], new NullCompletor()),
           new CustomOptionsCompleter.OptionsCompleter(new ArrayList(MobileRestConstants.SUPPORTED_PLATFORM_TARGETS), new NullCompletor())
 
       )
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.r2m
+
+import com.magnet.tools.config.ConfigLexicon
+import com.magnet.tools.utils.DirectorySynchronizer
+import com.magnet.tools.utils.FileHelper
+import com.magnet.tools.utils.ProcessLock
+import groovy.util.logging.Slf4j
+import org.apache.commons.io.FileUtils
+
+import java.security.MessageDigest
+
+/**
+ * Content-addressed cache for the Mobile API generated by {@link GenCommand}.
+ * A generation is keyed by a digest of the examples content, of all the generation options and of the generator
+ * version. A copy of the generated assets is kept under the magnet directory for each key, and an index
+ * records the key last generated in each output directory, along with a manifest of the files written there, so that:
+ * <ul>
+ *   <li>an output directory already generated with the same key, whose generated files are unchanged since, is left
+ *   in place</li>
+ *   <li>an output directory generated with another key, or whose generated files were changed or removed, is restored
+ *   from the cache</li>
+ *   <li>otherwise the Mobile API must be generated, and is then stored with {@link #store}</li>
+ * </ul>
+ * An output directory written without the cache must be {@link #invalidate invalidated}. The manifest is kept
+ * until the next generation, {@link #record recorded} when written without the cache: it lists the files generated
+ * in the output directory, which are the only ones removed when they are no longer generated. The least recently
+ * used generations are evicted beyond {@link #maxEntries}.
+ * <p>
+ * Several r2m processes can share the cache: each entry is restored and stored under its own {@link ProcessLock},
+ * and the index is read again under its lock before being updated.
+ */
+@Slf4j
+class GenerationCache {
+
+  /**
+   * Name of the cache directory, under the magnet directory
+   */
+  static final String CACHE_DIRECTORY_NAME = "gen-cache"
+
+  /**
+   * Name of the index file mapping an output directory to the key of its last generation
+   */
+  static final String INDEX_FILE_NAME = "index.properties"
+
+  /**
+   * Name of the directory of the manifests, listing the size and modification time of the files generated in an
+   * output directory
+   */
+  static final String MANIFESTS_DIRECTORY_NAME = "manifests"
+
+  /**
+   * Default maximum number of generations kept
+   */
+  static final int MAX_ENTRIES = Integer.getInteger("MAGNET_GEN_CACHE_ENTRIES", 32)
+
+  /**
+   * Version of the generator, part of every key: the cache survives upgrades, which may generate other assets
+   */
+  static final String GENERATOR_VERSION =
+      "${ConfigLexicon.MAGNET_TOOLS_VERSION} (${ConfigLexicon.TOOLS_SCM_REVISION}; ${ConfigLexicon.TOOLS_BUILD_TIME})"
+
+  private final File cacheDirectory
+
+  private final File indexFile
+
+  private final File manifestsDirectory
+
+  private final Properties index = new Properties()
+
+  /**
+   * Maximum number of generations kept, the least recently used are evicted
+   */
+  int maxEntries = MAX_ENTRIES
+
+  /**
+   * Number of targets found in the cache
+   */
+  int hits
+
+  /**
+   * Number of targets not found in the cache
+   */
+  int misses
+
+  /**
+   * Ctor
+   * @param magnetDirectory magnet directory under which the cache is located
+   */
+  GenerationCache(File magnetDirectory) {
+    cacheDirectory = new File(magnetDirectory, CACHE_DIRECTORY_NAME)
+    manifestsDirectory = new File(cacheDirectory, MANIFESTS_DIRECTORY_NAME)
+    manifestsDirectory.mkdirs()
+    indexFile = new File(cacheDirectory, INDEX_FILE_NAME)
+    ProcessLock.forFile(indexFile).withLock { loadIndex() }
+  }
+
+  /**
+   * Compute the digest of the examples content.
+   * For a directory, the name and content of every file are digested, in name order.
+   * @param examples file, directory or URL of the examples
+   * @return hexadecimal digest
+   */
+  static String digestExamples(String examples) {
+    MessageDigest md = MessageDigest.getInstance("SHA-1")
+    File dir = FileHelper.getDirectory(examples)
+    if (dir) {
+      dir.listFiles().sort { it.name }.each { File f ->
+        md.update(f.name.getBytes("UTF-8"))
+        if (f.isFile()) {
+          md.update(f.bytes)
+        }
+      }
+    } else {
+      URL url = FileHelper.getURL(examples)
+      md.update(url ? url.bytes : examples.getBytes("UTF-8"))
+    }
+    return md.digest().encodeHex().toString()
+  }
+
+  /**
+   * Compute the key of a generation, for the {@link #GENERATOR_VERSION}
+   * @param examplesDigest digest of the examples, see {@link #digestExamples}
+   * @param options all the generation options (package, namespace, controller, policy, target, platform version...)
+   * @return hexadecimal key
+   */
+  static String getKey(String examplesDigest, Map options) {
+    MessageDigest md = MessageDigest.getInstance("SHA-1")
+    md.update(GENERATOR_VERSION.getBytes("UTF-8"))
+    md.update(examplesDigest.getBytes("UTF-8"))
+    new TreeMap(options).each { k, v ->
+      md.update("${k}=${v};".toString().getBytes("UTF-8"))
+    }
+    return md.digest().encodeHex().toString()
+  }
+
+  /**
+   * Make the output directory up-to-date with the cached generation for this key, if any
+   * @param key generation key
+   * @param outputDirectory output directory of the generation
+   * @param clean whether to remove the files previously generated in the output directory which are not part of the
+   * cached generation. The output directory is then always synchronized with the cached generation
+   * @return true if the output directory is up-to-date, false if the Mobile API must be generated
+   */
+  boolean restore(String key, File outputDirectory, boolean clean) {
+    String path = outputDirectory.getCanonicalPath()
+    File entry = new File(cacheDirectory, key)
+    if (!clean && index.getProperty(path) == key && isUnchanged(path, outputDirectory)) {
+      log.debug("Output directory $outputDirectory is up-to-date with generation $key")
+      entry.setLastModified(System.currentTimeMillis())
+      hits++
+      return true
+    }
+
+    boolean restored = ProcessLock.forFile(entry).withLock {
+      if (!entry.isDirectory()) {
+        return false
+      }
+      log.debug("Restoring generation $key to $outputDirectory")
+      // only the files which differ from the cached generation are written
+      DirectorySynchronizer synchronizer = new DirectorySynchronizer()
+      if (clean) {
+        synchronizer.synchronize(entry, outputDirectory, getGeneratedFiles(outputDirectory))
+      } else {
+        synchronizer.synchronize(entry, outputDirectory, false)
+      }
+      entry.setLastModified(System.currentTimeMillis())
+      writeManifest(path, entry, outputDirectory)
+      return true
+    }
+    if (restored) {
+      updateIndex(path, key)
+      hits++
+      return true
+    }
+
+    misses++
+    return false
+  }
+
+  /**
+   * Store a copy of the generated assets for this key, and record them as the generation of the output directory
+   * @param key generation key
+   * @param generationDirectory directory where the Mobile API was generated, containing only the generated assets
+   * @param outputDirectory output directory of the generation, where the assets were copied
+   */
+  void store(String key, File generationDirectory, File outputDirectory) {
+    String path = outputDirectory.getCanonicalPath()
+    File entry = new File(cacheDirectory, key)
+    boolean stored = ProcessLock.forFile(entry).withLock {
+      File tmp = new File(cacheDirectory, key + ".tmp")
+      FileUtils.deleteQuietly(tmp)
+      FileUtils.copyDirectory(generationDirectory, tmp)
+      FileUtils.deleteQuietly(entry)
+      if (!tmp.renameTo(entry)) {
+        log.warn("Cannot store generation $key from $generationDirectory")
+        FileUtils.deleteQuietly(tmp)
+        return false
+      }
+      writeManifest(path, entry, outputDirectory)
+      return true
+    }
+    if (stored) {
+      updateIndex(path, key)
+      evict()
+    }
+  }
+
+  /**
+   * Record the files generated in the output directory without the cache, see {@link #getGeneratedFiles}
+   * @param generationDirectory directory where the Mobile API was generated, containing only the generated assets
+   * @param outputDirectory output directory of the generation, where the assets were copied
+   */
+  void record(File generationDirectory, File outputDirectory) {
+    writeManifest(outputDirectory.getCanonicalPath(), generationDirectory, outputDirectory)
+  }
+
+  /**
+   * Forget the generation of an output directory, before it is written without the cache.
+   * Its manifest is kept, as the list of the files previously generated there
+   * @param outputDirectory output directory of the generation
+   */
+  void invalidate(File outputDirectory) {
+    updateIndex(outputDirectory.getCanonicalPath(), null)
+  }
+
+  /**
+   * @param outputDirectory output directory of the generation
+   * @return relative paths of the files of the last generation stored or recorded in the output directory, empty if
+   * unknown
+   */
+  List<String> getGeneratedFiles(File outputDirectory) {
+    Properties manifest = readManifest(outputDirectory.getCanonicalPath())
+    return manifest == null ? [] : manifest.stringPropertyNames().sort()
+  }
+
+  /**
+   * @return ratio of targets found in the cache, in percent
+   */
+  int getHitRate() {
+    int total = hits + misses
+    return total ? (int) (hits * 100 / total) : 0
+  }
+
+  /**
+   * Remove the least recently used generations beyond {@link #maxEntries}
+   */
+  private void evict() {
+    List<File> entries = (cacheDirectory.listFiles() ?: new File[0]).findAll { File f ->
+      f.isDirectory() && f.name ==~ /\p{XDigit}{40}/
+    }.sort { File a, File b -> b.lastModified() <=> a.lastModified() }
+    entries.drop(maxEntries).each { File entry ->
+      log.debug("Evicting generation ${entry.name}")
+      ProcessLock.forFile(entry).withLock { FileUtils.deleteQuietly(entry) }
+    }
+  }
+
+  /**
+   * @return whether the files generated in the output directory were neither changed nor removed since
+   */
+  private boolean isUnchanged(String path, File outputDirectory) {
+    Properties manifest = readManifest(path)
+    return manifest != null && manifest.stringPropertyNames().every { String name ->
+      manifest.getProperty(name) == getStamp(new File(outputDirectory, name))
+    }
+  }
+
+  /**
+   * @return the manifest of the output directory, null if none
+   */
+  private Properties readManifest(String path) {
+    File manifestFile = getManifestFile(path)
+    Properties manifest = new Properties()
+    boolean found = ProcessLock.forFile(manifestFile).withLock {
+      if (!manifestFile.isFile()) {
+        return false
+      }
+      manifestFile.withInputStream { manifest.load(it) }
+      return true
+    }
+    return found ? manifest : null
+  }
+
+  /**
+   * Record the size and modification time of the generated files, as found in the output directory
+   */
+  private void writeManifest(String path, File entry, File outputDirectory) {
+    Properties manifest = new Properties()
+    DirectorySynchronizer.listFiles(entry).each { String name ->
+      manifest.setProperty(name, getStamp(new File(outputDirectory, name)))
+    }
+    File manifestFile = getManifestFile(path)
+    ProcessLock.forFile(manifestFile).withLock {
+      manifestFile.withOutputStream { manifest.store(it, path) }
+    }
+  }
+
+  private static String getStamp(File f) {
+    return f.isFile() ? "${f.length()},${f.lastModified()}" : "missing"
+  }
+
+  private File getManifestFile(String path) {
+    MessageDigest md = MessageDigest.getInstance("SHA-1")
+    String name = md.digest(path.getBytes("UTF-8")).encodeHex().toString()
+    return new File(manifestsDirectory, name + ".properties")
+  }
+
+  /**
+   * @param key key of the last generation of the output directory, null to remove it
+   */
+  private void updateIndex(String path, String key) {
+    ProcessLock.forFile(indexFile).withLock {
+      // other processes may have updated the index since it was read
+      loadIndex()
+      if (key != null) {
+        index.setProperty(path, key)
+      } else if (index.remove(path) == null) {
+        return
+      }
+      indexFile.withOutputStream { index.store(it, null) }
+    }
+  }
+
+  private void loadIndex() {
+    // entries removed by other processes, or by invalidate, must not survive in memory
+    index.clear()
+    if (indexFile.isFile()) {
+      indexFile.withInputStream { index.load(it) }
+    }
+  }
+}
@@ -41,6 +41,9 @@ class R2MMessages extends MessagesSupport {
   static final String USING_DEFAULT_OUTPUT_DIRECTORY = "USING_DEFAULT_OUTPUT_DIRECTORY"
   static final String USING_DEFAULT_CONTROLLER_NAME = "USING_DEFAULT_CONTROLLER_NAME"
   static final String CREATE_EXAMPLES_FILE = "CREATE_EXAMPLES_FILE"
+  static final String GENERATION_UP_TO_DATE = "GENERATION_UP_TO_DATE"
+  static final String GENERATION_CACHE_STATISTICS = "GENERATION_CACHE_STATISTICS"
+  static final String GENERATION_SYNCHRONIZED = "GENERATION_SYNCHRONIZED"
 
   static String getMessage(String key, Object... args) {
     _getMessage(MESSAGES_PATH + R2MMessages.getSimpleName(), key, args)
@@ -106,4 +109,16 @@ class R2MMessages extends MessagesSupport {
   static def createExamplesFile(def from, def to) {
     getMessage(CREATE_EXAMPLES_FILE, from, to)
   }
+
+  static def generationUpToDate(def target, def dir) {
+    getMessage(GENERATION_UP_TO_DATE, target, dir)
+  }
+
+  static def generationCacheStatistics(def hits, def total, def rate) {
+    getMessage(GENERATION_CACHE_STATISTICS, hits, total, rate)
+  }
+
+  static def generationSynchronized(def target, def dir, def added, def changed, def unchanged, def removed) {
+    getMessage(GENERATION_SYNCHRONIZED, target, dir, added, changed, unchanged, removed)
+  }
 }
@@ -50,6 +50,112 @@ class GenCommandSpec extends AbstractCommandSpecification {
 
   }
 
+  def "should generate assets for all platforms concurrently"() {
+    given:
+      def output = new File(testDir, 'test1_3')
+    when:
+      int ret = testMagnetShell << "${R2MConstants.GEN_COMMAND} -e ${getFileResource('google-distance.txt').getCanonicalPath()} --jobs 3 -f -o ${output.getCanonicalPath()}"
+    then:
+      ret == CoreConstants.COMMAND_OK_CODE
+      expectIOSAssets(new File(output, "ios"), ['GoogleDistanceResult', 'Row'], "RestController")
+      expectAndroidAssets(new File(output, "android"), ['GoogleDistanceResult', 'Row'], "RestController")
+      expectJsAssets(new File(output, "js"), ['GoogleDistanceResult', 'Row'], "RestController")
+  }
+
+  def "should not generate again when examples and options did not change"() {
+    given:
+      def output = new File(testDir, 'test1_4')
+      def cmd = "${R2MConstants.GEN_COMMAND} -e ${getFileResource('google-distance.txt').getCanonicalPath()} -f -o ${output.getCanonicalPath()}"
+      testMagnetShell << cmd
+      clearOutput()
+    when:
+      int ret = testMagnetShell << cmd
+    then:
+      ret == CoreConstants.COMMAND_OK_CODE
+      assertConsoleOutputContains("up-to-date")
+      expectIOSAssets(new File(output, "ios"), ['GoogleDistanceResult', 'Row'], "RestController")
+      expectAndroidAssets(new File(output, "android"), ['GoogleDistanceResult', 'Row'], "RestController")
+      expectJsAssets(new File(output, "js"), ['GoogleDistanceResult', 'Row'], "RestController")
+    when:
+      clearOutput()
+      ret = testMagnetShell << "$cmd --no-cache"
+    then:
+      ret == CoreConstants.COMMAND_OK_CODE
+      assertConsoleOutputDoesNotContain("up-to-date")
+  }
+
+  def "should restore the cached generation over a generation without the cache"() {
+    given:
+      def output = new File(testDir, 'test1_6')
+      def cmd = "${R2MConstants.GEN_COMMAND} -e ${getFileResource('google-distance.txt').getCanonicalPath()} -f -o ${output.getCanonicalPath()} js"
+      testMagnetShell << cmd
+      testMagnetShell << "$cmd -c OtherController --no-cache"
+      clearOutput()
+    when:
+      int ret = testMagnetShell << cmd
+    then:
+      ret == CoreConstants.COMMAND_OK_CODE
+      expectJsAssets(output, ['GoogleDistanceResult', 'Row'], "RestController")
+      !new File(output, "Controllers/OtherController.js").exists()
+  }
+
+  def "should restore the generated files removed or changed since"() {
+    given:
+      def output = new File(testDir, 'test1_7')
+      def cmd = "${R2MConstants.GEN_COMMAND} -e ${getFileResource('google-distance.txt').getCanonicalPath()} -o ${output.getCanonicalPath()} js"
+      testMagnetShell << cmd
+      def bean = new File(output, "Beans/Row.js")
+      def controller = new File(output, "Controllers/RestController.js")
+      def generated = controller.text
+      bean.delete()
+      controller.text = "// edited"
+      clearOutput()
+    when:
+      int ret = testMagnetShell << cmd
+    then:
+      ret == CoreConstants.COMMAND_OK_CODE
+      assertConsoleOutputContains("up-to-date")
+      bean.isFile()
+      controller.text == generated
+  }
+
+  def "should only write changed files in update mode"() {
+    given:
+      def output = new File(testDir, 'test1_5')
+      def cmd = "${R2MConstants.GEN_COMMAND} -e ${getFileResource('google-distance.txt').getCanonicalPath()} -u --no-cache -o ${output.getCanonicalPath()} js"
+      testMagnetShell << cmd
+      def notes = new File(output, "notes.js")
+      notes.text = "// written by hand"
+      def files = output.listFiles().findAll { it.isFile() && it != notes }
+      def timestamps = files.collectEntries { [it, it.lastModified()] }
+      clearOutput()
+    when:
+      int ret = testMagnetShell << cmd
+    then:
+      ret == CoreConstants.COMMAND_OK_CODE
+      assertConsoleOutputContains("0 added, 0 changed")
+      assertConsoleOutputContains("0 removed")
+      notes.isFile()
+      files.every { it.lastModified() == timestamps[it] }
+      expectJsAssets(output, ['GoogleDistanceResult', 'Row'], "RestController")
+    when:
+      clearOutput()
+      ret = testMagnetShell << "$cmd -c OtherController"
+    then:
+      ret == CoreConstants.COMMAND_OK_CODE
+      !new File(output, "Controllers/RestController.js").exists()
+      expectJsAssets(output, ['GoogleDistanceResult', 'Row'], "OtherController")
+      notes.isFile()
+  }
+
+  @Unroll
+  def "should reject invalid number of jobs #jobs"() {
+    expect:
+      CoreConstants.COMMAND_INVALID_OPTION_VALUE == testMagnetShell << "${R2MConstants.GEN_COMMAND} -e ${getFileResource('google-distance.txt').getCanonicalPath()} --jobs $jobs"
+    where:
+      jobs << ["0", "many"]
+  }
+
   @Unroll
   def "should fail with invalid resource #invalidValue"() {
     expect:
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.r2m
+
+import com.magnet.tools.utils.SpecificationSupport
+import org.apache.commons.io.FileUtils
+
+/**
+ * Test specification for {@link GenerationCache}
+ */
+class GenerationCacheSpec extends SpecificationSupport {
+
+  def "should only cache the generated assets"() {
+    given:
+      GenerationCache cache = new GenerationCache(testDir)
+      File generated = generate("staging", "generated")
+      File output = new File(testDir, "output")
+      output.mkdirs()
+      new File(output, "notes.txt").text = "not generated"
+      new File(output, "file.txt").text = "generated"
+      cache.store("a" * 40, generated, output)
+    when:
+      File other = new File(testDir, "other")
+      boolean restored = cache.restore("a" * 40, other, true)
+    then:
+      restored
+      other.list() as List == ["file.txt"]
+  }
+
+  def "should evict the least recently used generations"() {
+    given:
+      GenerationCache cache = new GenerationCache(testDir)
+      cache.maxEntries = 2
+      File output = new File(testDir, "output")
+    when:
+      ["a", "b", "c"].each { String key ->
+        cache.store(key * 40, generate(key, key), output)
+        new File(testDir, "${GenerationCache.CACHE_DIRECTORY_NAME}/${key * 40}").setLastModified(
+            System.currentTimeMillis() - 10000 + key.charAt(0))
+      }
+      cache.store("d" * 40, generate("d", "d"), output)
+    then:
+      !cache.restore("a" * 40, new File(testDir, "a-output"), true)
+      !cache.restore("b" * 40, new File(testDir, "b-output"), true)
+      cache.restore("c" * 40, new File(testDir, "c-output"), true)
+      cache.restore("d" * 40, new File(testDir, "d-output"), true)
+  }
+
+  def "should no longer find an invalidated output directory up-to-date"() {
+    given:
+      GenerationCache cache = new GenerationCache(testDir)
+      File output = generate("output", "a")
+      cache.store("a" * 40, generate("staging", "a"), output)
+      new GenerationCache(testDir).invalidate(output)
+      FileUtils.deleteDirectory(new File(testDir, "${GenerationCache.CACHE_DIRECTORY_NAME}/${'a' * 40}"))
+    expect:
+      !new GenerationCache(testDir).restore("a" * 40, output, false)
+  }
+
+  def "should not restore index entries invalidated by another cache"() {
+    given:
+      GenerationCache cache = new GenerationCache(testDir)
+      File output = generate("output", "a")
+      cache.store("a" * 40, generate("staging", "a"), output)
+      GenerationCache other = new GenerationCache(testDir)
+    when:
+      cache.invalidate(output)
+      other.store("b" * 40, generate("b", "b"), new File(testDir, "b-output"))
+    then:
+      Properties index = new Properties()
+      new File(testDir, "${GenerationCache.CACHE_DIRECTORY_NAME}/${GenerationCache.INDEX_FILE_NAME}").withInputStream {
+        index.load(it)
+      }
+      !index.containsKey(output.getCanonicalPath())
+      index.getProperty(new File(testDir, "b-output").getCanonicalPath()) == "b" * 40
+  }
+
+  private File generate(String name, String content) {
+    File dir = new File(testDir, name)
+    dir.mkdirs()
+    new File(dir, "file.txt").text = content
+    return dir
+  }
+}
@@ -16,6 +16,7 @@
  */
 package com.magnet.tools.cli.rest
 
+import com.magnet.langpack.builder.rest.RestExampleContainer
 import com.magnet.tools.cli.core.CommandException
 import com.magnet.tools.cli.core.CoreConstants
 import com.magnet.tools.cli.core.Shell
@@ -62,7 +63,10 @@ class DefaultMobileRestControllerBuilder extends AbstractRestControllerBuilder<M
 
       shell.info(MobileRestMessages.generatingAssets(AnsiHelper.bold(platformId), basedir.toString()))
 
-      def langPackGenerator = getGeneratorFromExample(source, controllerClass, null, params[MobileRestConstants.OPTION_EMPTY_PROPERTY_POLICY])
+      List<RestExampleContainer> entries = params[MobileRestConstants.KEY_PARSED_EXAMPLES] ?:
+          parseExamples(source, controllerClass, null, params[MobileRestConstants.OPTION_EMPTY_PROPERTY_POLICY])
+
+      def langPackGenerator = createGenerator(entries)
 
       if (!langPackGenerator) {
         throw new CommandException(CoreConstants.COMMAND_UNKNOWN_ERROR_CODE, CommonMessages.invalidResource(source))
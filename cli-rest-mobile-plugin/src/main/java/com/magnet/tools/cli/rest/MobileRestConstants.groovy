@@ -42,6 +42,14 @@ public interface MobileRestConstants {
   String OPTION_REST_SPECIFICATIONS_LOCATION = "examples";
   String OPTION_LIST = "list";
   String OPTION_EMPTY_PROPERTY_POLICY = "policy";
+  String OPTION_JOBS = "jobs";
+  String OPTION_NO_CACHE = "no-cache";
+  String OPTION_UPDATE = "update";
+
+  /**
+   * Builder parameter holding examples already parsed, so they are not parsed again for each platform target
+   */
+  String KEY_PARSED_EXAMPLES = "parsedExamples";
 
   List<String> SUPPORTED_EMPTY_PROPERTY_POLICIES = EmptyPropertyPolicy.values();
   String SUPPORTED_EMPTY_PROPERTY_POLICIES_STRING = Arrays.toString(EmptyPropertyPolicy.values());
@@ -114,5 +114,29 @@ class MobileRestControllerBuilderSpec extends SpecificationSupport {
 
   }
 
+  def "should build several platforms from examples parsed once"() {
+    given:
+      def mockedShell = Mock(Shell)
+      def builder = new JsRestControllerBuilder(mockedShell)
+      def entries = builder.parseExamples(getFileResource('google-distance.txt').getAbsolutePath(), 'MyControllerClass', null, null)
+      def jsOutput = new File(testDir, 'js')
+      def iosOutput = new File(testDir, 'ios')
+
+    when:
+      builder.build([
+          (MobileRestConstants.OPTION_OUTPUT_DIR)      : jsOutput,
+          (MobileRestConstants.OPTION_CONTROLLER_CLASS): 'MyControllerClass',
+          (MobileRestConstants.KEY_PARSED_EXAMPLES)    : entries])
+      new ObjectiveCRestControllerBuilder(mockedShell).build([
+          (MobileRestConstants.OPTION_OUTPUT_DIR)      : iosOutput,
+          (MobileRestConstants.OPTION_CONTROLLER_CLASS): 'MyControllerClass',
+          (MobileRestConstants.KEY_PARSED_EXAMPLES)    : entries])
+
+    then:
+      entries
+      new File(jsOutput, "Controllers/MyControllerClass.js").isFile()
+      new File(iosOutput, "Source/Controllers/MyControllerClass.h").isFile()
+      new File(iosOutput, "Source/Controllers/MyControllerClass.m").isFile()
+  }
 
 }
@@ -18,6 +18,7 @@ package com.magnet.tools.cli.rest
 
 import com.magnet.langpack.builder.rest.EmptyPropertyPolicy
 import com.magnet.langpack.builder.rest.RestContentType
+import com.magnet.langpack.builder.rest.RestExampleContainer
 import com.magnet.langpack.builder.rest.RestExampleContainerBuilder
 import com.magnet.langpack.builder.rest.parser.ExampleParser
 import com.magnet.langpack.builder.rest.parser.RestExampleModel
@@ -32,6 +33,12 @@ import com.magnet.tools.templates.Builder
 import com.magnet.tools.utils.FileHelper
 import groovy.util.logging.Slf4j
 
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
 /**
  * Base implementation for all ReST-by-Example builders
  */
@@ -80,6 +87,35 @@ abstract class AbstractRestControllerBuilder<T> implements Builder<T>, ShellAwar
    * @return lang pack generator instance or null if no entries found
    */
   LangPackGenerator getGeneratorFromExample(String source, String controllerClass, String path, EmptyPropertyPolicy policy) {
+    return createGenerator(parseExamples(source, controllerClass, path, policy))
+  }
+
+  /**
+   * Create a new generator populated with example entries that were already parsed.
+   * The same entries can be used to create several generators, one per platform target.
+   * @param entries example entries as returned by {@link #parseExamples}
+   * @return lang pack generator instance or null if there is no entry
+   */
+  static LangPackGenerator createGenerator(List<RestExampleContainer> entries) {
+    if (!entries) {
+      return null
+    }
+    def langPackGenerator = LangPackTool.getInstance().createGenerator()
+    for (entry in entries) {
+      langPackGenerator.add(entry)
+    }
+    return langPackGenerator
+  }
+
+  /**
+   * Parse the ReST-by-Example representation into a list of example entries
+   * @param source source (a file path or a directory path) as a string
+   * @param controllerClass name of controller class
+   * @param path controller path
+   * @param policy policy for empty properties
+   * @return list of example entries, empty if none found
+   */
+  List<RestExampleContainer> parseExamples(String source, String controllerClass, String path, EmptyPropertyPolicy policy) {
     File sourceDir = FileHelper.getDirectory(source)
     List<URL> sourceFiles = new ArrayList<URL>()
     if (sourceDir) {
@@ -94,19 +130,14 @@ abstract class AbstractRestControllerBuilder<T> implements Builder<T>, ShellAwar
       throw new CommandException(CoreConstants.COMMAND_UNKNOWN_ERROR_CODE, CommonMessages.invalidResource(source))
     }
 
+    List<List<RestExampleModel>> parsedFiles = parseFiles(sourceFiles)
+
+    // entries are added in the order of the files, so the generated code does not depend on the parsing order
     def builder = RestExampleContainerBuilder.getBuilder(controllerClass, policy)
-    def langPackGenerator = LangPackTool.getInstance().createGenerator()
-    int entriesAdded = 0
-    def parser = new ExampleParser()
-    for (URL oneFile : sourceFiles) {
-      List<RestExampleModel> models
-      String resource = new File(oneFile.file).exists() ? oneFile.file : oneFile.toString()
-      try {
-        shell.info(RestMessages.parsingResource(resource))
-        models = parser.parseExample(oneFile)
-      } catch (Exception e) {
-        throw new CommandException(CoreConstants.COMMAND_PARSING_ERROR_CODE, RestMessages.failedToParseExample(resource, e.getMessage()))
-      }
+    List<RestExampleContainer> entries = []
+    for (int i = 0; i < sourceFiles.size(); i++) {
+      URL oneFile = sourceFiles[i]
+      List<RestExampleModel> models = parsedFiles[i]
 
       shell.trace("========parse result of file ${oneFile.file}========")
       for (model in models) {
@@ -143,14 +174,53 @@ abstract class AbstractRestControllerBuilder<T> implements Builder<T>, ShellAwar
             model.getResponseCode(),
             guessContentType(model.getResponseContentType(), model.getResponseBody()),
             model.getResponseBody()).build();
-        langPackGenerator.add(entry);
-        entriesAdded++
+        entries.add(entry)
       }
 
     }
 
-    return entriesAdded ? langPackGenerator : null
+    return entries
+
+  }
+
+  /**
+   * Parse the example files concurrently, each file with its own parser
+   * @param sourceFiles example files
+   * @return the models of each file, in the same order as <code>sourceFiles</code>
+   * @throws CommandException if a file cannot be parsed
+   */
+  protected List<List<RestExampleModel>> parseFiles(List<URL> sourceFiles) throws CommandException {
+    int threads = Math.min(Runtime.getRuntime().availableProcessors(), sourceFiles.size())
+    ExecutorService executor = Executors.newFixedThreadPool(threads)
+    try {
+      List<Future> results = sourceFiles.collect { URL oneFile ->
+        executor.submit({ parseExample(oneFile) } as Callable)
+      }
+
+      List<List<RestExampleModel>> parsedFiles = []
+      for (int i = 0; i < sourceFiles.size(); i++) {
+        URL oneFile = sourceFiles[i]
+        String resource = new File(oneFile.file).exists() ? oneFile.file : oneFile.toString()
+        shell.info(RestMessages.parsingResource(resource))
+        try {
+          parsedFiles.add((List<RestExampleModel>) results[i].get())
+        } catch (ExecutionException e) {
+          throw new CommandException(CoreConstants.COMMAND_PARSING_ERROR_CODE, RestMessages.failedToParseExample(resource, e.getCause().getMessage()))
+        }
+      }
+      return parsedFiles
+    } finally {
+      executor.shutdownNow()
+    }
+  }
 
+  /**
+   * Parse one example file, called concurrently by {@link #parseFiles}
+   * @param file example file
+   * @return the models of the file
+   */
+  protected List<RestExampleModel> parseExample(URL file) {
+    return new ExampleParser().parseExample(file)
   }
 
   abstract void build(T o)
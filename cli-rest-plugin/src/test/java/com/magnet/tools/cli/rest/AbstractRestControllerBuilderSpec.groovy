@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.cli.rest
+
+import com.magnet.langpack.builder.rest.parser.RestExampleModel
+import com.magnet.tools.cli.core.CommandException
+import com.magnet.tools.cli.core.Shell
+import com.magnet.tools.utils.SpecificationSupport
+
+/**
+ * Test specification for {@link AbstractRestControllerBuilder}
+ */
+class AbstractRestControllerBuilderSpec extends SpecificationSupport {
+
+  def "should return the parsed files in file order, whatever the order they are parsed in"() {
+    given:
+      List<URL> files = examples(4)
+      // the first files are parsed last
+      TestBuilder builder = new TestBuilder(Mock(Shell), { int i -> Thread.sleep(100 * (4 - i)) })
+    when:
+      List<List<RestExampleModel>> parsed = builder.parseFiles(files)
+    then:
+      parsed.collect { it*.name } == [["method0"], ["method1"], ["method2"], ["method3"]]
+  }
+
+  def "should fail on the first file which cannot be parsed, in file order"() {
+    given:
+      List<URL> files = examples(4)
+      TestBuilder builder = new TestBuilder(Mock(Shell), { int i ->
+        if (i == 1) {
+          Thread.sleep(200)
+          throw new IOException("bad example")
+        }
+        if (i == 3) {
+          throw new IOException("other bad example")
+        }
+      })
+    when:
+      builder.parseFiles(files)
+    then:
+      CommandException e = thrown()
+      e.getMessage() == RestMessages.failedToParseExample(files[1].file, "bad example")
+  }
+
+  /**
+   * Write example files, each with a single method named after its index
+   * @param count number of files
+   * @return the URLs of the files
+   */
+  private List<URL> examples(int count) {
+    String example = getFileResource("google-distance.txt").text
+    return (0..<count).collect { int i ->
+      File f = new File(testDir, "example${i}.txt")
+      f.text = example.replace("+name googleDistance", "+name method${i}")
+      f.toURI().toURL()
+    }
+  }
+
+  /**
+   * Builder running a hook before parsing each example file
+   */
+  static class TestBuilder extends AbstractRestControllerBuilder<Object> {
+
+    Closure hook
+
+    TestBuilder(Shell shell, Closure hook) {
+      super(shell)
+      this.hook = hook
+    }
+
+    @Override
+    protected List<RestExampleModel> parseExample(URL file) {
+      hook(file.file.find(/example(\d+)/) { all, i -> i as int })
+      return super.parseExample(file)
+    }
+
+    @Override
+    void build(Object o) {
+    }
+  }
+}
@@ -21,6 +21,11 @@ import java.io.FileFilter;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
@@ -32,6 +37,7 @@ import com.magnet.langpack.builder.rest.parser.RestExampleModel;
 import com.magnet.langpack.tool.LangPackGenerator;
 import com.magnet.langpack.tool.LangPackTool;
 import com.magnet.langpack.builder.rest.EmptyPropertyPolicy;
+import com.magnet.tools.utils.DirectorySynchronizer;
 
 /**
  * Simplified generator command.
@@ -51,6 +57,9 @@ public class SimpleGenCommand {
   @Parameter(names = {"-f", "--force"}, description = "Force deletion of target directory before regenerating the code")
   public boolean force = false;
 
+  @Parameter(names = {"-u", "--update"}, description = "Generate in a staging directory, then only write the files whose content changed and remove the files no longer generated")
+  public boolean update = false;
+
   @Parameter(names = {"-n", "--namespace"}, description = "Namespace to prepend to classes (ios, and js only)")
   public String namespace = null;
 
@@ -72,6 +81,9 @@ public class SimpleGenCommand {
   @Parameter(names = {"-j", "--policy"}, description = "Policy to handle empty property in json, choose from [abort|ignore|default-type]")
   public String emptyPropertyPolicy;
 
+  @Parameter(names = {"--jobs"}, description = "Maximum number of platforms generated concurrently")
+  public int jobs = 1;
+
   private StringBuilder sb = null;
 
   private JCommander jc = null;
@@ -94,11 +106,28 @@ public class SimpleGenCommand {
       platforms = SimpleGenConstants.SUPPORTED_PLATFORM_TARGETS;
     }
 
+    if (null == exampleLocation) {
+      throw new IllegalArgumentException("-e|--examples option is mandatory");
+    }
+
+    // Parse the examples once, they are shared by all the platforms
+    List<RestExampleContainer> entries = parseExamples(exampleLocation, controllerClass, null);
+
+    if (entries.isEmpty()) {
+      throw new Exception("Invalid source : " + exampleLocation);
+    }
+
+    if (jobs < 1) {
+      throw new IllegalArgumentException("--jobs must be a positive number");
+    }
+
     if (platforms.size() == 1) {
-      generate(platforms.get(0), outputDirectory);
+      generate(platforms.get(0), outputDirectory, entries, sb);
+    } else if (jobs > 1) {
+      generateConcurrently(SimpleGenConstants.SUPPORTED_PLATFORM_TARGETS, entries);
     } else {
       for (String platform : SimpleGenConstants.SUPPORTED_PLATFORM_TARGETS)
-        generate(platform, new File(outputDirectory, platform));
+        generate(platform, new File(outputDirectory, platform), entries, sb);
     }
     info("Success! The mobile API is generated under " + outputDirectory);
 
@@ -106,14 +135,14 @@ public class SimpleGenCommand {
   }
 
   /**
-   * Get the generator corresponding to the ReST-by-Example representation;
+   * Parse the ReST-by-Example representation into a list of example entries;
    *
    * @param source          source (a file path or a directory path) as a string;
    * @param controllerClass name of controller class;
    * @param path            controller path;
-   * @return lang pack generator instance or null if no entries found;
+   * @return list of example entries, empty if no entries found;
    */
-  private LangPackGenerator getGeneratorFromExample(String source, String controllerClass, String path) throws Exception {
+  private List<RestExampleContainer> parseExamples(String source, String controllerClass, String path) throws Exception {
     List<URL> sourceFiles = new ArrayList<URL>();
 
     File sourceDir = new File(source);
@@ -159,18 +188,9 @@ public class SimpleGenCommand {
 
     // Parse example(s)
     RestExampleContainerBuilder builder = RestExampleContainerBuilder.getBuilder(controllerClass, policy);
-    LangPackGenerator langPackGenerator = LangPackTool.getInstance().createGenerator();
-    int entriesAdded = 0;
-    ExampleParser parser = new ExampleParser();
-    for (URL e : sourceFiles) {
-      List<RestExampleModel> models;
-      String resource = new File(e.getFile()).exists() ? e.getFile() : e.toString();
-      try {
-        info("Parsing example " + resource);
-        models = parser.parseExample(e);
-      } catch (Exception pe) {
-        throw new IllegalArgumentException("Parsing error: " + pe.getMessage());
-      }
+    List<RestExampleContainer> entries = new ArrayList<RestExampleContainer>();
+    List<List<RestExampleModel>> parsedFiles = parseFiles(sourceFiles);
+    for (List<RestExampleModel> models : parsedFiles) {
 
       trace("========parse result of file ${oneFile.file}========");
       for (RestExampleModel model: models) {
@@ -200,17 +220,64 @@ public class SimpleGenCommand {
             model.getResponseCode(),
             Utils.guessContentType(model.getResponseContentType(), model.getResponseBody()),
             model.getResponseBody()).build();
-        langPackGenerator.add(entry);
-
-        entriesAdded++;
+        entries.add(entry);
 
 
       }
 
     }
 
-    return entriesAdded > 0 ? langPackGenerator : null;
+    return entries;
+
+  }
+
+  /**
+   * Parse the example files concurrently, each file with its own parser;
+   *
+   * @param sourceFiles example files;
+   * @return the models of each file, in the same order as the files;
+   * @throws Exception if an exception occurs;
+   */
+  protected List<List<RestExampleModel>> parseFiles(List<URL> sourceFiles) throws Exception {
+    int threads = Math.min(Runtime.getRuntime().availableProcessors(), sourceFiles.size());
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<List<RestExampleModel>>> results = new ArrayList<Future<List<RestExampleModel>>>();
+      for (final URL e : sourceFiles) {
+        results.add(executor.submit(new Callable<List<RestExampleModel>>() {
+          @Override
+          public List<RestExampleModel> call() throws Exception {
+            return parseExample(e);
+          }
+        }));
+      }
 
+      List<List<RestExampleModel>> parsedFiles = new ArrayList<List<RestExampleModel>>();
+      for (int i = 0; i < sourceFiles.size(); i++) {
+        URL e = sourceFiles.get(i);
+        String resource = new File(e.getFile()).exists() ? e.getFile() : e.toString();
+        info("Parsing example " + resource);
+        try {
+          parsedFiles.add(results.get(i).get());
+        } catch (ExecutionException pe) {
+          throw new IllegalArgumentException("Parsing error: " + pe.getCause().getMessage());
+        }
+      }
+      return parsedFiles;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Parse one example file, called concurrently by {@link #parseFiles};
+   *
+   * @param file example file;
+   * @return the models of the file;
+   * @throws Exception if the file cannot be parsed;
+   */
+  protected List<RestExampleModel> parseExample(URL file) throws Exception {
+    return new ExampleParser().parseExample(file);
   }
 
   /**
@@ -218,24 +285,51 @@ public class SimpleGenCommand {
    *
    * @param mobilePlatform the target platform
    * @param outputDir      output directory
+   * @param entries        parsed example entries
+   * @param out            where the output of the generation is written
    * @throws Exception if an exception occurs
    */
-  private void generate(String mobilePlatform, File outputDir) throws Exception {
+  private void generate(String mobilePlatform, File outputDir, List<RestExampleContainer> entries, StringBuilder out) throws Exception {
 
-    info("Generating assets for " + mobilePlatform + " under " + outputDir);
+    info("Generating assets for " + mobilePlatform + " under " + outputDir, out);
 
+    if (update) {
+      File stagingDir = File.createTempFile("r2m-" + mobilePlatform + "-", "");
+      stagingDir.delete();
+      stagingDir.mkdirs();
+      try {
+        generate(mobilePlatform, stagingDir, entries);
+        // only the files of the previous generation are removed, the files written by hand are kept
+        File generatedFiles = new File(outputDir, SimpleGenConstants.GENERATED_FILES_NAME);
+        DirectorySynchronizer synchronizer = new DirectorySynchronizer();
+        synchronizer.synchronize(stagingDir, outputDir, Utils.readLines(generatedFiles));
+        Utils.writeLines(generatedFiles, DirectorySynchronizer.listFiles(stagingDir));
+        info("Updated " + outputDir + ": " + synchronizer + " files", out);
+      } finally {
+        cleanup(stagingDir);
+      }
+      return;
+    }
 
     if (force) {
-      info("Cleanup directory " + outputDir);
+      info("Cleanup directory " + outputDir, out);
       cleanup(outputDir);
     }
-    if (null == exampleLocation) {
-      throw new IllegalArgumentException("-e|--examples option is mandatory");
-    }
-    LangPackGenerator langPackGenerator = getGeneratorFromExample(exampleLocation, controllerClass, null);
+    generate(mobilePlatform, outputDir, entries);
+  }
 
-    if (langPackGenerator == null) {
-      throw new Exception("Invalid source : " + exampleLocation);
+  /**
+   * Generate the assets in place
+   *
+   * @param mobilePlatform the target platform
+   * @param outputDir      output directory
+   * @param entries        parsed example entries
+   * @throws Exception if an exception occurs
+   */
+  private void generate(String mobilePlatform, File outputDir, List<RestExampleContainer> entries) throws Exception {
+    LangPackGenerator langPackGenerator = LangPackTool.getInstance().createGenerator();
+    for (RestExampleContainer entry : entries) {
+      langPackGenerator.add(entry);
     }
 
     langPackGenerator = langPackGenerator.baseOutputDirectory(outputDir.getAbsolutePath());
@@ -255,6 +349,51 @@ public class SimpleGenCommand {
 
   }
 
+  /**
+   * Generate the assets for several platforms concurrently, using at most {@link #jobs} threads.
+   * The output of each platform is buffered, and appended at once in the order of the platforms.
+   *
+   * @param mobilePlatforms the target platforms
+   * @param entries         parsed example entries
+   * @throws Exception if an exception occurs
+   */
+  private void generateConcurrently(List<String> mobilePlatforms, final List<RestExampleContainer> entries) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(jobs, mobilePlatforms.size()));
+    try {
+      List<StringBuilder> outputs = new ArrayList<StringBuilder>();
+      List<Future<?>> results = new ArrayList<Future<?>>();
+      for (final String platform : mobilePlatforms) {
+        final StringBuilder out = new StringBuilder();
+        outputs.add(out);
+        results.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            generate(platform, new File(outputDirectory, platform), entries, out);
+            return null;
+          }
+        }));
+      }
+
+      Exception failure = null;
+      for (int i = 0; i < results.size(); i++) {
+        try {
+          results.get(i).get();
+        } catch (ExecutionException e) {
+          if (null == failure) {
+            failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+          }
+        } finally {
+          sb.append(outputs.get(i));
+        }
+      }
+      if (null != failure) {
+        throw failure;
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   private static void cleanup(File dir) {
     if (!dir.exists()) {
       return;
@@ -267,7 +406,11 @@ public class SimpleGenCommand {
   }
 
   private void info(String s) {
-    if (verbose) print(s, sb);
+    info(s, sb);
+  }
+
+  private void info(String s, StringBuilder out) {
+    if (verbose) print(s, out);
   }
 
   private static void print(String s, StringBuilder sb) {
@@ -36,4 +36,10 @@ public interface SimpleGenConstants {
    */
   List<String> SUPPORTED_PLATFORM_TARGETS = Arrays.asList("ios", "android", "js");
   String DEFAULT_OUTPUT_DIR = "mobile";
+
+  /**
+   * Name of the file listing the files generated in an output directory in update mode, the only ones removed
+   * when they are no longer generated
+   */
+  String GENERATED_FILES_NAME = ".r2m-generated";
 }
@@ -16,9 +16,18 @@
  */
 package com.magnet.tools.cli.simple;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.magnet.langpack.builder.rest.RestContentType;
 import com.magnet.langpack.builder.rest.parser.ExampleParser;
@@ -90,4 +99,47 @@ public class Utils {
     return dir.delete(); // The directory is empty now and can be deleted.
   }
 
+  /**
+   * Read the lines of a UTF-8 text file
+   * @param file file to read
+   * @return lines of the file, empty if it does not exist
+   * @throws IOException if the file cannot be read
+   */
+  public static List<String> readLines(File file) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    if (!file.isFile()) {
+      return lines;
+    }
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isEmpty()) {
+          lines.add(line);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return lines;
+  }
+
+  /**
+   * Write lines to a UTF-8 text file
+   * @param file file to write, replaced if it exists
+   * @param lines lines to write
+   * @throws IOException if the file cannot be written
+   */
+  public static void writeLines(File file, List<String> lines) throws IOException {
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      for (String line : lines) {
+        writer.write(line);
+        writer.write('\n');
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
 }
@@ -16,6 +16,7 @@
  */
 package com.magnet.tools.cli.simple
 
+import com.magnet.langpack.builder.rest.parser.RestExampleModel
 import com.magnet.tools.utils.SpecificationSupport
 import spock.lang.Unroll
 
@@ -94,6 +95,73 @@ class SimpleGenCommandSpec extends SpecificationSupport {
       'https://raw.githubusercontent.com/magnetsystems/r2m-examples/master/samples/google-distance.txt' | 'target/fromUrl' | ['GoogleDistanceResult', 'Row']
   }
 
+  def "should generate assets for all platforms concurrently"() {
+    given:
+      def controller = SimpleGenConstants.DEFAULT_CONTROLLER_CLASS
+      def output = new File(testDir, 'test4')
+      def nodes = ['GoogleDistanceResult', 'Row']
+    when:
+      new SimpleGenCommand().execute(['-e', getFileResource('test/google-distance.txt').getCanonicalPath(), '--jobs', '3', '-f', '-o', output.getCanonicalPath()])
+    then:
+      expectIOSAssets(new File(output, 'ios'), nodes, controller)
+      expectAndroidAssets(new File(output, 'android'), nodes, controller)
+      expectJsAssets(new File(output, 'js'), nodes, controller)
+  }
+
+  def "should only write changed files in update mode"() {
+    given:
+      def output = new File(testDir, 'test5')
+      def args = ['-e', getFileResource('test/google-distance.txt').getCanonicalPath(), '-u', '-v', '-o', output.getCanonicalPath(), 'js']
+      new SimpleGenCommand().execute(args)
+      def notes = new File(output, "notes.js")
+      notes.text = "// written by hand"
+      def controller = new File(output, "Controllers/RestController.js")
+      def timestamp = controller.lastModified()
+    when:
+      def result = new SimpleGenCommand().execute(args).toString()
+    then:
+      result.contains("0 added, 0 changed")
+      result.contains("0 removed")
+      controller.lastModified() == timestamp
+      notes.isFile()
+    when:
+      new SimpleGenCommand().execute(args + ['-c', 'OtherController'])
+    then:
+      !controller.exists()
+      expectJsAssets(output, ['GoogleDistanceResult', 'Row'], 'OtherController')
+      notes.isFile()
+  }
+
+  def "should return the parsed files in file order, whatever the order they are parsed in"() {
+    given:
+      List<URL> files = examples(4)
+      // the first files are parsed last
+      TestGenCommand command = new TestGenCommand({ int i -> Thread.sleep(100 * (4 - i)) })
+    when:
+      List<List<RestExampleModel>> parsed = command.parseFiles(files)
+    then:
+      parsed.collect { it*.name } == [["method0"], ["method1"], ["method2"], ["method3"]]
+  }
+
+  def "should fail on the first file which cannot be parsed, in file order"() {
+    given:
+      List<URL> files = examples(4)
+      TestGenCommand command = new TestGenCommand({ int i ->
+        if (i == 1) {
+          Thread.sleep(200)
+          throw new IOException("bad example")
+        }
+        if (i == 3) {
+          throw new IOException("other bad example")
+        }
+      })
+    when:
+      command.parseFiles(files)
+    then:
+      IllegalArgumentException e = thrown()
+      e.getMessage() == "Parsing error: bad example"
+  }
+
   def "should fail when missing examples option"() {
     when:
       new SimpleGenCommand().execute([])
@@ -180,5 +248,37 @@ class SimpleGenCommandSpec extends SpecificationSupport {
     return true
   }
 
+  /**
+   * Write example files, each with a single method named after its index
+   * @param count number of files
+   * @return the URLs of the files
+   */
+  private List<URL> examples(int count) {
+    String example = getFileResource('test/google-distance.txt').text
+    return (0..<count).collect { int i ->
+      File f = new File(testDir, "example${i}.txt")
+      f.text = example.replace("+name googleDistance", "+name method${i}")
+      f.toURI().toURL()
+    }
+  }
+
+  /**
+   * Command running a hook before parsing each example file
+   */
+  static class TestGenCommand extends SimpleGenCommand {
+
+    Closure hook
+
+    TestGenCommand(Closure hook) {
+      this.hook = hook
+    }
+
+    @Override
+    protected List<RestExampleModel> parseExample(URL file) throws Exception {
+      hook(file.file.find(/example(\d+)/) { all, i -> i as int })
+      return super.parseExample(file)
+    }
+  }
+
 
 }
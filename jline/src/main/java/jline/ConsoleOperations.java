@@ -289,4 +289,14 @@ public interface ConsoleOperations {
      */
     final static short ABORT = -64;
 
+    /**
+     * Operation that inserts the text pasted at once, when the terminal brackets it
+     */
+    final static short BRACKETED_PASTE = -65;
+
+    /**
+     * Virtual key for the start of a bracketed paste, see {@link Terminal#isBracketedPasteSupported()}
+     */
+    final static char PASTE_START = '\uE000';
+
 }
@@ -36,6 +36,7 @@ import java.util.List;
 public class ConsoleReader implements ConsoleOperations {
 
   final static int TAB_WIDTH = 4;
+  private final static String TAB_SPACES = new String(new char[TAB_WIDTH]).replace('\0', ' ');
   String prompt;
   private boolean useHistory = true;
   private boolean usePagination = false;
@@ -143,6 +144,38 @@ public class ConsoleReader implements ConsoleOperations {
   private String previousSearchTerm = "";
   private int searchIndex = -1;
 
+  /**
+   * Incremental redraw of the edited line, on ANSI terminals
+   */
+  private final LineRenderer renderer = new LineRenderer();
+
+  /**
+   * Whether the edited line changed since it was last rendered
+   */
+  private boolean lineChanged = false;
+
+  /**
+   * Whether flushing the output is deferred to the end of the input event being processed
+   */
+  private boolean flushDeferred = false;
+
+  /**
+   * Sequences enabling and disabling the bracketed paste, and ending a pasted text
+   */
+  private static final String BRACKETED_PASTE_ON = "\u001b[?2004h";
+  private static final String BRACKETED_PASTE_OFF = "\u001b[?2004l";
+  private static final byte[] PASTE_END = {27, '[', '2', '0', '1', '~'};
+
+  /**
+   * Complete lines pasted at once, returned by the next calls to {@link #readLine()}
+   */
+  private final LinkedList<String> pastedLines = new LinkedList<String>();
+
+  /**
+   * Text pasted after the last complete pasted line, edited by the next call to {@link #readLine()}
+   */
+  private String pastedText;
+
   /**
    * Adding a triggered Action allows to give another course of action
    * if a character passed the preprocessing.
@@ -249,6 +282,8 @@ public class ConsoleReader implements ConsoleOperations {
         }
       }
 
+      keybindings[PASTE_START] = BRACKETED_PASTE;
+
       // hardwired arrow key bindings
       // keybindings[VK_UP] = PREV_HISTORY;
       // keybindings[VK_DOWN] = NEXT_HISTORY;
@@ -322,6 +357,15 @@ public class ConsoleReader implements ConsoleOperations {
     return getTerminal().getTerminalWidth();
   }
 
+  /**
+   * Forget the cached terminal geometry, after the terminal was resized for instance.
+   *
+   * @see Terminal#invalidateTerminalGeometry
+   */
+  public void invalidateTermGeometry() {
+    getTerminal().invalidateTerminalGeometry();
+  }
+
   /**
    * Query the terminal to find the current width;
    *
@@ -481,19 +525,37 @@ public class ConsoleReader implements ConsoleOperations {
       this.prompt = prompt;
     }
 
+    boolean bracketedPaste = terminal.isSupported() && terminal.isBracketedPasteSupported();
     try {
       terminal.beforeReadLine(this, this.prompt, mask);
 
+      if (bracketedPaste) {
+        out.write(BRACKETED_PASTE_ON);
+      }
       if ((this.prompt != null) && (this.prompt.length() > 0)) {
         out.write(this.prompt);
-        out.flush();
       }
+      out.flush();
+      int promptWidth = getStrippedAnsiLength(this.prompt);
+      renderer.reset(promptWidth, "", promptWidth);
 
       // if the terminal is unsupported, just use plain-java reading
       if (!terminal.isSupported()) {
         return readLine(in);
       }
 
+      // lines pasted at once are returned as if they had been typed
+      if (!pastedLines.isEmpty()) {
+        putString(pastedLines.removeFirst());
+        printNewline();
+        return finishBuffer();
+      }
+      if (pastedText != null) {
+        putString(pastedText);
+        pastedText = null;
+        flushConsole();
+      }
+
       final int NORMAL = 1;
       final int SEARCH = 2;
       int state = NORMAL;
@@ -508,6 +570,9 @@ public class ConsoleReader implements ConsoleOperations {
           return null;
         }
 
+        // the output of the event is written at once, when it is processed
+        flushDeferred = true;
+
         int c = next[0];
         int code = next[1];
 
@@ -647,6 +712,14 @@ public class ConsoleReader implements ConsoleOperations {
               success = paste();
               break;
 
+            case BRACKETED_PASTE:
+              if (insertPastedText(readPastedText())) {
+                moveToEnd();
+                printNewline();
+                return finishBuffer();
+              }
+              break;
+
             case DELETE_PREV_WORD:
               success = deletePreviousWord();
               break;
@@ -718,15 +791,92 @@ public class ConsoleReader implements ConsoleOperations {
           if (!(success)) {
             beep();
           }
+        }
 
+        flushDeferred = false;
+        // keys already received, typed ahead or pasted without brackets, are processed before rendering the line
+        if (!isInputPending()) {
           flushConsole();
         }
       }
     } finally {
+      flushDeferred = false;
+      if (bracketedPaste) {
+        flushLine();
+        out.write(BRACKETED_PASTE_OFF);
+      }
+      flushConsole();
       terminal.afterReadLine(this, this.prompt, mask);
     }
   }
 
+  /**
+   * @return true if input was already received, and can be read without blocking
+   */
+  private boolean isInputPending() {
+    try {
+      return in.available() > 0;
+    } catch (IOException e) {
+      consumeException(e);
+      return false;
+    }
+  }
+
+  /**
+   * Read the text pasted after a {@link #PASTE_START} virtual key, up to the sequence ending the paste.
+   */
+  private String readPastedText() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    int matched = 0;
+    int b;
+    while (matched < PASTE_END.length && (b = in.read()) != -1) {
+      if (b == PASTE_END[matched]) {
+        matched++;
+      } else {
+        bytes.write(PASTE_END, 0, matched);
+        if (b == PASTE_END[0]) {
+          matched = 1;
+        } else {
+          matched = 0;
+          bytes.write(b);
+        }
+      }
+    }
+    return bytes.toString(System.getProperty("input.encoding", "UTF-8"));
+  }
+
+  /**
+   * Insert a pasted text at once, without its control characters. When it contains line breaks,
+   * the current line is complete, and the following lines are returned by the next calls to {@link #readLine()}.
+   *
+   * @return true if the current line is complete
+   */
+  private boolean insertPastedText(final String text) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    StringBuilder line = new StringBuilder();
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '\n' || c == '\r') {
+        lines.add(line.toString());
+        line.setLength(0);
+        if (c == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+          i++;
+        }
+      } else if (c >= 32 || c == '\t') {
+        line.append(c);
+      }
+    }
+
+    if (lines.isEmpty()) {
+      putString(line.toString());
+      return false;
+    }
+    putString(lines.get(0));
+    pastedLines.addAll(lines.subList(1, lines.size()));
+    pastedText = line.length() > 0 ? line.toString() : null;
+    return true;
+  }
+
   private String readLine(InputStream in) throws IOException {
     StringBuilder buf = new StringBuilder();
 
@@ -867,6 +1017,10 @@ public class ConsoleReader implements ConsoleOperations {
     }
 
     int num = buf.buffer.length() - cp;
+    if (renderLine()) {
+      buf.buffer.setLength(cp);
+      return true;
+    }
     clearAhead(num);
 
     for (int i = 0; i < num; i++) {
@@ -1075,6 +1229,13 @@ public class ConsoleReader implements ConsoleOperations {
       return;
     }
 
+    if (renderLine()) {
+      buf.buffer.setLength(0);
+      buf.buffer.append(buffer);
+      buf.cursor = buffer.length();
+      return;
+    }
+
     // obtain the difference between the current buffer and the new one
     int sameIndex = 0;
 
@@ -1102,7 +1263,12 @@ public class ConsoleReader implements ConsoleOperations {
    * Clear the line and redraw it.
    */
   public final void redrawLine() throws IOException {
-    printCharacter(RESET_LINE);
+    if (terminal.isANSISupported() && renderer.isValid()) {
+      lineChanged = false;
+      renderer.clear(getTermwidth(), out);
+    } else {
+      printCharacter(RESET_LINE);
+    }
     flushConsole();
     drawLine();
   }
@@ -1111,6 +1277,14 @@ public class ConsoleReader implements ConsoleOperations {
    * Output put the prompt + the current buffer
    */
   public final void drawLine() throws IOException {
+    if (terminal.isANSISupported()) {
+      lineChanged = false;
+      int promptWidth = getStrippedAnsiLength(prompt);
+      renderer.draw(prompt, promptWidth, getDisplayedText(buf.length()),
+          promptWidth + UnicodeUtils.getPrintLength(getDisplayedText(buf.cursor)), getTermwidth(), out);
+      return;
+    }
+
     if (prompt != null) {
       printString(prompt);
     }
@@ -1163,15 +1337,62 @@ public class ConsoleReader implements ConsoleOperations {
    */
   public final void putString(final String str) throws IOException {
     buf.write(str);
+    if (renderLine()) {
+      return;
+    }
     printString(str);
     drawBuffer();
   }
 
   /**
    * Output the specified string to the output stream (but not the buffer).
+   * The edited line is drawn again entirely by the next {@link #drawLine()}.
    */
   public final void printString(final String str) throws IOException {
     printCharacters(str.toCharArray());
+    renderer.invalidate();
+  }
+
+  /**
+   * Schedule the rendering of the edited line, done once at the end of the input event,
+   * with the minimal terminal update.
+   *
+   * @return false if the line cannot be rendered incrementally, and must be output by the caller
+   */
+  private boolean renderLine() {
+    if (!terminal.isANSISupported() || !renderer.isValid()) {
+      return false;
+    }
+    lineChanged = true;
+    return true;
+  }
+
+  /**
+   * Render the changes of the edited line, if any.
+   */
+  private void flushLine() throws IOException {
+    if (lineChanged) {
+      lineChanged = false;
+      renderer.update(getDisplayedText(buf.length()),
+          getStrippedAnsiLength(prompt) + UnicodeUtils.getPrintLength(getDisplayedText(buf.cursor)), getTermwidth(), out);
+    }
+  }
+
+  /**
+   * @param end end of the buffer part to display
+   * @return the start of the buffer as it is displayed: masked, and with tabs expanded
+   */
+  private String getDisplayedText(final int end) {
+    if (mask != null) {
+      if (NULL_MASK.equals(mask)) {
+        return "";
+      }
+      char[] chars = new char[end];
+      Arrays.fill(chars, mask);
+      return new String(chars);
+    }
+    String text = buf.buffer.substring(0, end);
+    return text.indexOf('\t') < 0 ? text : text.replace("\t", TAB_SPACES);
   }
 
   /**
@@ -1182,6 +1403,10 @@ public class ConsoleReader implements ConsoleOperations {
     buf.write((char) c);
 
     if (print) {
+      if (renderLine()) {
+        return;
+      }
+
       // no masking...
       if (mask == null) {
         printCharacter(c);
@@ -1306,6 +1531,7 @@ public class ConsoleReader implements ConsoleOperations {
    * the current buffer.
    */
   private void printCharacter(final int c) throws IOException {
+    flushLine();
     if (c == '\t') {
       char cbuf[] = new char[TAB_WIDTH];
       Arrays.fill(cbuf, ' ');
@@ -1321,6 +1547,7 @@ public class ConsoleReader implements ConsoleOperations {
    * the current buffer.
    */
   private void printCharacters(final char[] c) throws IOException {
+    flushLine();
     int len = 0;
     for (int i = 0; i < c.length; i++) {
       if (c[i] == '\t') {
@@ -1367,7 +1594,10 @@ public class ConsoleReader implements ConsoleOperations {
    * to handle immediately.
    */
   public final void flushConsole() throws IOException {
-    out.flush();
+    if (!flushDeferred) {
+      flushLine();
+      out.flush();
+    }
   }
 
   private int backspaceAll() throws IOException {
@@ -1384,6 +1614,13 @@ public class ConsoleReader implements ConsoleOperations {
       return 0;
     }
 
+    if (renderLine()) {
+      int count = Math.min(num, buf.cursor);
+      buf.cursor -= count;
+      buf.buffer.delete(buf.cursor, buf.cursor + count);
+      return count;
+    }
+
     int count;
     int termwidth = getTermwidth();
     int lines = getCursorPosition() / termwidth;
@@ -1427,7 +1664,9 @@ public class ConsoleReader implements ConsoleOperations {
     }
 
     buf.buffer.deleteCharAt(buf.cursor);
-    drawBuffer(1);
+    if (!renderLine()) {
+      drawBuffer(1);
+    }
     return true;
   }
 
@@ -1519,6 +1758,10 @@ public class ConsoleReader implements ConsoleOperations {
     // + buf.cursor + " => " + (buf.cursor + where) + ")");
     buf.cursor += where;
 
+    if (renderLine()) {
+      return;
+    }
+
     if (terminal.isANSISupported()) {
       if (where < 0) {
         back(Math.abs(where));
@@ -1576,6 +1819,12 @@ public class ConsoleReader implements ConsoleOperations {
    * @return the character, or -1 if an EOF is received.
    */
   public final int readVirtualKey() throws IOException {
+    // what the current input event output so far must be displayed before waiting for the user
+    if (flushDeferred) {
+      flushLine();
+      out.flush();
+    }
+
     int c = terminal.readVirtualKey(in);
 
     // clear any echo characters
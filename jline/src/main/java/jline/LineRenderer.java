@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package jline;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Keeps track of what the {@link ConsoleReader} displayed for the line being edited, and updates the terminal
+ * with the minimal ANSI output to display a new state of the line: the characters before the first change are
+ * left untouched, cursor moves are coalesced, and the whole update is written at once.
+ * <p/>
+ * Positions are columns from the start of the prompt, wrapping at the terminal width.
+ */
+class LineRenderer {
+  private static final String CSI = "\u001b[";
+
+  /**
+   * Text displayed after the prompt
+   */
+  private String drawn = "";
+
+  private int promptWidth;
+
+  /**
+   * Column of the terminal cursor, from the start of the prompt
+   */
+  private int cursor;
+
+  /**
+   * Whether the state matches what the terminal displays
+   */
+  private boolean valid;
+
+  /**
+   * Record that the terminal displays the specified state
+   *
+   * @param promptWidth printed width of the prompt
+   * @param drawn       text displayed after the prompt
+   * @param cursor      column of the terminal cursor
+   */
+  void reset(final int promptWidth, final String drawn, final int cursor) {
+    this.promptWidth = promptWidth;
+    this.drawn = drawn;
+    this.cursor = cursor;
+    this.valid = true;
+  }
+
+  /**
+   * Forget the state, after something else was printed on the terminal
+   */
+  void invalidate() {
+    valid = false;
+  }
+
+  boolean isValid() {
+    return valid;
+  }
+
+  /**
+   * Draw the prompt and the text, the terminal cursor being at the start of a row.
+   *
+   * @param prompt      prompt, possibly containing ANSI sequences, may be null
+   * @param promptWidth printed width of the prompt
+   * @param text        text displayed after the prompt
+   * @param target      column where to put the cursor
+   * @param width       terminal width
+   * @param out         terminal output
+   */
+  void draw(final String prompt, final int promptWidth, final String text, final int target, final int width,
+            final Writer out) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    if (prompt != null) {
+      sb.append(prompt);
+    }
+    sb.append(text);
+    reset(promptWidth, text, promptWidth + UnicodeUtils.getPrintLength(text));
+    wrap(sb, "", width);
+    moveTo(sb, target, width);
+    out.write(sb.toString());
+  }
+
+  /**
+   * Clear the prompt and the text, and put the cursor at the start of the prompt.
+   *
+   * @param width terminal width
+   * @param out   terminal output
+   */
+  void clear(final int width, final Writer out) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    moveTo(sb, 0, width);
+    sb.append(CSI).append('J');
+    out.write(sb.toString());
+    valid = false;
+  }
+
+  /**
+   * Update the terminal so that it displays the specified text, with the cursor at the specified column.
+   *
+   * @param text   text displayed after the prompt
+   * @param target column where to put the cursor
+   * @param width  terminal width
+   * @param out    terminal output
+   */
+  void update(final String text, final int target, final int width, final Writer out) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    if (!text.equals(drawn)) {
+      int prefix = 0;
+      int max = Math.min(text.length(), drawn.length());
+      while (prefix < max && text.charAt(prefix) == drawn.charAt(prefix)) {
+        prefix++;
+      }
+
+      // when the text is replaced by a text of the same width, the common suffix is left untouched too
+      int end = text.length();
+      int drawnWidth = UnicodeUtils.getPrintLength(drawn);
+      int textWidth = UnicodeUtils.getPrintLength(text);
+      if (text.length() == drawn.length() && textWidth == drawnWidth) {
+        while (end > prefix && text.charAt(end - 1) == drawn.charAt(end - 1)) {
+          end--;
+        }
+      }
+
+      moveTo(sb, promptWidth + UnicodeUtils.getPrintLength(text.substring(0, prefix)), width);
+      String changed = text.substring(prefix, end);
+      sb.append(changed);
+      cursor += UnicodeUtils.getPrintLength(changed);
+      wrap(sb, text.substring(end), width);
+      if (textWidth < drawnWidth) {
+        // clear the end of the previous text
+        sb.append(CSI).append('J');
+      }
+      drawn = text;
+    }
+    moveTo(sb, target, width);
+    if (sb.length() > 0) {
+      out.write(sb.toString());
+    }
+  }
+
+  /**
+   * After printing up to the last column, the terminal keeps the cursor on the last column until the next character:
+   * print it (or a space) and return to the start of the row, so that the cursor is where it is expected.
+   *
+   * @param sb   output
+   * @param rest text following the cursor
+   */
+  private void wrap(final StringBuilder sb, final String rest, final int width) {
+    if (cursor > 0 && width > 0 && cursor % width == 0) {
+      sb.append(rest.length() > 0 ? rest.charAt(0) : ' ').append('\r');
+    }
+  }
+
+  /**
+   * Move the cursor to the specified column, with one vertical move and one horizontal move at most.
+   */
+  private void moveTo(final StringBuilder sb, final int target, final int width) {
+    if (target == cursor || width <= 0) {
+      cursor = target;
+      return;
+    }
+    int row = cursor / width;
+    int targetRow = target / width;
+    if (targetRow < row) {
+      sb.append(CSI).append(row - targetRow).append('A');
+    } else if (targetRow > row) {
+      sb.append(CSI).append(targetRow - row).append('B');
+    }
+    int column = target % width;
+    if (column != cursor % width) {
+      if (column == 0) {
+        sb.append('\r');
+      } else {
+        sb.append(CSI).append(column + 1).append('G');
+      }
+    }
+    cursor = target;
+  }
+}
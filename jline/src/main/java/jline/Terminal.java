@@ -140,6 +140,22 @@ public abstract class Terminal implements ConsoleOperations {
      */
     public abstract int getTerminalHeight();
 
+    /**
+     *  Forget the terminal geometry cached by the implementation, if any,
+     *  so that it is read again the next time it is needed.
+     */
+    public void invalidateTerminalGeometry() {
+    }
+
+    /**
+     *  Returns true if the terminal can be asked to surround pasted text with
+     *  ESC [ 200 ~ and ESC [ 201 ~, and translates the first sequence to the
+     *  {@link ConsoleOperations#PASTE_START} virtual key.
+     */
+    public boolean isBracketedPasteSupported() {
+        return false;
+    }
+
     /**
      *  Returns true if this terminal is capable of initializing the
      *  terminal to use jline.
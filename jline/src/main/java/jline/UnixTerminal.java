@@ -17,6 +17,9 @@
 package jline;
 
 import java.io.*;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.*;
 
 /**
@@ -44,16 +47,37 @@ public class UnixTerminal extends Terminal {
     public static final short END_CODE = 70;
 
     public static final short DEL_THIRD = 51;
+    public static final short PASTE_THIRD = 50;
     public static final short DEL_SECOND = 126;
 
     private boolean echoEnabled;
     private String ttyConfig;
-    private String ttyProps;
-    private long ttyPropsLastFetched;
     private boolean backspaceDeleteSwitched = false;
     private static String sttyCommand =
         System.getProperty("jline.sttyCommand", "stty");
 
+    /**
+     *  Interval between two reads of the terminal geometry, in milliseconds,
+     *  when the window change signal cannot be handled.
+     */
+    private static final long GEOMETRY_POLL_INTERVAL =
+        Long.getLong("jline.geometryPollInterval", 2000L).longValue();
+
+    /**
+     *  Terminal geometry, read with "stty -a" only when it is invalid:
+     *  after a window change signal, or periodically by the geometry poller.
+     */
+    private volatile int columns = -1;
+    private volatile int rows = -1;
+    private volatile boolean geometryValid = false;
+    private Thread geometryPoller;
+
+    /**
+     *  Time before which a failed read of the geometry is not retried, in milliseconds.
+     *  Retried after {@link #GEOMETRY_POLL_INTERVAL}, so a failing stty is not forked on every key.
+     */
+    private volatile long geometryRetryTime = 0;
+
     
     String encoding = System.getProperty("input.encoding", "UTF-8");
     ReplayPrefixOneCharInputStream replayStream = new ReplayPrefixOneCharInputStream(encoding);
@@ -96,6 +120,11 @@ public class UnixTerminal extends Terminal {
         stty("-echo");
         echoEnabled = false;
 
+        // read the geometry again when the window is resized
+        if (!handleWindowChange()) {
+            startGeometryPoller();
+        }
+
         // at exit, restore the original tty configuration (for JDK 1.3+)
         try {
             Runtime.getRuntime().addShutdownHook(new Thread() {
@@ -119,6 +148,10 @@ public class UnixTerminal extends Terminal {
      * used after calling this method.
      */
     public void restoreTerminal() throws Exception {
+        if (geometryPoller != null) {
+            geometryPoller.interrupt();
+            geometryPoller = null;
+        }
         if (ttyConfig != null) {
             stty(ttyConfig);
             ttyConfig = null;
@@ -164,6 +197,13 @@ public class UnixTerminal extends Terminal {
                 } else if (c == DEL_THIRD) {
                     c = readCharacter(in); // read 4th
                     return DELETE;
+                } else if (c == PASTE_THIRD) {
+                    // bracketed paste start: ESC [ 2 0 0 ~
+                    if (readCharacter(in) == '0' && readCharacter(in) == '0'
+                            && readCharacter(in) == '~') {
+                        return PASTE_START;
+                    }
+                    return 0;
                 }
             } 
         } 
@@ -190,6 +230,15 @@ public class UnixTerminal extends Terminal {
         return true;
     }
 
+    /**
+     *  Bracketed paste is enabled unless the terminal is dumb, or the
+     *  <em>jline.bracketedPaste</em> system property is false.
+     */
+    public boolean isBracketedPasteSupported() {
+        return !"dumb".equals(System.getenv("TERM"))
+            && Boolean.valueOf(System.getProperty("jline.bracketedPaste", "true")).booleanValue();
+    }
+
     public boolean getEcho() {
         return false;
     }
@@ -197,56 +246,123 @@ public class UnixTerminal extends Terminal {
     /**
      *  Returns the value of "stty size" width param.
      *
-     *  <strong>Note</strong>: this method caches the value from the
-     *  first time it is called in order to increase speed, which means
-     *  that changing to size of the terminal will not be reflected
-     *  in the console.
+     *  <strong>Note</strong>: the value is cached in order to increase speed,
+     *  it is read again after the terminal is resized, see {@link #invalidateTerminalGeometry}.
      */
     public int getTerminalWidth() {
-        int val = -1;
+        refreshGeometry(false);
+        return columns > 0 ? columns : 80;
+    }
 
-        try {
-            val = getTerminalProperty("columns");
-        } catch (Exception e) {
-        }
+    /**
+     *  Returns the value of "stty size" height param.
+     *
+     *  <strong>Note</strong>: the value is cached in order to increase speed,
+     *  it is read again after the terminal is resized, see {@link #invalidateTerminalGeometry}.
+     */
+    public int getTerminalHeight() {
+        refreshGeometry(false);
+        return rows > 0 ? rows : 24;
+    }
 
-        if (val <= 0) {
-            val = 80;
+    public void invalidateTerminalGeometry() {
+        geometryValid = false;
+    }
+
+    /**
+     *  Read the terminal geometry if it is invalid, or if forced.
+     */
+    private void refreshGeometry(boolean force) {
+        if (!force && (geometryValid || System.currentTimeMillis() < geometryRetryTime)) {
+            return;
+        }
+        synchronized (this) {
+            if (!force && (geometryValid || System.currentTimeMillis() < geometryRetryTime)) {
+                return;
+            }
+            // marked valid first, so that a window change while reading invalidates it again
+            geometryValid = true;
+            boolean read = false;
+            try {
+                String ttyProps = readGeometry();
+                int newColumns = getTerminalProperty(ttyProps, "columns");
+                int newRows = getTerminalProperty(ttyProps, "rows");
+                if (newColumns > 0 && newRows > 0) {
+                    columns = newColumns;
+                    rows = newRows;
+                    read = true;
+                }
+            } catch (Exception e) {
+                consumeException(e);
+            }
+            if (!read) {
+                // the previous geometry is kept, and read again later
+                geometryValid = false;
+                geometryRetryTime = System.currentTimeMillis() + GEOMETRY_POLL_INTERVAL;
+            }
         }
+    }
 
-        return val;
+    /**
+     *  Read the terminal properties holding the geometry, with "stty -a".
+     */
+    protected String readGeometry() throws IOException, InterruptedException {
+        return stty("-a");
     }
 
     /**
-     *  Returns the value of "stty size" height param.
+     *  Invalidate the geometry on the window change signal (SIGWINCH).
+     *  The signal API is not public, so it is looked up reflectively.
      *
-     *  <strong>Note</strong>: this method caches the value from the
-     *  first time it is called in order to increase speed, which means
-     *  that changing to size of the terminal will not be reflected
-     *  in the console.
+     *  @return false if the signal cannot be handled on this JVM
      */
-    public int getTerminalHeight() {
-        int val = -1;
-
+    private boolean handleWindowChange() {
         try {
-            val = getTerminalProperty("rows");
+            Class<?> signalClass = Class.forName("sun.misc.Signal");
+            Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+            Object handler = Proxy.newProxyInstance(handlerClass.getClassLoader(),
+                new Class<?>[] { handlerClass }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getDeclaringClass() == Object.class) {
+                            return method.invoke(this, args);
+                        }
+                        invalidateTerminalGeometry();
+                        return null;
+                    }
+                });
+            Object signal = signalClass.getConstructor(String.class).newInstance("WINCH");
+            signalClass.getMethod("handle", signalClass, handlerClass).invoke(null, signal, handler);
+            return true;
         } catch (Exception e) {
+            consumeException(e);
+        } catch (LinkageError e) {
+            consumeException(e);
         }
+        return false;
+    }
 
-        if (val <= 0) {
-            val = 24;
-        }
-
-        return val;
+    /**
+     *  Read the geometry periodically in the background, so that reading it never forks a process
+     *  while the user types.
+     */
+    private void startGeometryPoller() {
+        geometryPoller = new Thread("jline geometry poller") {
+            public void run() {
+                try {
+                    while (!isInterrupted()) {
+                        Thread.sleep(GEOMETRY_POLL_INTERVAL);
+                        refreshGeometry(true);
+                    }
+                } catch (InterruptedException e) {
+                    consumeException(e);
+                }
+            }
+        };
+        geometryPoller.setDaemon(true);
+        geometryPoller.start();
     }
 
-    private int getTerminalProperty(String prop)
-                                    throws IOException, InterruptedException {
-        // tty properties are cached so we don't have to worry too much about getting term widht/height
-        if (ttyProps == null || System.currentTimeMillis() - ttyPropsLastFetched > 1000) {
-            ttyProps = stty("-a");
-            ttyPropsLastFetched = System.currentTimeMillis();
-        }
+    private static int getTerminalProperty(String ttyProps, String prop) {
         // need to be able handle both output formats:
         // speed 9600 baud; 24 rows; 140 columns;
         // and:
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package jline;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal emulation of an ANSI terminal screen, interpreting the sequences output by the {@link ConsoleReader}.
+ * It also counts the writes and flushes it receives.
+ */
+public class AnsiScreen extends Writer {
+  private final int width;
+  private final List<StringBuilder> rows = new ArrayList<StringBuilder>();
+  private int row;
+  private int column;
+  private boolean pendingWrap;
+  private StringBuilder sequence;
+
+  int writes;
+  int flushes;
+  long characters;
+
+  public AnsiScreen(final int width) {
+    this.width = width;
+    rows.add(new StringBuilder());
+  }
+
+  /**
+   * @return the text displayed on the screen, rows concatenated, trailing spaces removed
+   */
+  public String getText() {
+    StringBuilder sb = new StringBuilder();
+    for (StringBuilder r : rows) {
+      sb.append(r);
+    }
+    int end = sb.length();
+    while (end > 0 && sb.charAt(end - 1) == ' ') {
+      end--;
+    }
+    return sb.substring(0, end);
+  }
+
+  /**
+   * @return cursor position, rows concatenated
+   */
+  public int getCursor() {
+    return row * width + column;
+  }
+
+  public void write(final char[] cbuf, final int off, final int len) {
+    writes++;
+    characters += len;
+    for (int i = off; i < off + len; i++) {
+      process(cbuf[i]);
+    }
+  }
+
+  public void flush() {
+    flushes++;
+  }
+
+  public void close() {
+  }
+
+  private void process(final char c) {
+    if (sequence != null) {
+      sequence.append(c);
+      if (c >= 64 && c <= 126 && sequence.length() > 1) {
+        execute(sequence.substring(1, sequence.length() - 1), c);
+        sequence = null;
+      }
+      return;
+    }
+    switch (c) {
+      case 27:
+        sequence = new StringBuilder();
+        break;
+      case '\r':
+        column = 0;
+        pendingWrap = false;
+        break;
+      case '\n':
+        moveToRow(row + 1);
+        column = 0;
+        pendingWrap = false;
+        break;
+      case 7:
+        break;
+      default:
+        if (pendingWrap) {
+          moveToRow(row + 1);
+          column = 0;
+          pendingWrap = false;
+        }
+        StringBuilder r = rows.get(row);
+        while (r.length() <= column) {
+          r.append(' ');
+        }
+        r.setCharAt(column, c);
+        if (column == width - 1) {
+          pendingWrap = true;
+        } else {
+          column++;
+        }
+    }
+  }
+
+  private void execute(final String args, final char command) {
+    if (args.startsWith("?")) {
+      // terminal modes
+      return;
+    }
+    int n = args.length() == 0 ? 1 : Integer.parseInt(args);
+    pendingWrap = false;
+    switch (command) {
+      case 'A':
+        row = Math.max(0, row - n);
+        break;
+      case 'B':
+        row = Math.min(rows.size() - 1, row + n);
+        break;
+      case 'G':
+        column = Math.min(width - 1, n - 1);
+        break;
+      case 'J':
+        truncate(rows.get(row), column);
+        while (rows.size() > row + 1) {
+          rows.remove(rows.size() - 1);
+        }
+        break;
+      case 'K':
+        truncate(rows.get(row), args.equals("2") ? 0 : column);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported sequence " + args + command);
+    }
+  }
+
+  private void moveToRow(final int r) {
+    row = r;
+    while (rows.size() <= row) {
+      rows.add(new StringBuilder());
+    }
+  }
+
+  private static void truncate(final StringBuilder r, final int length) {
+    if (r.length() > length) {
+      r.setLength(length);
+    }
+  }
+}
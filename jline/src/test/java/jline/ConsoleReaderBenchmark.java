@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package jline;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+
+/**
+ * Throughput of the {@link ConsoleReader} line editing, for typing, cursor movement and paste workloads.
+ * It reports the keys processed per second, and the characters and flushes output per key,
+ * what matters over a slow connection.
+ * <p/>
+ * Run with: java -cp target/classes:target/test-classes jline.ConsoleReaderBenchmark [iterations]
+ */
+public class ConsoleReaderBenchmark {
+  private static final int WIDTH = 80;
+
+  private static final String LINE =
+      "gen -e src/test/resources/examples/employees -o target/generated/mobile -p com.example.mobile.api "
+          + "-c EmployeesController -n employees --force --verbose";
+
+  private static final char PREV_CHAR = 2;
+  private static final char NEXT_CHAR = 6;
+  private static final char MOVE_TO_BEG = 1;
+  private static final char MOVE_TO_END = 5;
+  private static final char PREV_WORD = 24;
+  private static final char DELETE_PREV_CHAR = 8;
+
+  public static void main(String[] args) throws IOException {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+    StringBuilder moves = new StringBuilder(LINE);
+    for (int i = 0; i < 60; i++) {
+      moves.append(PREV_CHAR);
+    }
+    for (int i = 0; i < 30; i++) {
+      moves.append(NEXT_CHAR);
+    }
+    for (int i = 0; i < 10; i++) {
+      moves.append(PREV_WORD);
+    }
+    moves.append(MOVE_TO_BEG).append(MOVE_TO_END);
+
+    StringBuilder edits = new StringBuilder(LINE);
+    for (int i = 0; i < 80; i++) {
+      edits.append(PREV_CHAR);
+    }
+    edits.append("-x extra ");
+    for (int i = 0; i < 20; i++) {
+      edits.append(DELETE_PREV_CHAR);
+    }
+
+    run("typing", LINE, iterations, true);
+    run("cursor movement", moves.toString(), iterations, true);
+    run("editing in the middle", edits.toString(), iterations, true);
+    run("paste", LINE, iterations, false);
+    run("bracketed paste", "\u001b[200~" + LINE + "\u001b[201~", iterations, false);
+  }
+
+  /**
+   * @param typed whether the keys are typed one by one, or all available at once like a paste
+   */
+  private static void run(String workload, String keys, int iterations, boolean typed) throws IOException {
+    byte[] input = keys.getBytes("UTF-8");
+    Terminal terminal = new UnixTerminal() {
+      public int getTerminalWidth() {
+        return WIDTH;
+      }
+
+      public boolean isBracketedPasteSupported() {
+        return true;
+      }
+    };
+
+    // warm-up
+    for (int i = 0; i < iterations / 10; i++) {
+      readLine(input, typed, terminal, new CountingWriter());
+    }
+
+    CountingWriter out = new CountingWriter();
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      readLine(input, typed, terminal, out);
+    }
+    long elapsed = System.nanoTime() - start;
+
+    long keyCount = (long) keys.length() * iterations;
+    System.out.println(String.format("%-22s %12.0f keys/s %8.1f chars/key %6.2f writes/key %6.2f flushes/key",
+        workload, keyCount * 1e9d / elapsed, (double) out.characters / keyCount,
+        (double) out.writes / keyCount, (double) out.flushes / keyCount));
+  }
+
+  private static void readLine(byte[] input, boolean typed, Terminal terminal, Writer out) throws IOException {
+    InputStream in = typed ? new TypedInputStream(input) : new ByteArrayInputStream(input);
+    ConsoleReader reader = new ConsoleReader(in, out, null, terminal);
+    reader.setUseHistory(false);
+    reader.readLine("r2m> ");
+  }
+
+  /**
+   * Output counting the characters, writes and flushes, and discarding them
+   */
+  private static class CountingWriter extends Writer {
+    long characters;
+    long writes;
+    long flushes;
+
+    public void write(char[] cbuf, int off, int len) {
+      characters += len;
+      writes++;
+    }
+
+    public void write(int c) {
+      characters++;
+      writes++;
+    }
+
+    public void write(String str, int off, int len) {
+      characters += len;
+      writes++;
+    }
+
+    public void flush() {
+      flushes++;
+    }
+
+    public void close() {
+    }
+  }
+}
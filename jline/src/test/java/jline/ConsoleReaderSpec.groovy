@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package jline
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Test specification for the line redraw of {@link ConsoleReader}: the emulated screen must display the prompt
+ * and the buffer, with the cursor at the buffer cursor, whatever the editing keys.
+ */
+class ConsoleReaderSpec extends Specification {
+
+  static final int WIDTH = 20
+
+  static final String PROMPT = "r2m> "
+
+  static final String LINE = "gen -e examples -o out -p com.example"
+
+  @Unroll
+  def "should display the edited line after #keys"() {
+    given:
+      AnsiScreen screen = new AnsiScreen(WIDTH)
+      ConsoleReader reader = new ConsoleReader(new TypedInputStream(input.getBytes("UTF-8")), screen, null,
+          new TestTerminal(WIDTH))
+    when:
+      reader.readLine(PROMPT)
+      CursorBuffer buf = reader.getCursorBuffer()
+    then:
+      buf.toString() == expected
+      screen.getText() == (PROMPT + expected).replaceAll(/ +$/, "")
+      screen.getCursor() == PROMPT.length() + buf.cursor
+      // one flush for the prompt, and one per key
+      screen.flushes <= input.length() + 1
+
+    where:
+      keys                            | input                                    | expected
+      "typing a wrapped line"         | LINE                                     | LINE
+      "inserting in the middle"       | LINE + "\u0002" * 5 + "XY"               | "gen -e examples -o out -p com.exXYample"
+      "deleting in the middle"        | LINE + "\u0002" * 5 + "\u0008\u0008"     | "gen -e examples -o out -p com.ample"
+      "deleting ahead"                | LINE + "\u0001" + "\u0006" * 3 + "\u007f\u007f" | "gene examples -o out -p com.example"
+      "killing the line"              | LINE + "\u0001\u000b"                    | ""
+      "erasing the line"              | LINE + "\u0015"                          | ""
+      "deleting the previous word"    | LINE + "\u0017"                          | "gen -e examples -o out -p com."
+      "moving over words"             | LINE + "\u0018\u0018"                    | LINE
+      "filling the first row"         | "a" * (WIDTH - PROMPT.length())          | "a" * (WIDTH - PROMPT.length())
+      "inserting at the start"        | "a" * 35 + "\u0001zz"                    | "zz" + "a" * 35
+  }
+
+  def "should insert a bracketed paste at once, and return its lines one by one"() {
+    given:
+      String input = "ab\u001b[200~help\nexec ls\r\nlast\u001b[201~X\n"
+      AnsiScreen screen = new AnsiScreen(80)
+      Terminal terminal = new UnixTerminal() {
+        boolean isBracketedPasteSupported() { true }
+
+        int getTerminalWidth() { 80 }
+      }
+      ConsoleReader reader = new ConsoleReader(new ByteArrayInputStream(input.getBytes("UTF-8")), screen, null, terminal)
+    when:
+      List<String> lines = []
+      String line
+      while ((line = reader.readLine(PROMPT)) != null) {
+        lines << line
+      }
+    then:
+      lines == ["abhelp", "exec ls", "lastX"]
+      // the terminal sends the whole paste at once, it is not rendered key by key
+      screen.flushes < input.length() / 4
+  }
+}
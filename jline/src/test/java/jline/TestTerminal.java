@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package jline;
+
+/**
+ * ANSI terminal of a fixed size, reading its keys from the input stream of the {@link ConsoleReader}
+ */
+public class TestTerminal extends Terminal {
+  private final int width;
+
+  public TestTerminal(final int width) {
+    this.width = width;
+  }
+
+  public void initializeTerminal() {
+  }
+
+  public int getTerminalWidth() {
+    return width;
+  }
+
+  public int getTerminalHeight() {
+    return 24;
+  }
+
+  public boolean isSupported() {
+    return true;
+  }
+
+  public boolean getEcho() {
+    return false;
+  }
+
+  public boolean isEchoEnabled() {
+    return false;
+  }
+
+  public void enableEcho() {
+  }
+
+  public void disableEcho() {
+  }
+}
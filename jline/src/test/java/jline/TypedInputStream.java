@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package jline;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * Input typed key by key: no input is ever available in advance, unlike pasted input
+ */
+public class TypedInputStream extends ByteArrayInputStream {
+
+  public TypedInputStream(final byte[] buf) {
+    super(buf);
+  }
+
+  @Override
+  public synchronized int available() {
+    return 0;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package jline
+
+import spock.lang.Specification
+
+import java.lang.reflect.Field
+
+/**
+ * Test specification for the geometry cache of {@link UnixTerminal}, with the output of "stty -a" stubbed
+ */
+class UnixTerminalSpec extends Specification {
+
+  def "should read the geometry once, and again after it is invalidated"() {
+    given:
+      StubTerminal terminal = new StubTerminal(["speed 9600 baud; 24 rows; 140 columns;",
+                                                "speed 38400 baud; rows = 49; columns = 111; ypixels = 0; xpixels = 0;"])
+    when:
+      int width = terminal.getTerminalWidth()
+      int height = terminal.getTerminalHeight()
+    then:
+      width == 140
+      height == 24
+      terminal.getTerminalWidth() == 140
+      terminal.reads == 1
+    when:
+      terminal.invalidateTerminalGeometry()
+    then:
+      terminal.getTerminalWidth() == 111
+      terminal.getTerminalHeight() == 49
+      terminal.reads == 2
+  }
+
+  def "should keep the geometry invalid after a failed read, and not read it again right away"() {
+    given:
+      StubTerminal terminal = new StubTerminal(["speed 9600 baud; 24 rows; 140 columns;", null, "unexpected output"])
+    when:
+      terminal.getTerminalWidth()
+      terminal.invalidateTerminalGeometry()
+    then:
+      // the previous geometry is kept
+      terminal.getTerminalWidth() == 140
+      terminal.getTerminalHeight() == 24
+      terminal.reads == 2
+      !field("geometryValid").get(terminal)
+    when:
+      field("geometryRetryTime").set(terminal, 0L)
+    then:
+      terminal.getTerminalWidth() == 140
+      terminal.reads == 3
+      !field("geometryValid").get(terminal)
+  }
+
+  def "should fall back to the default geometry when it was never read"() {
+    given:
+      StubTerminal terminal = new StubTerminal([null])
+    expect:
+      terminal.getTerminalWidth() == 80
+      terminal.getTerminalHeight() == 24
+      terminal.reads == 1
+  }
+
+  private static Field field(String name) {
+    Field f = UnixTerminal.getDeclaredField(name)
+    f.setAccessible(true)
+    return f
+  }
+
+  /**
+   * Terminal returning the given outputs of "stty -a", in order, a null output failing the read
+   */
+  static class StubTerminal extends UnixTerminal {
+
+    final List<String> outputs
+
+    int reads
+
+    StubTerminal(List<String> outputs) {
+      this.outputs = outputs
+    }
+
+    @Override
+    protected String readGeometry() throws IOException {
+      String output = outputs[reads++]
+      if (output == null) {
+        throw new IOException("stty failed")
+      }
+      return output
+    }
+  }
+}
@@ -21,6 +21,9 @@ import static org.fusesource.jansi.Ansi.*
 
 /**
  * Placeholder for various Ansi operations
+ * <p>
+ * The styles are applied with the escape sequences of {@link AnsiStyle}, only {@link #renderFormatted} parses
+ * <code>@|STYLE text|@</code> markups.
  */
 class AnsiHelper {
   /**
@@ -28,7 +31,7 @@ class AnsiHelper {
    * @return string in bold
    */
   static String bold(String s) {
-    return ansi().render("@|BOLD $s|@").toString()
+    return AnsiStyle.BOLD.apply(s)
   }
 
   /**
@@ -37,7 +40,7 @@ class AnsiHelper {
    * @return string in bold
    */
   static String italic(String s) {
-    return ansi().render("@|ITALIC $s|@").toString()
+    return AnsiStyle.ITALIC.apply(s)
   }
 
   /**
@@ -45,14 +48,14 @@ class AnsiHelper {
    * @return string in faint style
    */
   static String faint(String s) {
-    return ansi().render("@|INTENSITY_FAINT $s|@").toString()
+    return AnsiStyle.FAINT.apply(s)
   }
   /**
    * @param s string to print in green bold
    * @return string in green bold
    */
   static String boldGreen(String s) {
-    return ansi().render("@|BOLD,GREEN $s|@").toString()
+    return AnsiStyle.BOLD_GREEN.apply(s)
   }
 
   /**
@@ -60,7 +63,7 @@ class AnsiHelper {
    * @return underlined string
    */
   static String underline(String s) {
-    return ansi().render("@|UNDERLINE $s|@").toString()
+    return AnsiStyle.UNDERLINE.apply(s)
   }
 
   /**
@@ -68,7 +71,7 @@ class AnsiHelper {
    * @return string in green
    */
   static String green(String s) {
-    return ansi().render("@|green $s|@").toString()
+    return AnsiStyle.GREEN.apply(s)
   }
 
   /**
@@ -76,7 +79,7 @@ class AnsiHelper {
    * @return string in red
    */
   static String red(String s) {
-    return ansi().render("@|red $s|@").toString()
+    return AnsiStyle.RED.apply(s)
   }
 
   /**
@@ -84,7 +87,7 @@ class AnsiHelper {
    * @return string in red
    */
   static String renderError(String s) {
-    return ansi().render("@|red ${bold(s)}|@").toString()
+    return AnsiStyle.ERROR.apply(s)
   }
 
   /**
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.utils
+
+import groovy.transform.CompileStatic
+import org.fusesource.jansi.Ansi
+import org.fusesource.jansi.Ansi.Attribute
+import org.fusesource.jansi.Ansi.Color
+
+/**
+ * An ANSI text style, such as bold or red, with its escape sequences computed once. Styling a text concatenates
+ * them around it, instead of having Jansi parse an <code>@|STYLE text|@</code> markup, and adds nothing when ANSI is
+ * disabled for the current thread.
+ * <p>
+ * The output is the same as the markup rendered by Jansi, <code>@|BOLD,GREEN text|@</code> is
+ * <code>ESC[1;32mtextESC[m</code>.
+ */
+@CompileStatic
+class AnsiStyle {
+
+  private static final String ESCAPE = "\u001B["
+
+  /**
+   * Escape sequence resetting all the attributes
+   */
+  static final String RESET = ESCAPE + "m"
+
+  static final AnsiStyle BOLD = new AnsiStyle(Attribute.INTENSITY_BOLD.value())
+
+  static final AnsiStyle ITALIC = new AnsiStyle(Attribute.ITALIC.value())
+
+  static final AnsiStyle FAINT = new AnsiStyle(Attribute.INTENSITY_FAINT.value())
+
+  static final AnsiStyle UNDERLINE = new AnsiStyle(Attribute.UNDERLINE.value())
+
+  static final AnsiStyle GREEN = new AnsiStyle(Color.GREEN.fg())
+
+  static final AnsiStyle RED = new AnsiStyle(Color.RED.fg())
+
+  static final AnsiStyle BOLD_GREEN = new AnsiStyle(Attribute.INTENSITY_BOLD.value(), Color.GREEN.fg())
+
+  /**
+   * Bold text within red text
+   */
+  static final AnsiStyle ERROR = RED.around(BOLD)
+
+  /**
+   * Escape sequences before the styled text
+   */
+  final String prefix
+
+  /**
+   * Escape sequences after the styled text
+   */
+  final String suffix
+
+  /**
+   * Ctor
+   * @param codes SGR codes of the style, see {@link Attribute#value} and {@link Color#fg}
+   */
+  AnsiStyle(int... codes) {
+    StringBuilder prefix = new StringBuilder(ESCAPE)
+    for (int i = 0; i < codes.length; i++) {
+      if (i > 0) {
+        prefix.append((char) ';')
+      }
+      prefix.append(codes[i])
+    }
+    this.prefix = prefix.append((char) 'm').toString()
+    this.suffix = RESET
+  }
+
+  private AnsiStyle(String prefix, String suffix) {
+    this.prefix = prefix
+    this.suffix = suffix
+  }
+
+  /**
+   * @param inner style of the text within this style
+   * @return the nested styles, applied at once
+   */
+  AnsiStyle around(AnsiStyle inner) {
+    return new AnsiStyle(prefix + inner.prefix, inner.suffix + suffix)
+  }
+
+  /**
+   * @param text text to style
+   * @return the styled text, the text itself if ANSI is disabled
+   */
+  String apply(String text) {
+    return Ansi.isEnabled() ? prefix + text + suffix : String.valueOf(text)
+  }
+
+  /**
+   * Append a styled text, to build a line of several styled spans without intermediate strings
+   * @param builder builder to append to
+   * @param text text to style
+   * @return the builder
+   */
+  StringBuilder appendTo(StringBuilder builder, CharSequence text) {
+    if (!Ansi.isEnabled()) {
+      return builder.append(text)
+    }
+    return builder.append(prefix).append(text).append(suffix)
+  }
+}
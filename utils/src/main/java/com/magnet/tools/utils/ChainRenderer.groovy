@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.utils
+
+import groovy.transform.CompileStatic
+
+/**
+ * Renderer applying several renderers in turn, each to the output of the previous one. A line filtered out by a
+ * renderer is not passed to the next ones.
+ */
+@CompileStatic
+class ChainRenderer implements Renderer {
+
+  private final Renderer[] renderers
+
+  ChainRenderer(Renderer... renderers) {
+    this.renderers = renderers
+  }
+
+  ChainRenderer(List<Renderer> renderers) {
+    this(renderers as Renderer[])
+  }
+
+  @Override
+  String render(String s) {
+    for (Renderer renderer : renderers) {
+      if (s == null) {
+        return null
+      }
+      s = renderer.render(s)
+    }
+    return s
+  }
+}
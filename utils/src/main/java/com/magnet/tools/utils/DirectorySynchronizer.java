@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.utils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Make a target directory up-to-date with a source directory, writing only the files whose content changed.
+ * Unchanged files are not touched, so their timestamps are kept and the tools watching them are not triggered.
+ * The number of added, changed, unchanged and removed files are counted across synchronizations.
+ * <p>
+ * The files of the target directory which are not in the source directory are either all removed, or only those
+ * listed, typically the files of a previous generation, so that the files written by hand are kept.
+ * <p>
+ * This class is plain Java: it is also used by the simple CLI, which runs without Groovy.
+ */
+public class DirectorySynchronizer {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Number of files written because they did not exist in the target directory
+   */
+  public int added;
+
+  /**
+   * Number of files written because their content changed
+   */
+  public int changed;
+
+  /**
+   * Number of files left untouched
+   */
+  public int unchanged;
+
+  /**
+   * Number of files removed because they do not exist in the source directory
+   */
+  public int removed;
+
+  /**
+   * Synchronize the target directory with the source directory, and remove all the files which are not in the source
+   * directory
+   * @param source source directory, left untouched
+   * @param target target directory, created if it does not exist
+   * @throws IOException if a file cannot be read or written
+   */
+  public void synchronize(File source, File target) throws IOException {
+    synchronize(source, target, true);
+  }
+
+  /**
+   * Synchronize the target directory with the source directory
+   * @param source source directory, left untouched
+   * @param target target directory, created if it does not exist
+   * @param removeStale whether to remove the files of the target directory which are not in the source directory
+   * @throws IOException if a file cannot be read or written
+   */
+  public void synchronize(File source, File target, boolean removeStale) throws IOException {
+    target.mkdirs();
+    Set<String> names = new HashSet<String>();
+    File[] files = source.listFiles();
+    for (File from : null == files ? new File[0] : files) {
+      names.add(from.getName());
+      File to = new File(target, from.getName());
+      if (from.isDirectory()) {
+        if (to.isFile()) {
+          remove(to);
+        }
+        synchronize(from, to, removeStale);
+        continue;
+      }
+      if (to.isDirectory()) {
+        remove(to);
+      }
+      if (!to.exists()) {
+        copy(from, to);
+        added++;
+      } else if (sameContent(from, to)) {
+        unchanged++;
+      } else {
+        copy(from, to);
+        changed++;
+      }
+    }
+
+    if (removeStale) {
+      File[] existing = target.listFiles();
+      for (File f : null == existing ? new File[0] : existing) {
+        if (!names.contains(f.getName())) {
+          remove(f);
+        }
+      }
+    }
+  }
+
+  /**
+   * Synchronize the target directory with the source directory, and remove the listed files which are no longer in
+   * the source directory. The other files of the target directory are left in place, and so are the directories
+   * still containing files.
+   * @param source source directory, left untouched
+   * @param target target directory, created if it does not exist
+   * @param previousFiles paths of the files previously synchronized, relative to the target directory and separated
+   *                      by <code>/</code>, see {@link #listFiles}
+   * @throws IOException if a file cannot be read or written
+   */
+  public void synchronize(File source, File target, Collection<String> previousFiles) throws IOException {
+    synchronize(source, target, false);
+    File root = target.getCanonicalFile();
+    String prefix = root.getPath() + File.separator;
+    for (String name : previousFiles) {
+      File to = new File(target, name).getCanonicalFile();
+      if (new File(source, name).exists() || !to.isFile() || !to.getPath().startsWith(prefix)) {
+        continue;
+      }
+      remove(to);
+      // remove the directories left empty, up to the target directory
+      File dir = to.getParentFile();
+      while (!dir.equals(root) && dir.delete()) {
+        dir = dir.getParentFile();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return added + " added, " + changed + " changed, " + unchanged + " unchanged, " + removed + " removed";
+  }
+
+  /**
+   * List the files under a directory
+   * @param directory a directory
+   * @return paths of the files under the directory, relative to it and separated by <code>/</code>, empty if the
+   * directory does not exist
+   */
+  public static List<String> listFiles(File directory) {
+    List<String> names = new ArrayList<String>();
+    listFiles(directory, "", names);
+    return names;
+  }
+
+  private static void listFiles(File dir, String prefix, List<String> names) {
+    File[] files = dir.listFiles();
+    for (File f : null == files ? new File[0] : files) {
+      if (f.isDirectory()) {
+        listFiles(f, prefix + f.getName() + "/", names);
+      } else {
+        names.add(prefix + f.getName());
+      }
+    }
+  }
+
+  /**
+   * Compare the content of two files
+   * @param a a file
+   * @param b another file
+   * @return true if both files have the same content
+   * @throws IOException if a file cannot be read
+   */
+  public static boolean sameContent(File a, File b) throws IOException {
+    if (a.length() != b.length()) {
+      return false;
+    }
+    InputStream ina = new BufferedInputStream(new FileInputStream(a), BUFFER_SIZE);
+    try {
+      InputStream inb = new BufferedInputStream(new FileInputStream(b), BUFFER_SIZE);
+      try {
+        byte[] bufa = new byte[BUFFER_SIZE];
+        byte[] bufb = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = ina.read(bufa)) > 0) {
+          int read = 0;
+          while (read < n) {
+            int m = inb.read(bufb, read, n - read);
+            if (m < 0) {
+              return false;
+            }
+            read += m;
+          }
+          // bytes after n are left from the previous, equal, chunk
+          if (!Arrays.equals(bufa, bufb)) {
+            return false;
+          }
+        }
+        return inb.read() < 0;
+      } finally {
+        inb.close();
+      }
+    } finally {
+      ina.close();
+    }
+  }
+
+  private static void copy(File from, File to) throws IOException {
+    InputStream in = new FileInputStream(from);
+    try {
+      OutputStream out = new FileOutputStream(to);
+      try {
+        byte[] buf = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+          out.write(buf, 0, n);
+        }
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  private void remove(File f) {
+    if (f.isDirectory()) {
+      File[] children = f.listFiles();
+      for (File child : null == children ? new File[0] : children) {
+        remove(child);
+      }
+    } else {
+      removed++;
+    }
+    f.delete();
+  }
+}
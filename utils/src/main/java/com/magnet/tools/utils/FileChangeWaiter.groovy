@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.utils
+
+import groovy.transform.PackageScope
+import groovy.util.logging.Slf4j
+
+import java.lang.reflect.Array
+import java.util.concurrent.TimeUnit
+
+/**
+ * Wait for the files followed to change, up to a timeout.
+ * <p>
+ * On Java 7 and later, the directories of the files are watched by a <code>java.nio.file.WatchService</code>, and
+ * a change ends the wait early. It is looked up dynamically, as the tools still run on Java 6. Otherwise, or if a
+ * directory cannot be watched, the wait lasts the whole timeout: the files are polled.
+ */
+@Slf4j
+@PackageScope
+class FileChangeWaiter {
+
+  private final def watchService
+
+  private final Set<String> watchedDirectories = new HashSet<String>()
+
+  FileChangeWaiter() {
+    watchService = newWatchService()
+  }
+
+  /**
+   * Watch the directory of a file, if it exists
+   * @param file file followed
+   */
+  synchronized void watch(File file) {
+    File directory = file.getAbsoluteFile().getParentFile()
+    if (watchService == null || directory == null || !directory.isDirectory()
+        || !watchedDirectories.add(directory.getPath())) {
+      return
+    }
+    try {
+      Class kinds = Class.forName("java.nio.file.StandardWatchEventKinds")
+      Object[] events = (Object[]) Array.newInstance(Class.forName('java.nio.file.WatchEvent$Kind'), 3)
+      events[0] = kinds.getField("ENTRY_CREATE").get(null)
+      events[1] = kinds.getField("ENTRY_MODIFY").get(null)
+      events[2] = kinds.getField("ENTRY_DELETE").get(null)
+      directory.toPath().register(watchService, events)
+    } catch (Exception e) {
+      log.debug("Cannot watch $directory, polling it", e)
+    }
+  }
+
+  /**
+   * Wait until a file of a watched directory changes, or the timeout elapses
+   * @param timeout timeout in ms
+   * @throws InterruptedException the thread was interrupted
+   */
+  void await(long timeout) throws InterruptedException {
+    if (watchService == null) {
+      Thread.sleep(timeout)
+      return
+    }
+    def key = watchService.poll(timeout, TimeUnit.MILLISECONDS)
+    while (key != null) {
+      // which file changed does not matter, all the files are checked
+      key.pollEvents()
+      key.reset()
+      key = watchService.poll()
+    }
+  }
+
+  /**
+   * Stop watching the directories
+   */
+  void close() {
+    try {
+      watchService?.close()
+    } catch (IOException e) { /* do nothing */ }
+  }
+
+  private static def newWatchService() {
+    try {
+      return Class.forName("java.nio.file.FileSystems").getDefault().newWatchService()
+    } catch (Exception e) {
+      log.debug("No watch service, polling the files followed")
+      return null
+    }
+  }
+}
@@ -18,21 +18,103 @@ package com.magnet.tools.utils
 
 import groovy.util.logging.Slf4j
 
+import java.lang.reflect.Array
+import java.lang.reflect.Method
+import java.nio.charset.Charset
 import java.util.concurrent.Callable
 
 /**
  * A utility class to follow and display a file input, supporting rotation file
  * Equivalent in shell to tail -F file
+ * <p>
+ * The lines appended to the file are rendered one by one, as they are completed. The last line is rendered
+ * without waiting for its end when the file is rotated or truncated, and when the follower stops. Lines longer
+ * than {@link #MAX_LINE_LENGTH} bytes are split, so memory stays bounded.
+ * <p>
+ * A follower runs on its own thread, see {@link #run}, or along with other followers on the thread of a
+ * {@link FileFollowerService}, which calls {@link #poll}.
  */
 @Slf4j
 class FileFollower implements Callable<Boolean> {
 
+  /**
+   * Number of bytes displayed from the end of the file when the following starts
+   */
+  static final int INITIAL_TAIL_LENGTH = 1024
+
+  /**
+   * Lines longer than that, in bytes, are rendered in several parts
+   */
+  static final int MAX_LINE_LENGTH = 65536
+
+  private static final int BUFFER_SIZE = 8192
+
+  /**
+   * <code>Files.readAttributes(Path, Class, LinkOption...)</code>, looked up dynamically as the tools still run on
+   * Java 6, where it is null
+   */
+  private static Method readAttributes
+  private static Class basicFileAttributes
+  private static Object noLinkOptions
+
+  static {
+    try {
+      basicFileAttributes = Class.forName("java.nio.file.attribute.BasicFileAttributes")
+      Class linkOption = Class.forName("java.nio.file.LinkOption")
+      noLinkOptions = Array.newInstance(linkOption, 0)
+      readAttributes = Class.forName("java.nio.file.Files").getMethod("readAttributes",
+          Class.forName("java.nio.file.Path"), Class.class, noLinkOptions.getClass())
+    } catch (Exception e) {
+      readAttributes = null
+    }
+  }
+
   private final Writer writer
-  private final File file
+  final File file
   private final long refreshInterval
   private volatile boolean following = true
   private final Renderer renderer
 
+  /**
+   * Number of bytes displayed from the end of the file when the following starts, {@link Long#MAX_VALUE} for the
+   * whole file
+   */
+  long initialTailLength = INITIAL_TAIL_LENGTH
+
+  /**
+   * Whether the file is kept open between polls, to detect when it is replaced. Not on Windows, where an open file
+   * cannot be renamed or deleted
+   */
+  private final boolean keepOpen = !System.getProperty("os.name").startsWith("Win")
+
+  private RandomAccessFile raf
+
+  /**
+   * Position of the next byte to read in the file, -1 until the following starts
+   */
+  private long position = -1
+
+  /**
+   * Whether the file was missing, the next file found at its path is another file
+   */
+  private boolean missing
+
+  private boolean skipFirstLine
+
+  /**
+   * Key of the file read, such as its inode, null if unknown
+   */
+  private Object fileKey
+
+  private final byte[] buffer = new byte[BUFFER_SIZE]
+
+  private final ByteArrayOutputStream line = new ByteArrayOutputStream(256)
+
+  /**
+   * Last byte of the line, -1 if it is empty
+   */
+  private int lastByte = -1
+
   /**
    * Ctor
    * @param writer writer for ouput
@@ -48,7 +130,14 @@ class FileFollower implements Callable<Boolean> {
   }
 
   void stop() {
-    following = true
+    following = false
+  }
+
+  /**
+   * @return whether the follower was not stopped
+   */
+  boolean isFollowing() {
+    return following
   }
 
   /**
@@ -56,53 +145,106 @@ class FileFollower implements Callable<Boolean> {
    */
   void run() {
     log.info("Starting thread to follow $file , every $refreshInterval")
-    RandomAccessFile raf = null
-    long lastFilePointer = 0
+    FileChangeWaiter waiter = new FileChangeWaiter()
     try {
-      raf = ensureRandomAccessFile(file)
+      waiter.watch(file)
       while (following && !Thread.currentThread().isInterrupted()) {
-        if (raf.length() == lastFilePointer) {  // no new data
-          raf.close();
-          Thread.sleep(refreshInterval)
-          // Wait till the file exists before opening it
-          raf = ensureRandomAccessFile(file)
-          if (lastFilePointer > raf.length()) { // in case the file was rotated
-            log.info("File to follow $file must have been rotated, reset file pointer")
-            lastFilePointer = 0
-          }
-          raf.seek(lastFilePointer);
-        } else {
-          if (lastFilePointer == 0 && raf.length() > 1024) {  // For the first time only display last few lines
-            raf.seek(raf.length() - 1024)
-          }
-          byte[] bytes = new byte[4096];
-          int bytesRead;
-          while ((bytesRead = raf.read(bytes, 0, bytes.length)) != -1) {
-            writer.print(renderer.render(new String(bytes, 0, bytesRead)));
-            writer.flush()
-          }
-          lastFilePointer = raf.getFilePointer();
+        if (!poll()) {
+          waiter.await(refreshInterval)
+          // the directory may have been created in the meantime
+          waiter.watch(file)
         }
       }
     } finally {
       log.info("Exiting loop file follower for $file")
-      writer.flush()
-      if (raf != null) {
-        try {
-          raf.close();
-        } catch (IOException e) {
-          e.printStackTrace();
-        }
+      waiter.close()
+      close()
+    }
+  }
+
+  /**
+   * Start following the file from its current end, less the {@link #initialTailLength}. A file created later is
+   * displayed from its start. Done by the first poll, if not before
+   */
+  synchronized void start() {
+    if (position < 0) {
+      long length = file.length()
+      position = Math.max(0, length - initialTailLength)
+      skipFirstLine = position > 0
+      fileKey = keyOf(file)
+    }
+  }
+
+  /**
+   * Render the lines appended to the file since the last poll
+   * @return whether something was read
+   * @throws IOException the file cannot be read
+   */
+  synchronized boolean poll() throws IOException {
+    start()
+    if (!file.exists()) {
+      if (position > 0 && !missing) {
+        log.info("File to follow $file was removed, waiting for it")
+        missing = true
       }
+      // the removed file may still be open, and written to
+      boolean read = raf != null && drain()
+      if (!keepOpen) {
+        closeFile()
+      }
+      return read
+    }
+
+    boolean read = false
+    if (missing) {
+      log.info("File to follow $file was created again")
+      read = switchFile()
+      missing = false
+    }
+    if (raf == null) {
+      if (file.length() == position) {
+        return read  // no new data, no need to open the file
+      }
+      if (fileKey == null) {
+        fileKey = keyOf(file)
+      }
+      raf = new RandomAccessFile(file, "r")
+    }
+    raf.seek(position)
+    read |= drain()
+
+    // an append-only file only grows: once read, it cannot be shorter than what was read, nor than before.
+    // A file replaced by another one of the same length is only detected by its key
+    long pathLength = file.length()
+    long openLength = raf.length()
+    Object pathKey = keyOf(file)
+    boolean replaced = pathKey != null && fileKey != null && pathKey != fileKey
+    if (openLength < position || pathLength < position) {
+      log.info("File to follow $file was truncated or rotated, reading it from the start")
+      read |= switchFile()
+    } else if (replaced || (keepOpen && openLength < pathLength)) {
+      log.info("File to follow $file was rotated, reading the new file")
+      read |= switchFile()
+    }
+
+    if (!keepOpen) {
+      closeFile()
     }
+    return read
   }
 
-  private static RandomAccessFile ensureRandomAccessFile(File file) {
-    while (!file.exists()) {
-      log.info("File to follow $file does not exist (yet)")
-      Thread.sleep(250)
+  /**
+   * Render the last line, if it was not completed, and close the file
+   */
+  synchronized void close() {
+    try {
+      if (line.size() > 0) {
+        renderLine(null)
+      }
+      writer.flush()
+    } finally {
+      closeFile()
     }
-    return new RandomAccessFile(file, "r");
   }
 
   @Override
@@ -111,6 +253,113 @@ class FileFollower implements Callable<Boolean> {
     return true
   }
 
+  /**
+   * Read the new file at the path from its start
+   */
+  private boolean switchFile() {
+    // the end of the previous file, if it is still open
+    boolean read = raf != null && drain()
+    if (line.size() > 0) {
+      renderLine(null)
+      writer.flush()
+    }
+    closeFile()
+    position = 0
+    skipFirstLine = false
+    fileKey = null
+    if (!file.exists()) {
+      return read
+    }
+    fileKey = keyOf(file)
+    raf = new RandomAccessFile(file, "r")
+    return drain() || read
+  }
 
-}
+  /**
+   * Read the open file to its end
+   */
+  private boolean drain() {
+    boolean read = false
+    int count
+    while ((count = raf.read(buffer, 0, buffer.length)) > 0) {
+      read = true
+      position += count
+      int start = 0
+      for (int i = 0; i < count; i++) {
+        if (buffer[i] == (byte) '\n') {
+          if (skipFirstLine) {
+            skipFirstLine = false
+          } else {
+            appendToLine(start, i - start)
+            renderLine(lastByte == (int) '\r' ? "\r\n" : "\n")
+          }
+          start = i + 1
+        }
+      }
+      if (!skipFirstLine) {
+        appendToLine(start, count - start)
+      }
+    }
+    if (read) {
+      writer.flush()
+    }
+    return read
+  }
+
+  private void appendToLine(int start, int length) {
+    while (length > 0) {
+      int room = MAX_LINE_LENGTH - line.size()
+      if (room == 0) {
+        renderLine(null)
+        room = MAX_LINE_LENGTH
+      }
+      int appended = Math.min(room, length)
+      line.write(buffer, start, appended)
+      lastByte = buffer[start + appended - 1]
+      start += appended
+      length -= appended
+    }
+  }
 
+  /**
+   * @param lineSeparator separator written after the line, null if none
+   */
+  private void renderLine(String lineSeparator) {
+    String text = line.toString(Charset.defaultCharset().name())
+    if (lineSeparator == "\r\n") {
+      text = text.substring(0, text.length() - 1)
+    }
+    line.reset()
+    lastByte = -1
+    String rendered = renderer.render(text)
+    if (rendered != null) {
+      writer.write(rendered)
+      if (lineSeparator != null) {
+        writer.write(lineSeparator)
+      }
+    }
+  }
+
+  /**
+   * @return the key of the file at the path, null if unknown
+   */
+  private static Object keyOf(File file) {
+    if (readAttributes == null) {
+      return null
+    }
+    try {
+      return readAttributes.invoke(null, file.toPath(), basicFileAttributes, noLinkOptions).fileKey()
+    } catch (Exception e) {
+      return null  // the file was removed in the meantime, or has no key
+    }
+  }
+
+  private void closeFile() {
+    if (raf != null) {
+      try {
+        raf.close()
+      } catch (IOException e) { /* do nothing */ }
+      raf = null
+    }
+  }
+}
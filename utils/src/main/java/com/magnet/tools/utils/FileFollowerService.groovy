@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.utils
+
+import groovy.util.logging.Slf4j
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * Follow several files on a single thread, equivalent in shell to tail -F file1 file2...
+ * <p>
+ * The thread is started with the first file followed. It reads the files until none has changed, then waits for
+ * a change of their directories, up to the refresh interval.
+ */
+@Slf4j
+class FileFollowerService implements Closeable {
+
+  private final long refreshInterval
+
+  private final List<FileFollower> followers = new CopyOnWriteArrayList<FileFollower>()
+
+  private final FileChangeWaiter waiter = new FileChangeWaiter()
+
+  private Thread thread
+
+  private volatile boolean closed
+
+  /**
+   * Ctor
+   * @param refreshInterval maximum time between two reads of a file, in ms
+   */
+  FileFollowerService(long refreshInterval = 250) {
+    this.refreshInterval = refreshInterval
+  }
+
+  /**
+   * Follow a file
+   * @param writer writer for output
+   * @param file file to follow, which may not exist yet
+   * @param renderer string renderer
+   * @return the follower, to pass to {@link #unfollow}
+   */
+  synchronized FileFollower follow(Writer writer, File file, Renderer renderer = new LogRenderer()) {
+    if (closed) {
+      throw new IllegalStateException("File follower service closed")
+    }
+    FileFollower follower = new FileFollower(writer, file, refreshInterval, renderer)
+    follower.start()
+    followers.add(follower)
+    waiter.watch(file)
+    if (thread == null) {
+      thread = new Thread(new Runnable() {
+        @Override
+        void run() {
+          followAll()
+        }
+      }, "file-follower")
+      thread.setDaemon(true)
+      thread.start()
+    }
+    return follower
+  }
+
+  /**
+   * Stop following a file. Its last line is rendered, even if not completed
+   * @param follower follower returned by {@link #follow}
+   */
+  void unfollow(FileFollower follower) {
+    follower.stop()
+    if (followers.remove(follower)) {
+      follower.close()
+    }
+  }
+
+  /**
+   * @return the files followed
+   */
+  List<File> getFiles() {
+    return followers.collect { it.file }
+  }
+
+  /**
+   * Stop following all the files, and wait for the thread to end
+   */
+  @Override
+  void close() {
+    Thread following
+    synchronized (this) {
+      closed = true
+      following = thread
+    }
+    if (following != null) {
+      following.interrupt()
+      try {
+        following.join(refreshInterval + 1000)
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt()
+      }
+    }
+    for (FileFollower follower : followers) {
+      unfollow(follower)
+    }
+    waiter.close()
+  }
+
+  private void followAll() {
+    log.info("Starting thread to follow files, every $refreshInterval")
+    try {
+      while (!closed && !Thread.currentThread().isInterrupted()) {
+        boolean read = false
+        for (FileFollower follower : followers) {
+          try {
+            read |= follower.following && follower.poll()
+          } catch (IOException e) {
+            log.warn("Cannot read ${follower.file}: ${e.getMessage()}")
+          }
+        }
+        if (!read) {
+          waiter.await(refreshInterval)
+          // the directories may have been created in the meantime
+          for (FileFollower follower : followers) {
+            waiter.watch(follower.file)
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      // closed
+    } finally {
+      log.info("Exiting loop file follower")
+    }
+  }
+}
@@ -17,8 +17,11 @@
 
 package com.magnet.tools.utils
 
+import groovy.util.CharsetToolkit
 import groovy.util.logging.Slf4j
 
+import java.nio.charset.Charset
+
 /**
  * Helper class for processing files and directories.
  */
@@ -111,8 +114,16 @@ abstract class FileHelper {
     return retval;
   }
 
+  /**
+   * Size of the blocks read backwards by {@link #tail}
+   */
+  static final int TAIL_BLOCK_SIZE = 8192
+
   /**
    * Tail the specified files
+   * <p>
+   * The files are read backwards from their end, block by block, until the lines to display are found: the cost
+   * depends on the number and length of the lines displayed, not on the size of the files.
    *
    * @param files files to tail. The files are parsed in order and the last <code>i</code> lines are displayed
    * @param renderer a string renderer for the lines
@@ -120,58 +131,78 @@ abstract class FileHelper {
    */
   static void tail(Writer writer, int i, Renderer renderer, File... files) {
 
-    String[] buffer = new String[i];
-    int bufferPos = 0
-    boolean wrapped = false
+    LinkedList<String> lines = new LinkedList<String>()
 
-    for (file in files) {
+    for (int f = files.length - 1; f >= 0 && lines.size() < i; f--) {
+      File file = files[f]
       if (!file || !file.exists()) {
         continue
       }
-      // read to the end of the file
-      file.withReader { reader ->
-        String nextLine;
-        while ((nextLine = reader.readLine()) != null) {
-          buffer[bufferPos++] = nextLine;
-          if (bufferPos == i) {
-            bufferPos = 0;
-            wrapped = true;
-          }
-        }
+      List<String> fileLines = tailLines(file, i - lines.size())
+      for (int l = fileLines.size() - 1; l >= 0; l--) {
+        lines.addFirst(fileLines[l])
       }
     }
-    int currentPos;
-    int endPos;
-    // print from the start to the end.
-    if (!wrapped) {
-      currentPos = 0
-      endPos = bufferPos
-    } else {
-      currentPos = bufferPos
-      endPos = i;
-      if (bufferPos == 0) {
-        // undo the wrapped flag.
-        wrapped = false
-      }
-    }
-    while (currentPos < endPos) {
-      def log = renderer.render(buffer[currentPos++])
+
+    for (String line : lines) {
+      def log = renderer.render(line)
       if (log) {
         writer.println(log)
       }
     }
-    // if we wrapped, to back around and do the first part of the buffer.
-    if (wrapped) {
-      currentPos = 0
-      endPos = bufferPos
-      while (currentPos < endPos) {
-        def log = renderer.render(buffer[currentPos++])
-        if (log) {
-          writer.println(log)
+
+  }
+
+  /**
+   * @param file file to tail
+   * @param count number of lines
+   * @return the last lines of the file, split as {@link BufferedReader#readLine} does
+   */
+  private static List<String> tailLines(File file, int count) {
+    RandomAccessFile raf = new RandomAccessFile(file, "r")
+    try {
+      long length = raf.length()
+      long start = tailStart(raf, length, count)
+      byte[] bytes = new byte[(int) (length - start)]
+      raf.seek(start)
+      raf.readFully(bytes)
+      // same charset guess as File.withReader, from the start of the file
+      Charset charset = new CharsetToolkit(file).getCharset()
+      List<String> lines = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), charset)).readLines()
+      return lines.size() > count ? lines.subList(lines.size() - count, lines.size()) : lines
+    } finally {
+      raf.close()
+    }
+  }
+
+  /**
+   * @return the offset of the last <code>count</code> lines of the file, 0 if it has less lines
+   */
+  private static long tailStart(RandomAccessFile raf, long length, int count) {
+    if (count <= 0) {
+      return length
+    }
+    byte[] block = new byte[TAIL_BLOCK_SIZE]
+    int lines = 0
+    // byte following the one scanned, -1 at the end of the file
+    int next = -1
+    long blockStart = length
+    while (blockStart > 0) {
+      int size = (int) Math.min(TAIL_BLOCK_SIZE, blockStart)
+      blockStart -= size
+      raf.seek(blockStart)
+      raf.readFully(block, 0, size)
+      for (int k = size - 1; k >= 0; k--) {
+        int b = block[k]
+        // a line ends with \n, \r\n or \r, the terminator of the last line is not followed by another line
+        boolean terminator = b == (int) '\n' || (b == (int) '\r' && next != (int) '\n')
+        if (terminator && next != -1 && ++lines == count) {
+          return blockStart + k + 1
         }
+        next = b
       }
     }
-
+    return 0
   }
 
 /**
@@ -195,53 +226,44 @@ abstract class FileHelper {
   }
 
   /**
-   * Tail and follow the output of a file
-   * inspired from http://fw-geekycoder.blogspot.com/2012/12/how-to-implement-tail-f-in-java.html
+   * Print and follow the output of a file, from its start, until the thread is interrupted
+   * @see FileFollower
    * @param writer writer to print the output yto
    * @param file file to follow
    * @param cont flag indicating whether to continue following
    * @param refreshInterval refresh interval (in sec)
    */
   static void follow(Writer writer, File file, Boolean cont, int refreshSec = 0.25) {
-    RandomAccessFile raf = null
-    long lastFilePointer = 0
-    try {
-      raf = new RandomAccessFile(file, "r")
-      while (cont) { // this flag can change on groovy, because boolean are reference, not value
-        if (raf.length() == lastFilePointer) {
-          // Don't forget to close the previous file handle
-          raf.close();
-          // Wait till the file exists before opening it
-          Thread.sleep(refreshSec * 1000)
-          while (!file.exists()) {
-            Thread.sleep(refreshSec * 1000)
-          }
-          raf = new RandomAccessFile(file, "r");
-          raf.seek(lastFilePointer);
-        } else {
-          byte[] bytes = new byte[4096];
-          int bytesRead;
-          while ((bytesRead = raf.read(bytes, 0, bytes.length)) != -1) {
-            writer.print(new String(bytes, 0, bytesRead));
-            writer.flush()
-          }
-          lastFilePointer = raf.getFilePointer();
-        }
-      }
-    } finally {
-      writer.flush()
-      if (raf != null) {
-        try {
-          raf.close();
-        } catch (IOException e) {
-          e.printStackTrace();
-        }
-      }
+    if (!cont) {
+      return
     }
+    FileFollower follower = new FileFollower(writer, file, refreshSec > 0 ? refreshSec * 1000L : 250L,
+        Renderer.IDENTITY_RENDERER)
+    follower.initialTailLength = Long.MAX_VALUE
+    follower.run()
   }
 
  // end FileFollower class
 
+  /**
+   * Replace a file with another one, typically a temporary file written next to it.
+   * <p>
+   * The file is renamed over the replaced one, which is atomic on POSIX systems: a reader sees either the former or
+   * the new content. Renaming over an existing file fails on Windows, the replaced file is then deleted first. This
+   * fallback is not atomic: a reader may find no file in between, and the content is lost if the rename fails too.
+   * @param from file to rename, on the same file system
+   * @param to file to replace
+   * @throws IOException if the file cannot be replaced
+   */
+  static void replace(File from, File to) throws IOException {
+    if (from.renameTo(to)) {
+      return
+    }
+    if (!((!to.exists() || to.delete()) && from.renameTo(to))) {
+      throw new IOException("Cannot replace $to with $from")
+    }
+  }
+
   static void copyFile(File from, File to) {
     to.withWriter { BufferedWriter writer ->
       from.eachLine {
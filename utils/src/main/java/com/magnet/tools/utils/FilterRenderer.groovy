@@ -15,19 +15,39 @@
  * permissions and limitations under the License.
  */
 package com.magnet.tools.utils
+
+import groovy.transform.CompileStatic
+
+import java.util.regex.Pattern
+
 /**
  * A simple filter renderer. Unlike {@link RegexRenderer}, only a substring of the line needs to partially match the
  * the pattern
  */
+@CompileStatic
 class FilterRenderer implements Renderer {
-  private final def pattern
+  private final Pattern pattern
 
+  /**
+   * @param pattern pattern, or regular expression
+   */
   FilterRenderer(def pattern) {
-    this.pattern = pattern
+    this.pattern = compile(pattern)
   }
 
   @Override
   String render(String s) {
-    s =~ pattern ? s : null
+    pattern.matcher(s).find() ? s : null
+  }
+
+  /**
+   * @param pattern pattern, or regular expression
+   * @return the pattern compiled, null if none
+   */
+  static Pattern compile(def pattern) {
+    if (pattern == null || pattern instanceof Pattern) {
+      return (Pattern) pattern
+    }
+    return Pattern.compile(pattern.toString())
   }
 }
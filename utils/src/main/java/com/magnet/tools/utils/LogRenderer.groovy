@@ -16,35 +16,82 @@
  */
 package com.magnet.tools.utils
 
-import static com.magnet.tools.utils.StringHelper.*
+import groovy.transform.CompileStatic
+import org.fusesource.jansi.Ansi
+
+import java.util.regex.Matcher
+import java.util.regex.Pattern
+
 /**
  * Log renderer which allows filtering and/or highlighting pattern
+ * <p>
+ * The patterns are compiled once, the styles are those of {@link AnsiStyle}, and the SEVERE and WARNING words are
+ * found without regular expressions. Lines with nothing to style are returned as is.
  */
+@CompileStatic
 class LogRenderer implements Renderer {
 
+  private static final String SEVERE = "SEVERE"
+
+  private static final String WARNING = "WARNING"
+
   /**
    * Filter pattern: any lines not matching this pattern will be filtered out
    * If null, no filter is applied
    */
-  private final def filterPattern
+  private final Pattern filterPattern
   /**
    * Highlight pattern: any string matching this pattern will be rendered in bold green
    * If null, no highlighting is applied
    */
-  private final def highlightPattern
+  private final Pattern highlightPattern
 
+  /**
+   * @param filterPattern filter pattern, or regular expression
+   * @param highlightPattern highlight pattern, or regular expression
+   */
   LogRenderer(def filterPattern, def highlightPattern) {
-    this.filterPattern = filterPattern
-    this.highlightPattern = highlightPattern
+    this.filterPattern = FilterRenderer.compile(filterPattern ?: null)
+    this.highlightPattern = FilterRenderer.compile(highlightPattern ?: null)
   }
 
   LogRenderer() {
     this(null, null)
   }
 
+  /**
+   * @param s line, or lines separated by \n
+   * @return rendered lines, null if they are all filtered out
+   */
   @Override
   String render(String s) {
-    renderLog(s, filterPattern, highlightPattern)
+    if (!s) {
+      return s
+    }
+    if (s.indexOf('\n') < 0) {
+      return renderLine(s)
+    }
+
+    // trailing empty lines are dropped
+    int end = s.length()
+    while (end > 0 && s.charAt(end - 1) == (char) '\n') {
+      end--
+    }
+    StringBuilder rendered = null
+    int start = 0
+    while (start < end) {
+      int next = s.indexOf('\n', start)
+      if (next < 0 || next > end) {
+        next = end
+      }
+      String line = renderLine(s.substring(start, next))
+      if (line != null) {
+        rendered = rendered == null ? new StringBuilder(s.length() + 32) : rendered.append((char) '\n')
+        rendered.append(line)
+      }
+      start = next + 1
+    }
+    return rendered?.toString()
   }
 
   /**
@@ -55,39 +102,79 @@ class LogRenderer implements Renderer {
    * @return rendered string
    */
   static String renderLog(String s, def filterPattern, def highlightPattern) {
-    if (!s) {
-      return s
-    }
+    new LogRenderer(filterPattern, highlightPattern).render(s)
+  }
 
-    def lines = s.split('\n')
+  private String renderLine(String line) {
+    if (filterPattern != null && !filterPattern.matcher(line).find()) {
+      return null
+    }
 
-    // filter lines
-    if (filterPattern) {
-      lines = lines.findAll {
-        it =~ filterPattern
+    String highlighted = null
+    if (highlightPattern != null) {
+      Matcher matcher = highlightPattern.matcher(line)
+      if (matcher.find() && matcher.end() > matcher.start()) {
+        highlighted = matcher.group()
       }
     }
+    // most lines have nothing to style
+    boolean levels = line.contains(SEVERE) || line.contains(WARNING)
+    if ((highlighted == null && !levels) || !Ansi.isEnabled()) {
+      return line
+    }
 
-    // highlight matching pattern
-    if (highlightPattern) {
-      lines = lines.collect {
-        def matcher = it =~ highlightPattern
-        if (matcher.size() > 0) {
-          return it.replace(matcher[0], bg(matcher[0]))
-        }
-        return it
-      }
+    if (highlighted != null) {
+      line = line.replace(highlighted, AnsiStyle.BOLD_GREEN.prefix + highlighted + AnsiStyle.BOLD_GREEN.suffix)
     }
+    return levels ? styleLevels(line) : line
+  }
 
-    lines = lines.collect {
-      def line = (it =~ /\bSEVERE\b/).replaceAll(e("SEVERE"))
-      line = (line =~ /\bWARNING\b/).replaceAll(b("WARNING"))
+  /**
+   * Style the SEVERE and WARNING words of a line
+   */
+  private static String styleLevels(String line) {
+    int level = nextLevel(line, 0)
+    if (level < 0) {
       return line
     }
+    StringBuilder styled = new StringBuilder(line.length() + 32)
+    int copied = 0
+    while (level >= 0) {
+      String name = line.startsWith(SEVERE, level) ? SEVERE : WARNING
+      AnsiStyle style = SEVERE.equals(name) ? AnsiStyle.ERROR : AnsiStyle.BOLD
+      styled.append(line, copied, level).append(style.prefix).append(name).append(style.suffix)
+      copied = level + name.length()
+      level = nextLevel(line, copied)
+    }
+    return styled.append(line, copied, line.length()).toString()
+  }
 
-
-    return lines.join('\n')
+  /**
+   * @return index of the next SEVERE or WARNING word of a line, -1 if none
+   */
+  private static int nextLevel(String line, int from) {
+    int severe = nextWord(line, SEVERE, from)
+    int warning = nextWord(line, WARNING, from)
+    return severe < 0 || (warning >= 0 && warning < severe) ? warning : severe
   }
 
+  /**
+   * Equivalent to finding <code>\bword\b</code>, without a regular expression
+   */
+  private static int nextWord(String line, String word, int from) {
+    int index = line.indexOf(word, from)
+    while (index >= 0) {
+      int end = index + word.length()
+      if ((index == 0 || !isWordCharacter(line.charAt(index - 1)))
+          && (end == line.length() || !isWordCharacter(line.charAt(end)))) {
+        return index
+      }
+      index = line.indexOf(word, index + 1)
+    }
+    return -1
+  }
 
+  private static boolean isWordCharacter(char c) {
+    return Character.isLetterOrDigit(c) || c == (char) '_'
+  }
 }
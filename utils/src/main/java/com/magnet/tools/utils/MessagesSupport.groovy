@@ -19,6 +19,8 @@ package com.magnet.tools.utils
 import groovy.util.logging.Slf4j
 
 import java.text.MessageFormat
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentMap
 
 /**
  * Supporting class to handle i18n and L10n
@@ -50,7 +52,13 @@ class MessagesSupport {
   public static final String MESSAGES_PATH = "messages/"
 
   /**
-   * A resource bundle control that always reloads its messages
+   * Dev mode: reload the messages from the property files for every message, so they can be edited while the shell
+   * runs. Otherwise the bundles and message formats are cached by bundle and effective locale.
+   */
+  public static boolean RELOAD_MESSAGES = Boolean.parseBoolean(System.getProperty("MAGNET_RELOAD_MESSAGES", "false"))
+
+  /**
+   * A resource bundle control that always reloads its messages, in dev mode
    */
   private static final ResourceBundle.Control MAGNET_CONTROL = new MagnetControl()
 
@@ -59,9 +67,20 @@ class MessagesSupport {
    */
   private static final ClassLoader MAGNET_RESOURCE_CLASSLOADER = Thread.currentThread().getContextClassLoader()
 
+  /**
+   * Message catalogs by effective locale and bundle name
+   */
+  private static final ConcurrentMap<Locale, ConcurrentMap<String, Catalog>> catalogs =
+      new ConcurrentHashMap<Locale, ConcurrentMap<String, Catalog>>()
+
+  /**
+   * Last effective locale computed, and the locales it was computed from
+   */
+  private static volatile LocaleChoice localeChoice
+
   /**
    * Custom Message control, used to control auto-refresh, auto-reload of the localized message
-   * Right now cache is disabled and messages are reloaded ALL THE TIME. This makes fixes and iterative development
+   * Cache is disabled and messages are reloaded ALL THE TIME. This makes fixes and iterative development
    * more agile.
    */
   private static class MagnetControl extends ResourceBundle.Control {
@@ -79,6 +98,50 @@ class MessagesSupport {
     }
   }
 
+  /**
+   * A resource bundle, null if not found, and its message formats compiled on first use
+   */
+  private static class Catalog {
+    final String bundleName
+
+    final ResourceBundle bundle
+
+    private final ConcurrentMap<String, MessageFormat> formats = new ConcurrentHashMap<String, MessageFormat>()
+
+    Catalog(String bundleName, ResourceBundle bundle) {
+      this.bundleName = bundleName
+      this.bundle = bundle
+    }
+
+    /**
+     * @return the format of the message at key, null if there is no such message
+     */
+    MessageFormat getFormat(String key) {
+      MessageFormat format = formats.get(key)
+      if (format == null) {
+        String message = getString(bundle, bundleName, key)
+        if (!message) {
+          return null
+        }
+        format = new MessageFormat(message)
+        formats.putIfAbsent(key, format)
+      }
+      return format
+    }
+  }
+
+  private static class LocaleChoice {
+    final Locale current
+    final List<Locale> supported
+    final Locale effective
+
+    LocaleChoice(Locale current, List<Locale> supported, Locale effective) {
+      this.current = current
+      this.supported = supported
+      this.effective = effective
+    }
+  }
+
   /**
    * Build the localized message given a resource bundle name, message key, and message arguments
    * @param bundleName bundleName
@@ -88,20 +151,30 @@ class MessagesSupport {
    * if the message for key <code>key</code> is not found in bundle
    */
   static String _getMessage(String bundleName, String key, Object... args) {
-    ResourceBundle resourceBundle = _getBundle(bundleName)
-    if (!resourceBundle) {
-      return "BUNDLE_NOT_FOUND($bundleName)"
+    if (RELOAD_MESSAGES) {
+      ResourceBundle resourceBundle = _getBundle(bundleName)
+      if (!resourceBundle) {
+        return "BUNDLE_NOT_FOUND($bundleName)"
+      }
+      String message = getString(resourceBundle, bundleName, key)
+      if (!message) {
+        return "MESSAGE_NOT_FOUND($bundleName, $key, $args)"
+      }
+      return MessageFormat.format(message, args)
     }
-    String message = null
-    try {
-      message = resourceBundle?.getString(key)
-    } catch (Exception e) {
-      log.error("No matching string for $key in bundle $bundleName found for ${bundleName}")
+
+    Catalog catalog = getCatalog(bundleName)
+    if (!catalog.bundle) {
+      return "BUNDLE_NOT_FOUND($bundleName)"
     }
-    if (!message) {
+    MessageFormat format = catalog.getFormat(key)
+    if (format == null) {
       return "MESSAGE_NOT_FOUND($bundleName, $key, $args)"
     }
-    return MessageFormat.format(message, args)
+    // a message format is not thread safe
+    synchronized (format) {
+      return format.format(args)
+    }
   }
 
   /**
@@ -110,18 +183,69 @@ class MessagesSupport {
    * @return best matching resource bundle
    */
   static ResourceBundle _getBundle(String bundleName) {
-    ResourceBundle res = null
-    try {
-      res = ResourceBundle.getBundle(bundleName, getEffectiveLocale(), MAGNET_RESOURCE_CLASSLOADER, MAGNET_CONTROL)
-    } catch (e) {
-      log.error("No bundle found for ${bundleName}")
+    if (!RELOAD_MESSAGES) {
+      return getCatalog(bundleName).bundle
     }
+    ResourceBundle res = loadBundle(bundleName, getEffectiveLocale())
 
     // Always clear, it almost costless for the user, and it's greatly fasten iterative dev
     res?.clearCache(MAGNET_RESOURCE_CLASSLOADER)
     return res
   }
 
+  /**
+   * Set the current locale, and drop the messages cached for the previous one
+   * @param locale new current locale
+   */
+  static void setLocale(Locale locale) {
+    currentLocale = locale
+    clearCache()
+  }
+
+  /**
+   * Drop the cached bundles and message formats, they are loaded again on next use
+   */
+  static void clearCache() {
+    catalogs.clear()
+    localeChoice = null
+    ResourceBundle.clearCache(MAGNET_RESOURCE_CLASSLOADER)
+  }
+
+  private static Catalog getCatalog(String bundleName) {
+    Locale locale = getEffectiveLocale()
+    ConcurrentMap<String, Catalog> localeCatalogs = catalogs.get(locale)
+    if (localeCatalogs == null) {
+      catalogs.putIfAbsent(locale, new ConcurrentHashMap<String, Catalog>())
+      localeCatalogs = catalogs.get(locale)
+    }
+    Catalog catalog = localeCatalogs.get(bundleName)
+    if (catalog == null) {
+      catalog = new Catalog(bundleName, loadBundle(bundleName, locale))
+      localeCatalogs.putIfAbsent(bundleName, catalog)
+    }
+    return catalog
+  }
+
+  private static ResourceBundle loadBundle(String bundleName, Locale locale) {
+    try {
+      return RELOAD_MESSAGES ?
+          ResourceBundle.getBundle(bundleName, locale, MAGNET_RESOURCE_CLASSLOADER, MAGNET_CONTROL) :
+          ResourceBundle.getBundle(bundleName, locale, MAGNET_RESOURCE_CLASSLOADER)
+    } catch (e) {
+      log.error("No bundle found for ${bundleName}")
+      return null
+    }
+  }
+
+  private static String getString(ResourceBundle bundle, String bundleName, String key) {
+    try {
+      return bundle.getString(key)
+    } catch (Exception e) {
+      log.error("No matching string for $key in bundle $bundleName found for ${bundleName}")
+      return null
+    }
+  }
+
   /**
    * The best matching supported locale, given the current locale and set of supported locales registered on MAB
    * if no supported locale match, the current locale will be used, with MAB possibly defaulting to the
@@ -129,6 +253,17 @@ class MessagesSupport {
    * @return best matching locale among the supported locales, otherwise return the current locale
    */
   static Locale getEffectiveLocale() {
+    // computed again when the locale or the list of supported locales is set
+    LocaleChoice choice = localeChoice
+    if (choice != null && choice.current == currentLocale && choice.supported.is(supportedLocales)) {
+      return choice.effective
+    }
+    Locale effective = findEffectiveLocale()
+    localeChoice = new LocaleChoice(currentLocale, supportedLocales, effective)
+    return effective
+  }
+
+  private static Locale findEffectiveLocale() {
     Locale bestMatchingLocale = currentLocale
 
     int bestMatchingScore = 0
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock on a file shared by several threads and processes, such as the history, the settings or a cache.
+ * <p>
+ * The lock is an OS lock on a companion {@code .lock} file, released by the operating system when the process
+ * exits, even when it crashes: a lock left by a dead process is never waited for, and the lock file itself
+ * can stay in place. OS locks are held by the whole process, so the threads of this process are coordinated by
+ * a {@link ReentrantLock}. The lock is reentrant.
+ * <pre>
+ *   ProcessLock.forFile(file).withLock { ... }
+ * </pre>
+ */
+public final class ProcessLock {
+
+  /**
+   * Suffix of the lock files
+   */
+  public static final String LOCK_FILE_SUFFIX = ".lock";
+
+  private static final ConcurrentMap<String, ProcessLock> LOCKS = new ConcurrentHashMap<String, ProcessLock>();
+
+  private final File lockFile;
+
+  private final ReentrantLock threadLock = new ReentrantLock();
+
+  private RandomAccessFile channelFile;
+
+  private FileLock fileLock;
+
+  private ProcessLock(File lockFile) {
+    this.lockFile = lockFile;
+  }
+
+  /**
+   * @param file shared file, or directory
+   * @return the lock of the file, the same instance for the same file
+   * @throws IOException the file path is invalid
+   */
+  public static ProcessLock forFile(File file) throws IOException {
+    String path = file.getCanonicalPath();
+    ProcessLock lock = LOCKS.get(path);
+    if (lock == null) {
+      ProcessLock created = new ProcessLock(new File(path + LOCK_FILE_SUFFIX));
+      lock = LOCKS.putIfAbsent(path, created);
+      if (lock == null) {
+        lock = created;
+      }
+    }
+    return lock;
+  }
+
+  /**
+   * Wait until the lock is acquired
+   *
+   * @throws IOException the lock file cannot be locked
+   */
+  public void lock() throws IOException {
+    threadLock.lock();
+    if (threadLock.getHoldCount() > 1) {
+      return;
+    }
+    try {
+      File parent = lockFile.getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+      channelFile = new RandomAccessFile(lockFile, "rw");
+      fileLock = channelFile.getChannel().lock();
+    } catch (IOException e) {
+      release();
+      threadLock.unlock();
+      throw e;
+    }
+  }
+
+  /**
+   * Release the lock
+   */
+  public void unlock() {
+    try {
+      if (threadLock.getHoldCount() == 1) {
+        release();
+      }
+    } finally {
+      threadLock.unlock();
+    }
+  }
+
+  /**
+   * Run an action holding the lock
+   *
+   * @param action action to run, a closure for instance
+   * @return the action result
+   * @throws Exception the lock cannot be acquired, or the action failed
+   */
+  public <T> T withLock(Callable<T> action) throws Exception {
+    lock();
+    try {
+      return action.call();
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * @return whether the current thread holds the lock
+   */
+  public boolean isHeldByCurrentThread() {
+    return threadLock.isHeldByCurrentThread();
+  }
+
+  private void release() {
+    try {
+      if (fileLock != null) {
+        fileLock.release();
+      }
+    } catch (IOException e) { /* released when the channel is closed */ }
+    try {
+      if (channelFile != null) {
+        channelFile.close();
+      }
+    } catch (IOException e) { /* do nothing */ }
+    fileLock = null;
+    channelFile = null;
+  }
+}
@@ -16,18 +16,30 @@
  */
 package com.magnet.tools.utils
 
+import groovy.transform.CompileStatic
+
+import java.util.regex.Pattern
+
 /**
  * A simple regex renderer
  */
+@CompileStatic
 class RegexRenderer implements Renderer {
-  private final List<String> matchers
+  private final Pattern[] matchers
 
   RegexRenderer(List<String> matchers) {
-    this.matchers = matchers
+    this.matchers = matchers?.collect { String matcher -> Pattern.compile(matcher) } as Pattern[]
   }
 
   @Override
   String render(String s) {
-    matchers != null && matchers.find { s.matches(it) } ? s : null;
+    if (matchers != null) {
+      for (Pattern matcher : matchers) {
+        if (matcher.matcher(s).matches()) {
+          return s
+        }
+      }
+    }
+    return null
   }
 }
@@ -16,24 +16,38 @@
  */
 package com.magnet.tools.utils
 
+import groovy.transform.CompileStatic
+
+import java.util.regex.Matcher
+import java.util.regex.Pattern
+
 /**
  * Renderer that filters and replace pattern. The replacement information is persisted in a
  * map of replacement string keyed by the pattern to replace.
  */
+@CompileStatic
 class ReplacementRenderer implements Renderer {
 
-  private final Map<String, String> replacements
+  private final Pattern[] patterns
+
+  private final String[] replacements
 
   ReplacementRenderer(Map<String, String> replacements) {
-    this.replacements = replacements
+    this.patterns = new Pattern[replacements.size()]
+    this.replacements = new String[replacements.size()]
+    int i = 0
+    for (Map.Entry<String, String> e : replacements.entrySet()) {
+      this.patterns[i] = Pattern.compile(e.getKey())
+      this.replacements[i++] = e.getValue()
+    }
   }
 
   @Override
   String render(String s) {
-    for (e in replacements) {
-      def m = (s =~ e.getKey())
-      if (m) {
-        return m.replaceFirst(e.getValue())
+    for (int i = 0; i < patterns.length; i++) {
+      Matcher m = patterns[i].matcher(s)
+      if (m.find()) {
+        return m.replaceFirst(replacements[i])
       }
     }
     return null
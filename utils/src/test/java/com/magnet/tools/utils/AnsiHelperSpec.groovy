@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.utils
+
+import org.fusesource.jansi.Ansi
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static org.fusesource.jansi.Ansi.ansi
+
+/**
+ * {@link AnsiHelper} test specification
+ */
+class AnsiHelperSpec extends Specification {
+
+  boolean ansiEnabled = Ansi.isEnabled()
+
+  def cleanup() {
+    Ansi.setEnabled(ansiEnabled)
+  }
+
+  @Unroll
+  def "#style should render as the #markup markup"() {
+    given:
+      Ansi.setEnabled(true)
+    expect:
+      AnsiHelper."$style"("[INFO] a text") == render(markup.replace("TEXT", "[INFO] a text"))
+    where:
+      style         | markup
+      "bold"        | "@|BOLD TEXT|@"
+      "italic"      | "@|ITALIC TEXT|@"
+      "faint"       | "@|INTENSITY_FAINT TEXT|@"
+      "boldGreen"   | "@|BOLD,GREEN TEXT|@"
+      "underline"   | "@|UNDERLINE TEXT|@"
+      "green"       | "@|green TEXT|@"
+      "red"         | "@|red TEXT|@"
+      "renderError" | "@|red @|BOLD TEXT|@|@"
+  }
+
+  def "should not style texts without ansi"() {
+    given:
+      Ansi.setEnabled(false)
+    expect:
+      AnsiHelper.renderError("failed") == "failed"
+      AnsiStyle.BOLD.appendTo(new StringBuilder("[TRACE] "), "generating").toString() == "[TRACE] generating"
+  }
+
+  def "should append styled spans"() {
+    given:
+      Ansi.setEnabled(true)
+    expect:
+      AnsiStyle.BOLD.appendTo(AnsiStyle.BOLD_GREEN.appendTo(new StringBuilder(), "[TRACE]").append(' '), "done")
+          .toString() == AnsiHelper.boldGreen("[TRACE]") + " " + AnsiHelper.bold("done")
+  }
+
+  /**
+   * Render a markup with Jansi, from its innermost style, as the styles used to be nested
+   */
+  private static String render(String markup) {
+    int start
+    while ((start = markup.lastIndexOf("@|")) >= 0) {
+      int end = markup.indexOf("|@", start) + 2
+      markup = markup.substring(0, start) + ansi().render(markup.substring(start, end)) + markup.substring(end)
+    }
+    return markup
+  }
+}
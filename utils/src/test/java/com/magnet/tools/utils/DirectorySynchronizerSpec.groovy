@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.utils
+
+/**
+ * Test specification for {@link DirectorySynchronizer}
+ */
+class DirectorySynchronizerSpec extends SpecificationSupport {
+
+  def "should count the added, changed, unchanged and removed files"() {
+    given:
+      File source = write("source", ["a.txt": "a", "sub/b.txt": "b", "sub/c.txt": "c"])
+      File target = write("target", ["a.txt": "a", "sub/b.txt": "old", "stale.txt": "stale"])
+      long timestamp = new File(target, "a.txt").lastModified() - 10000
+      new File(target, "a.txt").setLastModified(timestamp)
+      DirectorySynchronizer synchronizer = new DirectorySynchronizer()
+    when:
+      synchronizer.synchronize(source, target)
+    then:
+      synchronizer.added == 1
+      synchronizer.changed == 1
+      synchronizer.unchanged == 1
+      synchronizer.removed == 1
+      synchronizer.toString() == "1 added, 1 changed, 1 unchanged, 1 removed"
+      DirectorySynchronizer.listFiles(target).sort() == ["a.txt", "sub/b.txt", "sub/c.txt"]
+      new File(target, "sub/b.txt").text == "b"
+      new File(target, "a.txt").lastModified() == timestamp
+  }
+
+  def "should keep the files which are not in the source directory"() {
+    given:
+      File source = write("source", ["a.txt": "a"])
+      File target = write("target", ["stale.txt": "stale"])
+      DirectorySynchronizer synchronizer = new DirectorySynchronizer()
+    when:
+      synchronizer.synchronize(source, target, false)
+    then:
+      synchronizer.toString() == "1 added, 0 changed, 0 unchanged, 0 removed"
+      DirectorySynchronizer.listFiles(target).sort() == ["a.txt", "stale.txt"]
+  }
+
+  def "should only remove the previous files no longer in the source directory"() {
+    given:
+      File source = write("source", ["a.txt": "a", "sub/b.txt": "b"])
+      File target = write("target", ["a.txt": "a", "sub/b.txt": "b", "old/c.txt": "c", "notes.txt": "by hand"])
+      File outside = new File(testDir, "outside.txt")
+      outside.text = "outside"
+      DirectorySynchronizer synchronizer = new DirectorySynchronizer()
+    when:
+      synchronizer.synchronize(source, target, ["a.txt", "sub/b.txt", "old/c.txt", "gone.txt", "../outside.txt"])
+    then:
+      synchronizer.toString() == "0 added, 0 changed, 2 unchanged, 1 removed"
+      DirectorySynchronizer.listFiles(target).sort() == ["a.txt", "notes.txt", "sub/b.txt"]
+      !new File(target, "old").exists()
+      outside.isFile()
+  }
+
+  def "should compare the content of files"() {
+    given:
+      File dir = write("files", ["a": "x" * 10000, "b": "x" * 10000, "c": "x" * 9999 + "y", "d": "x"])
+    expect:
+      DirectorySynchronizer.sameContent(new File(dir, "a"), new File(dir, "b"))
+      !DirectorySynchronizer.sameContent(new File(dir, "a"), new File(dir, "c"))
+      !DirectorySynchronizer.sameContent(new File(dir, "a"), new File(dir, "d"))
+  }
+
+  private File write(String name, Map<String, String> files) {
+    File dir = new File(testDir, name)
+    files.each { String path, String content ->
+      File f = new File(dir, path)
+      f.parentFile.mkdirs()
+      f.text = content
+    }
+    return dir
+  }
+}
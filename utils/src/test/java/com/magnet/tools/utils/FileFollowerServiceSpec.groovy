@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.utils
+
+import spock.lang.IgnoreIf
+
+/**
+ * Test specification for {@link FileFollowerService}
+ */
+@IgnoreIf({ System.getProperty("os.name").startsWith("Win") })
+class FileFollowerServiceSpec extends SpecificationSupport {
+
+  static final long REFRESH_INTERVAL = 10
+
+  FileFollowerService service = new FileFollowerService(REFRESH_INTERVAL)
+
+  def cleanup() {
+    service.close()
+  }
+
+  def "should follow rotated files under high write rates"() {
+    given:
+      List<File> files = [new File(testDir, "first.log"), new File(testDir, "second.log")]
+      List<StringWriter> outputs = files.collect { File file ->
+        StringWriter output = new StringWriter()
+        service.follow(output, file, Renderer.IDENTITY_RENDERER)
+        output
+      }
+    when:
+      List<Thread> writers = files.collect { File file ->
+        StringWriter output = outputs[files.indexOf(file)]
+        Thread.start {
+          int count = 0
+          20.times { int rotation ->
+            file.withOutputStream { OutputStream out ->
+              250.times { out.write("${file.name} line ${count++}\n".getBytes("UTF-8")) }
+              out.flush()
+              // the file is found before it is rotated, the next lines are read from the rotated file
+              waitFor { output.toString().contains("${file.name} line ${count - 1}\n") }
+              250.times { out.write("${file.name} line ${count++}\n".getBytes("UTF-8")) }
+            }
+            assert file.renameTo(new File(testDir, "${file.name}.$rotation"))
+          }
+        }
+      }
+      writers*.join()
+      outputs.each { StringWriter output ->
+        waitFor { output.toString().contains(" line 9999\n") }
+      }
+    then:
+      files.eachWithIndex { File file, int i ->
+        assert outputs[i].toString().readLines() == (0..<10000).collect { "${file.name} line $it".toString() }
+      }
+  }
+
+  def "should follow a file truncated after it was copied"() {
+    given:
+      File file = new File(testDir, "truncated.log")
+      file.text = "one\ntwo\n"
+      StringWriter output = new StringWriter()
+      service.follow(output, file, Renderer.IDENTITY_RENDERER)
+      waitFor { output.toString() == "one\ntwo\n" }
+    when:
+      new RandomAccessFile(file, "rw").setLength(0)
+      file.append("three\n")
+      waitFor { output.toString().contains("three") }
+    then:
+      output.toString() == "one\ntwo\nthree\n"
+  }
+
+  def "should render the last line when a file is no longer followed"() {
+    given:
+      File file = new File(testDir, "partial.log")
+      StringWriter output = new StringWriter()
+      FileFollower follower = service.follow(output, file, Renderer.IDENTITY_RENDERER)
+    when:
+      file.text = "[INFO] complete\n[INFO] partial"
+      waitFor { output.toString() == "[INFO] complete\n" }
+      service.unfollow(follower)
+    then:
+      output.toString() == "[INFO] complete\n[INFO] partial"
+      !service.files
+  }
+
+  private static void waitFor(Closure<Boolean> condition) {
+    long deadline = System.currentTimeMillis() + 10000
+    while (!condition()) {
+      assert System.currentTimeMillis() < deadline
+      Thread.sleep(REFRESH_INTERVAL)
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.utils
+
+/**
+ * Test specification for {@link FileHelper}
+ */
+class FileHelperSpec extends SpecificationSupport {
+
+  def "should tail the last lines of the files"() {
+    given:
+      File first = new File(testDir, "first.log")
+      first.text = "one\r\ntwo\rthree\n"
+      File second = new File(testDir, "second.log")
+      second.text = "four\n\nfive"
+    expect:
+      tail(n, first, new File(testDir, "missing.log"), second) == expected
+    where:
+      n  | expected
+      1  | ["five"]
+      3  | ["four", "five"]
+      5  | ["three", "four", "five"]
+      10 | ["one", "two", "three", "four", "five"]
+  }
+
+  def "should tail a file larger than a block"() {
+    given:
+      File file = new File(testDir, "large.log")
+      file.withWriter { Writer writer ->
+        10000.times { writer.write("[INFO] line $it\n") }
+      }
+    expect:
+      tail(3, file) == ["[INFO] line 9997", "[INFO] line 9998", "[INFO] line 9999"]
+  }
+
+  def "should replace a file, existing or not"() {
+    given:
+      File file = new File(testDir, "settings.json")
+      if (existing) {
+        file.text = "former"
+      }
+      File tmp = new File(testDir, "settings.json.tmp")
+      tmp.text = "new"
+    when:
+      FileHelper.replace(tmp, file)
+    then:
+      file.text == "new"
+      !tmp.exists()
+    where:
+      existing << [true, false]
+  }
+
+  private static List<String> tail(int n, File... files) {
+    StringWriter writer = new StringWriter()
+    FileHelper.tail(writer, n, Renderer.IDENTITY_RENDERER, files)
+    return writer.toString().readLines()
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.utils
+
+import org.fusesource.jansi.Ansi
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static com.magnet.tools.utils.StringHelper.*
+
+/**
+ * {@link LogRenderer} test specification
+ */
+class LogRendererSpec extends Specification {
+
+  boolean ansiEnabled = Ansi.isEnabled()
+
+  def setup() {
+    Ansi.setEnabled(true)
+  }
+
+  def cleanup() {
+    Ansi.setEnabled(ansiEnabled)
+  }
+
+  @Unroll
+  def "should render #line"() {
+    expect:
+      new LogRenderer(filter, highlight).render(line) == expected
+    where:
+      line                              | filter  | highlight | expected
+      ""                                | "ERROR" | null      | ""
+      "[INFO] started"                  | null    | null      | "[INFO] started"
+      "[INFO] started"                  | "ERROR" | null      | null
+      "SEVERE: failed, SEVERELY"        | null    | null      | e("SEVERE") + ": failed, SEVERELY"
+      "WARNING: slow\nSEVERE: failed\n" | null    | null      | b("WARNING") + ": slow\n" + e("SEVERE") + ": failed"
+      "WARNING: slow\nSEVERE: failed"   | "SEV"   | null      | e("SEVERE") + ": failed"
+      "deploy app, app started"         | null    | /ap+/     | "deploy ${bg('app')}, ${bg('app')} started"
+      "WARNING: app"                    | null    | "app"     | b("WARNING") + ": " + bg("app")
+  }
+
+  def "should not style lines without ansi"() {
+    given:
+      Ansi.setEnabled(false)
+    expect:
+      new LogRenderer(null, "app").render("SEVERE: app") == "SEVERE: app"
+  }
+
+  def "should chain renderers"() {
+    given:
+      Renderer renderer = new ChainRenderer(new RegexRenderer([/.*failed.*/]), new LogRenderer())
+    expect:
+      renderer.render("SEVERE: failed") == e("SEVERE") + ": failed"
+      renderer.render("SEVERE: started") == null
+  }
+}
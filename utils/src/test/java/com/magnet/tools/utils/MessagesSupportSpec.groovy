@@ -33,7 +33,7 @@ class MessagesSupportSpec extends SpecificationSupport {
 
   private static reset() {
     MessagesSupport.supportedLocales = ['en-US', 'ja-JP'].collect { MessagesSupport.stringToLocale(it) }
-    MessagesSupport.currentLocale = MessagesSupport.stringToLocale('en-US')
+    MessagesSupport.setLocale(MessagesSupport.stringToLocale('en-US'))
   }
 
   @Unroll()
@@ -57,4 +57,17 @@ class MessagesSupportSpec extends SpecificationSupport {
       'it'              | 'it'              | ['it-IT', 'it']
       'fr-FR'           | 'fr-BE'           | ['fr-BE', 'en-CA']
   }
+
+  def 'messages follow the current locale once cached'() {
+    setup:
+      MessagesSupport.supportedLocales = ['en-US', 'fr-FR'].collect { MessagesSupport.stringToLocale(it) }
+      String english = MessagesSupport._getMessage("messages/MessagesSupportSpec", "GREETING", "Bob")
+    when:
+      MessagesSupport.setLocale(MessagesSupport.stringToLocale('fr-CA'))
+    then:
+      english == "Hello Bob"
+      MessagesSupport._getMessage("messages/MessagesSupportSpec", "GREETING", "Bob") == "Bonjour Bob"
+      MessagesSupport._getMessage("messages/MessagesSupportSpec", "UNKNOWN").startsWith("MESSAGE_NOT_FOUND")
+      MessagesSupport._getMessage("messages/Unknown", "GREETING") == "BUNDLE_NOT_FOUND(messages/Unknown)"
+  }
 }
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2014 Magnet Systems, Inc.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.magnet.tools.utils
+
+import groovy.transform.CompileStatic
+
+import java.util.regex.Pattern
+
+import static com.magnet.tools.utils.StringHelper.*
+
+/**
+ * Throughput of the renderers for server logs rendered line by line, as {@link FileFollower} does, compared to
+ * their previous implementations, kept below. Each implementation is measured in its own JVM, and the best MB of
+ * log rendered per second over a few rounds is reported. It also checks that both implementations render the same
+ * lines.
+ * <p/>
+ * Run with: java -cp target/classes:target/test-classes:&lt;dependencies&gt;
+ * com.magnet.tools.utils.RendererBenchmark [MB]
+ */
+class RendererBenchmark {
+
+  private static final int ROUNDS = 10
+
+  private static final List<String> SERVER_LINES = [
+      "[#|2014-03-12T10:15:42.117-0700|INFO|glassfish3.1.2|javax.enterprise.system.core|_ThreadID=10;|Loading application [employees] at [/employees]|#]",
+      "[#|2014-03-12T10:15:42.251-0700|WARNING|glassfish3.1.2|javax.enterprise.resource.jdo|_ThreadID=10;|WARNING: deprecated connection pool property|#]",
+      "[#|2014-03-12T10:15:43.003-0700|SEVERE|glassfish3.1.2|javax.enterprise.system.container.web|_ThreadID=27;|Exception while invoking employees controller|#]",
+      "java.lang.IllegalStateException: No employee with id 42",
+      "\tat com.example.api.EmployeesController.get(EmployeesController.java:88)",
+      "\tat sun.reflect.NativeMethodAccessorImpl.invoke0(Native Method)",
+      "[#|2014-03-12T10:15:44.410-0700|INFO|glassfish3.1.2|javax.enterprise.system.std.com.sun.enterprise.server.logging|_ThreadID=31;|GET /employees/api/employees 200 12ms|#]",
+      "",
+  ]
+
+  static void main(String[] args) {
+    int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 10
+
+    List<String> lines = []
+    long size = 0
+    for (int i = 0; size < 1 << 20; i++) {
+      String line = SERVER_LINES[i % SERVER_LINES.size()]
+      lines << line
+      size += line.length() + 1
+    }
+
+    Map<String, List<Renderer>> workloads = workloads()
+    if (args.length > 2) {
+      // forked run of a single implementation
+      Renderer renderer = workloads.get(args[1])[args[2] == "before" ? 0 : 1]
+      double best = 0
+      for (int round = 0; round < ROUNDS; round++) {
+        best = Math.max(best, rate(lines, size, megabytes, renderer))
+      }
+      println(best)
+      return
+    }
+
+    workloads.each { String workload, List<Renderer> renderers ->
+      int mismatches = 0
+      for (String line : lines) {
+        String expected = renderers[0].render(line)
+        // the previous log renderer rendered a line filtered out as an empty line
+        if (renderers[0] instanceof LegacyLogRenderer && expected == "" && line) {
+          expected = null
+        }
+        if (expected != renderers[1].render(line)) {
+          mismatches++
+        }
+      }
+      double before = fork(megabytes, workload, "before")
+      double after = fork(megabytes, workload, "after")
+      println(String.format("%-22s %8.1f MB/s before %8.1f MB/s after %6.1fx %d mismatches",
+          workload, before, after, after / before, mismatches))
+    }
+  }
+
+  /**
+   * @return the previous and current renderers, by workload
+   */
+  private static Map<String, List<Renderer>> workloads() {
+    Map<String, String> replacements = [(/_ThreadID=(\d+);/): 'thread $1', (/^\tat /): '  at ']
+    return [
+        "log": [new LegacyLogRenderer(null, null), new LogRenderer()],
+        "log, filter+highlight": [new LegacyLogRenderer("glassfish|Exception", "employees"),
+            new LogRenderer("glassfish|Exception", "employees")],
+        "filter": [new LegacyFilterRenderer(/\|SEVERE\||\|WARNING\|/), new FilterRenderer(/\|SEVERE\||\|WARNING\|/)],
+        "regex": [new LegacyRegexRenderer([/.*SEVERE.*/, /\tat .*/]), new RegexRenderer([/.*SEVERE.*/, /\tat .*/])],
+        "replacement": [new LegacyReplacementRenderer(replacements), new ReplacementRenderer(replacements)],
+    ] as LinkedHashMap<String, List<Renderer>>
+  }
+
+  /**
+   * Measure an implementation in its own JVM, so it is compiled without the profile of the others
+   */
+  private static double fork(int megabytes, String workload, String implementation) {
+    Process process = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+        "-cp", System.getProperty("java.class.path"), RendererBenchmark.name, megabytes.toString(), workload,
+        implementation).redirectErrorStream(true).start()
+    String output = process.inputStream.text.trim()
+    if (process.waitFor() != 0) {
+      throw new IllegalStateException("$workload $implementation failed: $output")
+    }
+    return Double.parseDouble(output)
+  }
+
+  @CompileStatic
+  private static double rate(List<String> lines, long size, int megabytes, Renderer renderer) {
+    long start = System.nanoTime()
+    long characters = render(lines, megabytes, renderer)
+    long elapsed = System.nanoTime() - start
+    if (characters < 0) {
+      println("no output")
+    }
+    return (double) size * megabytes / (1 << 20) * 1e9d / elapsed
+  }
+
+  @CompileStatic
+  private static long render(List<String> lines, int times, Renderer renderer) {
+    long characters = 0
+    for (int i = 0; i < times; i++) {
+      for (String line : lines) {
+        String rendered = renderer.render(line)
+        characters += rendered != null ? rendered.length() : 0
+      }
+    }
+    return characters
+  }
+
+  /**
+   * Previous {@link LogRenderer}
+   */
+  private static class LegacyLogRenderer implements Renderer {
+    private static final Pattern SEVERE_PATTERN = ~/\bSEVERE\b/
+    private static final Pattern WARNING_PATTERN = ~/\bWARNING\b/
+    private final def filterPattern
+    private final def highlightPattern
+
+    LegacyLogRenderer(def filterPattern, def highlightPattern) {
+      this.filterPattern = filterPattern
+      this.highlightPattern = highlightPattern
+    }
+
+    @Override
+    String render(String s) {
+      if (!s) {
+        return s
+      }
+      def lines = s.split('\n')
+      if (filterPattern) {
+        lines = lines.findAll {
+          it =~ filterPattern
+        }
+      }
+      if (highlightPattern) {
+        lines = lines.collect {
+          def matcher = it =~ highlightPattern
+          if (matcher.size() > 0) {
+            return it.replace(matcher[0], bg(matcher[0]))
+          }
+          return it
+        }
+      }
+      lines = lines.collect { String line ->
+        if (line.contains("SEVERE")) {
+          line = SEVERE_PATTERN.matcher(line).replaceAll(e("SEVERE"))
+        }
+        if (line.contains("WARNING")) {
+          line = WARNING_PATTERN.matcher(line).replaceAll(b("WARNING"))
+        }
+        return line
+      }
+      return lines.join('\n')
+    }
+  }
+
+  /**
+   * Previous {@link FilterRenderer}
+   */
+  private static class LegacyFilterRenderer implements Renderer {
+    private final def pattern
+
+    LegacyFilterRenderer(def pattern) {
+      this.pattern = pattern
+    }
+
+    @Override
+    String render(String s) {
+      s =~ pattern ? s : null
+    }
+  }
+
+  /**
+   * Previous {@link RegexRenderer}
+   */
+  private static class LegacyRegexRenderer implements Renderer {
+    private final List<String> matchers
+
+    LegacyRegexRenderer(List<String> matchers) {
+      this.matchers = matchers
+    }
+
+    @Override
+    String render(String s) {
+      matchers != null && matchers.find { s.matches(it) } ? s : null;
+    }
+  }
+
+  /**
+   * Previous {@link ReplacementRenderer}
+   */
+  private static class LegacyReplacementRenderer implements Renderer {
+    private final Map<String, String> replacements
+
+    LegacyReplacementRenderer(Map<String, String> replacements) {
+      this.replacements = replacements
+    }
+
+    @Override
+    String render(String s) {
+      for (e in replacements) {
+        def m = (s =~ e.getKey())
+        if (m) {
+          return m.replaceFirst(e.getValue())
+        }
+      }
+      return null
+    }
+  }
+}